@@ -0,0 +1,106 @@
+import java.util.Collection;
+
+/**
+ * 一次查詢大量交易代碼：先把查詢批次壓縮並排序，再用「倍增 (galloping) 游標」
+ * 與已排序的鍵欄位做合併比對 (sort-merge)。整批只配置固定幾個陣列，不會為每個 KEY 產生物件。
+ */
+public class BatchKeyLookup {
+
+  private final long[] sortedKeys;
+
+  /**
+   * @param sortedKeys 由小到大排序的壓縮鍵 (例如 TransactionColumns.sortedByKey().keys())
+   */
+  public BatchKeyLookup(long[] sortedKeys) {
+    this.sortedKeys = sortedKeys;
+  }
+
+  public static BatchKeyLookup of(TransactionColumns sortedColumns) {
+    return new BatchKeyLookup(sortedColumns.keys());
+  }
+
+  /**
+   * 查詢整批 KEY
+   * @return 依輸入順序排列的命中 / 未命中點陣圖
+   */
+  public Result searchAll(Collection<String> keys) {
+    int n = keys.size();
+    long[] packed = new long[n];
+    int[] order = new int[n];
+    int i = 0;
+    for (String key : keys) {
+      // 格式不符的 KEY 壓成 -1，排在最前面且一定比對不到
+      packed[i] = TransactionColumns.packKey(key);
+      order[i] = i;
+      i++;
+    }
+    TransactionColumns.sortByKey(packed, order);
+
+    long[] hitBits = new long[(n + 63) >>> 6];
+    int hitCount = 0;
+    int cursor = 0;
+    for (int q = 0; q < n && cursor < sortedKeys.length; q++) {
+      long target = packed[q];
+      cursor = gallop(sortedKeys, cursor, target);
+      if (cursor < sortedKeys.length && sortedKeys[cursor] == target) {
+        hitBits[order[q] >>> 6] |= 1L << order[q];
+        hitCount++;
+      }
+    }
+    return new Result(hitBits, n, hitCount);
+  }
+
+  /**
+   * 從 from 開始以 1, 2, 4, 8... 的步幅往前跳，再於最後一段做二分搜尋
+   * @return 第一個 &gt;= target 的索引；全部都比 target 小時回傳陣列長度
+   */
+  static int gallop(long[] keys, int from, long target) {
+    int lo = from;
+    int hi = from;
+    int step = 1;
+    while (hi < keys.length && keys[hi] < target) {
+      lo = hi + 1;
+      hi = from + step;
+      step <<= 1;
+    }
+    hi = Math.min(hi, keys.length);
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (keys[mid] < target) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * 批次查詢結果；第 i 個位元對應輸入集合中的第 i 個 KEY
+   */
+  public record Result(long[] hitBits, int queryCount, int hitCount) {
+
+    public boolean isHit(int index) {
+      return (hitBits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public int missCount() {
+      return queryCount - hitCount;
+    }
+
+    /**
+     * 命中點陣圖的補集 (超出 queryCount 的位元維持 0)
+     */
+    public long[] missBits() {
+      long[] misses = new long[hitBits.length];
+      for (int i = 0; i < misses.length; i++) {
+        misses[i] = ~hitBits[i];
+      }
+      int tail = queryCount & 63;
+      if (tail != 0) {
+        misses[misses.length - 1] &= (1L << tail) - 1;
+      }
+      return misses;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * 以壓縮後的交易代碼建立的 Bloom 過濾器，放在任何搜尋結構前面快速排除不存在的 KEY。
+ * 回答「一定不存在」時不會出錯；回答「可能存在」時才交給後面的搜尋確認。
+ *
+ * 大小由預期筆數 n 與目標誤判率 p 決定：位元數 m = -n ln p / (ln 2)^2，雜湊次數 k = (m / n) ln 2。
+ * k 個位置以雙重雜湊 h1 + i * h2 產生，只需要對鍵做一次 fmix64。
+ */
+public class BloomFilter {
+
+  static final double DEFAULT_FPP = 0.01;
+  // 位置以 32 位元雜湊映射到 [0, m)，所以 m 不超過 2^32 (512 MB)
+  private static final long MAX_BITS = 1L << 32;
+
+  private final long[] words;
+  private final long bitCount;
+  private final int hashCount;
+  private final long expectedItems;
+  private final double targetFpp;
+  private long insertions;
+
+  public BloomFilter(long expectedItems, double targetFpp) {
+    if (targetFpp <= 0 || targetFpp >= 1) {
+      throw new IllegalArgumentException("誤判率必須介於 0 與 1 之間: " + targetFpp);
+    }
+    long n = Math.max(1, expectedItems);
+    double ln2 = Math.log(2);
+    long bits = (long) Math.ceil(-n * Math.log(targetFpp) / (ln2 * ln2));
+    // 補到 64 的倍數，多出來的位元一併使用
+    bits = Math.min(MAX_BITS, Math.max(64, (bits + 63) & ~63L));
+    this.words = new long[(int) (bits >>> 6)];
+    this.bitCount = bits;
+    this.hashCount = Math.max(1, (int) Math.round(bits / (double) n * ln2));
+    this.expectedItems = n;
+    this.targetFpp = targetFpp;
+  }
+
+  /**
+   * 以全部壓縮鍵建立過濾器
+   */
+  public static BloomFilter build(long[] keys, double targetFpp) {
+    BloomFilter filter = new BloomFilter(keys.length, targetFpp);
+    for (long key : keys) {
+      filter.put(key);
+    }
+    return filter;
+  }
+
+  public void put(long packed) {
+    long hash = PackedKeyHashIndex.mix(packed);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = bitIndex(h1 + i * h2);
+      words[(int) (bit >>> 6)] |= 1L << bit;
+    }
+    insertions++;
+  }
+
+  /**
+   * @return false 表示一定不存在；true 表示可能存在
+   */
+  public boolean mightContain(long packed) {
+    long hash = PackedKeyHashIndex.mix(packed);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = bitIndex(h1 + i * h2);
+      if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 格式不符的 KEY 不可能出現在資料中，直接回傳 false
+   */
+  public boolean mightContain(String key) {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && mightContain(packed);
+  }
+
+  /**
+   * 在既有搜尋前加上過濾：過濾器判定不存在時不呼叫 search
+   */
+  public Predicate<String> wrap(Predicate<String> search) {
+    return key -> mightContain(key) && search.test(key);
+  }
+
+  /**
+   * 以已知不存在的 KEY 實際量測誤判率
+   */
+  public double measuredFpp(Collection<String> absentKeys) {
+    if (absentKeys.isEmpty()) {
+      return 0;
+    }
+    int falsePositives = 0;
+    for (String key : absentKeys) {
+      if (mightContain(key)) {
+        falsePositives++;
+      }
+    }
+    return falsePositives / (double) absentKeys.size();
+  }
+
+  /**
+   * 依實際放入筆數估算的理論誤判率 (1 - e^(-kn/m))^k
+   */
+  public double expectedFpp() {
+    return Math.pow(1 - Math.exp(-hashCount * (double) insertions / bitCount), hashCount);
+  }
+
+  // 32 位元雜湊乘上 m 取高位，等同對 m 取餘數但不需要除法
+  private long bitIndex(int hash) {
+    return ((hash & 0xFFFFFFFFL) * bitCount) >>> 32;
+  }
+
+  public long bitCount() {
+    return bitCount;
+  }
+
+  public int hashCount() {
+    return hashCount;
+  }
+
+  public long expectedItems() {
+    return expectedItems;
+  }
+
+  public double targetFpp() {
+    return targetFpp;
+  }
+
+  public long estimatedBytes() {
+    return MemoryEstimator.arrayBytes(words.length, Long.BYTES);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d 位元 (%s)，%d 個雜湊，每筆 %.1f 位元，目標誤判率 %.2f%%，理論誤判率 %.2f%%",
+        bitCount, MemoryEstimator.format(estimatedBytes()), hashCount, bitCount / (double) expectedItems,
+        targetFpp * 100, expectedFpp() * 100);
+  }
+}
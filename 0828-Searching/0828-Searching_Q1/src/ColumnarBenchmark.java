@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 比較 transactions.csv 與二進位欄位檔的檔案大小、載入時間與第一次查詢的延遲。
+ * 「第一次查詢」是從開檔開始計時，到答出一個 KEY 是否存在為止，包含所有必要的載入。
+ * 用法: java ColumnarBenchmark [transactions.csv] [transactions.col]
+ * 欄位檔不存在時，會先由 CSV 轉換產生一份。
+ */
+public class ColumnarBenchmark {
+
+  private static final int REPETITIONS = 5;
+
+  public static void main(String[] args) throws IOException {
+    Path csvPath = Path.of(args.length > 0 ? args[0] : "transactions.csv");
+    Path columnarPath = args.length > 1 ? Path.of(args[1]) : ColumnarTransactionFile.columnarPathFor(csvPath);
+    if (!Files.exists(csvPath)) {
+      System.out.println("找不到 " + csvPath + "，程式終止。");
+      return;
+    }
+
+    List<Transaction> expected = MappedTransactionLoader.load(csvPath.toString());
+    if (!Files.exists(columnarPath)) {
+      long startTime = System.nanoTime();
+      ColumnarTransactionFile.write(columnarPath, TransactionColumns.from(expected));
+      System.out.printf("由 CSV 轉換產生 %s: %.1f ms%n", columnarPath, (System.nanoTime() - startTime) / 1e6);
+    }
+
+    // 兩種格式必須是同一份資料
+    ColumnarTransactionFile check = ColumnarTransactionFile.open(columnarPath);
+    boolean same = check.size() == expected.size();
+    for (int row = 0; same && row < expected.size(); row++) {
+      same = check.get(row).equals(expected.get(row));
+    }
+    System.out.printf("%s 與 %s 內容一致: %s (%d 筆)%n%n", csvPath, columnarPath, same ? "是" : "否", expected.size());
+
+    // 查詢最後一筆的 KEY：循序比對要走完整個欄位，是第一次查詢最慢的情況
+    String target = expected.get(expected.size() - 1).key();
+    long target64 = TransactionColumns.packKey(target);
+    expected = null;
+
+    long csvList = Long.MAX_VALUE;
+    long csvColumns = Long.MAX_VALUE;
+    long csvFirstQuery = Long.MAX_VALUE;
+    long colOpen = Long.MAX_VALUE;
+    long colColumns = Long.MAX_VALUE;
+    long colFirstQuery = Long.MAX_VALUE;
+    int found = 0;
+    for (int i = 0; i < REPETITIONS; i++) {
+      long startTime = System.nanoTime();
+      List<Transaction> rows = MappedTransactionLoader.load(csvPath.toString());
+      csvList = Math.min(csvList, System.nanoTime() - startTime);
+      for (Transaction t : rows) {
+        if (t.key().equals(target)) {
+          found++;
+          break;
+        }
+      }
+      csvFirstQuery = Math.min(csvFirstQuery, System.nanoTime() - startTime);
+      TransactionColumns fromCsv = TransactionColumns.from(rows);
+      csvColumns = Math.min(csvColumns, System.nanoTime() - startTime);
+      found -= fromCsv.size() == rows.size() ? 0 : 1;
+      rows = null;
+      fromCsv = null;
+
+      startTime = System.nanoTime();
+      ColumnarTransactionFile file = ColumnarTransactionFile.open(columnarPath);
+      colOpen = Math.min(colOpen, System.nanoTime() - startTime);
+      found += file.indexOf(target64) >= 0 ? 1 : 0;
+      colFirstQuery = Math.min(colFirstQuery, System.nanoTime() - startTime);
+
+      startTime = System.nanoTime();
+      TransactionColumns fromFile = ColumnarTransactionFile.open(columnarPath).toColumns();
+      colColumns = Math.min(colColumns, System.nanoTime() - startTime);
+      found -= fromFile.size() == file.size() ? 0 : 1;
+    }
+    if (found != 2 * REPETITIONS) {
+      throw new IllegalStateException("兩種格式的查詢結果不同");
+    }
+
+    long csvBytes = Files.size(csvPath);
+    long colBytes = Files.size(columnarPath);
+    System.out.println("+------------------+--------------+--------------------+--------------------+----------------+");
+    System.out.println("| 格式             | 檔案大小     | 載入成物件 (ms)    | 載入成欄位 (ms)    | 首次查詢 (ms)  |");
+    System.out.println("+------------------+--------------+--------------------+--------------------+----------------+");
+    System.out.printf("| %-16s | %-12s | %-18.1f | %-18.1f | %-14.1f |%n", "CSV", MemoryEstimator.format(csvBytes),
+        csvList / 1e6, csvColumns / 1e6, csvFirstQuery / 1e6);
+    System.out.printf("| %-16s | %-12s | %-18s | %-18.1f | %-14.1f |%n", "欄位檔", MemoryEstimator.format(colBytes),
+        String.format("%.2f (只映射)", colOpen / 1e6), colColumns / 1e6, colFirstQuery / 1e6);
+    System.out.println("+------------------+--------------+--------------------+--------------------+----------------+");
+    System.out.printf("%n檔案縮小為 %.0f%%，載入成欄位快 %.1f 倍，首次查詢快 %.1f 倍%n", colBytes * 100.0 / csvBytes,
+        (double) csvColumns / colColumns, (double) csvFirstQuery / colFirstQuery);
+  }
+}
@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 交易資料的二進位欄位檔 (transactions.col)：每個欄位是一段固定寬度的陣列，
+ * 開檔時只讀標頭與物品字典，其餘欄位直接記憶體映射，不需要任何文字解析。
+ *
+ * 檔案格式 (little-endian，與 x86/ARM 的原生順序相同，映射後讀取不需要位元組交換):
+ *   0  int  MAGIC            4  int  VERSION
+ *   8  long 筆數 n           16 int  字典項目數 d      20 int 字典位元組數
+ *   24..63 保留
+ *   64 字典：d 個 (short 長度 + UTF-8 位元組)，補齊到 8 的倍數
+ *   接著依序為 long[n] 壓縮鍵、int[n] epoch day、int[n] 客戶代碼、int[n] 價格 (分)、byte[n] 物品代碼，
+ *   每個欄位的起點都對齊 8 位元組
+ */
+public class ColumnarTransactionFile {
+
+  static final String SUFFIX = ".col";
+  private static final int MAGIC = 0x5458434C; // "TXCL"
+  private static final int VERSION = 1;
+  static final int HEADER_BYTES = 64;
+  static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+  // 單一欄位以一個 MappedByteBuffer 映射，不能超過 2GB
+  private static final long MAX_ROWS = Integer.MAX_VALUE / Long.BYTES;
+
+  private final Path path;
+  private final int size;
+  private final String[] itemDictionary;
+  private final LongBuffer keys;
+  private final IntBuffer epochDays;
+  private final IntBuffer customerIds;
+  private final IntBuffer priceCents;
+  private final ByteBuffer itemCodes;
+
+  private ColumnarTransactionFile(Path path, int size, String[] itemDictionary, LongBuffer keys,
+                                  IntBuffer epochDays, IntBuffer customerIds, IntBuffer priceCents,
+                                  ByteBuffer itemCodes) {
+    this.path = path;
+    this.size = size;
+    this.itemDictionary = itemDictionary;
+    this.keys = keys;
+    this.epochDays = epochDays;
+    this.customerIds = customerIds;
+    this.priceCents = priceCents;
+    this.itemCodes = itemCodes;
+  }
+
+  /**
+   * 各欄位在檔案中的起點；只由筆數與字典決定，所以寫入端可以在資料產生前就算好，
+   * 各分區再以 FileChannel 的絕對位置寫入自己那一段
+   */
+  record Layout(long rows, byte[] dictionary, int dictionaryCount) {
+
+    static Layout of(long rows, String[] itemDictionary) {
+      if (rows > MAX_ROWS) {
+        throw new IllegalArgumentException("欄位檔最多 " + MAX_ROWS + " 筆: " + rows);
+      }
+      if (itemDictionary.length > TransactionColumns.MAX_ITEM_NAMES) {
+        throw new IllegalArgumentException("物品名稱超過 " + TransactionColumns.MAX_ITEM_NAMES + " 種");
+      }
+      int length = 0;
+      byte[][] encoded = new byte[itemDictionary.length][];
+      for (int i = 0; i < encoded.length; i++) {
+        encoded[i] = itemDictionary[i].getBytes(StandardCharsets.UTF_8);
+        length += Short.BYTES + encoded[i].length;
+      }
+      ByteBuffer dictionary = ByteBuffer.allocate(length).order(ORDER);
+      for (byte[] name : encoded) {
+        dictionary.putShort((short) name.length).put(name);
+      }
+      return new Layout(rows, dictionary.array(), itemDictionary.length);
+    }
+
+    long keysOffset() {
+      return align(HEADER_BYTES + dictionary.length);
+    }
+
+    long epochDaysOffset() {
+      return align(keysOffset() + rows * Long.BYTES);
+    }
+
+    long customerIdsOffset() {
+      return align(epochDaysOffset() + rows * Integer.BYTES);
+    }
+
+    long priceCentsOffset() {
+      return align(customerIdsOffset() + rows * Integer.BYTES);
+    }
+
+    long itemCodesOffset() {
+      return align(priceCentsOffset() + rows * Integer.BYTES);
+    }
+
+    long fileBytes() {
+      return itemCodesOffset() + rows;
+    }
+
+    private static long align(long offset) {
+      return (offset + 7) & ~7L;
+    }
+  }
+
+  // --- 寫入 ---
+
+  /**
+   * 把整份欄位式資料寫成欄位檔
+   */
+  public static void write(Path path, TransactionColumns columns) throws IOException {
+    Layout layout = Layout.of(columns.size(), columns.itemDictionary());
+    try (FileChannel out = create(path, layout)) {
+      writeRows(out, layout, 0, columns);
+    }
+  }
+
+  /**
+   * 建立 (覆蓋) 檔案並寫入標頭與字典；欄位內容之後以 writeRows 填入
+   */
+  static FileChannel create(Path path, Layout layout) throws IOException {
+    FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + layout.dictionary().length).order(ORDER);
+      header.putInt(MAGIC).putInt(VERSION).putLong(layout.rows())
+          .putInt(layout.dictionaryCount()).putInt(layout.dictionary().length);
+      header.position(HEADER_BYTES);
+      header.put(layout.dictionary()).flip();
+      writeFully(out, header, 0);
+      // 預先延伸到完整大小，各分區可以用任意順序寫入
+      if (layout.fileBytes() > 0) {
+        writeFully(out, ByteBuffer.allocate(1), layout.fileBytes() - 1);
+      }
+      return out;
+    } catch (IOException e) {
+      out.close();
+      throw e;
+    }
+  }
+
+  /**
+   * 把 rows 寫到各欄位的第 firstRow 列開始的位置；不同分區可以由多個執行緒同時寫入
+   */
+  static void writeRows(FileChannel out, Layout layout, long firstRow, TransactionColumns rows) throws IOException {
+    int n = rows.size();
+    ByteBuffer buffer = ByteBuffer.allocate(n * Long.BYTES).order(ORDER);
+    buffer.asLongBuffer().put(rows.keys());
+    buffer.limit(n * Long.BYTES);
+    writeFully(out, buffer, layout.keysOffset() + firstRow * Long.BYTES);
+    writeInts(out, buffer, rows.epochDays(), layout.epochDaysOffset() + firstRow * Integer.BYTES);
+    writeInts(out, buffer, rows.customerIds(), layout.customerIdsOffset() + firstRow * Integer.BYTES);
+    writeInts(out, buffer, rows.priceCents(), layout.priceCentsOffset() + firstRow * Integer.BYTES);
+    writeFully(out, ByteBuffer.wrap(rows.itemCodes()), layout.itemCodesOffset() + firstRow);
+  }
+
+  private static void writeInts(FileChannel out, ByteBuffer buffer, int[] values, long position) throws IOException {
+    buffer.clear();
+    buffer.asIntBuffer().put(values);
+    buffer.limit(values.length * Integer.BYTES);
+    writeFully(out, buffer, position);
+  }
+
+  private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += out.write(buffer, position);
+    }
+  }
+
+  // --- 讀取 ---
+
+  /**
+   * 映射欄位檔；只讀取標頭與字典
+   * @throws IOException 檔案不是欄位檔、版本不符或大小與標頭不一致
+   */
+  public static ColumnarTransactionFile open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+      if (channel.size() < HEADER_BYTES || channel.read(header, 0) < HEADER_BYTES) {
+        throw new IOException("不是交易欄位檔: " + path);
+      }
+      header.flip();
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        throw new IOException("不是交易欄位檔或版本不符: " + path);
+      }
+      long rows = header.getLong();
+      int dictionaryCount = header.getInt();
+      int dictionaryBytes = header.getInt();
+      if (rows < 0 || rows > MAX_ROWS || dictionaryCount < 0 || dictionaryCount > TransactionColumns.MAX_ITEM_NAMES
+          || dictionaryBytes < 0 || HEADER_BYTES + (long) dictionaryBytes > channel.size()) {
+        throw new IOException("欄位檔標頭損毀: " + path);
+      }
+
+      ByteBuffer dictionary = ByteBuffer.allocate(dictionaryBytes).order(ORDER);
+      channel.read(dictionary, HEADER_BYTES);
+      dictionary.flip();
+      String[] names = new String[dictionaryCount];
+      for (int i = 0; i < dictionaryCount; i++) {
+        byte[] name = new byte[dictionary.getShort()];
+        dictionary.get(name);
+        names[i] = new String(name, StandardCharsets.UTF_8);
+      }
+
+      Layout layout = new Layout(rows, dictionary.array(), dictionaryCount);
+      if (channel.size() != layout.fileBytes()) {
+        throw new IOException("欄位檔大小不符，預期 " + layout.fileBytes() + " 位元組: " + path);
+      }
+      int n = (int) rows;
+      return new ColumnarTransactionFile(path, n, names,
+          map(channel, layout.keysOffset(), (long) n * Long.BYTES).asLongBuffer(),
+          map(channel, layout.epochDaysOffset(), (long) n * Integer.BYTES).asIntBuffer(),
+          map(channel, layout.customerIdsOffset(), (long) n * Integer.BYTES).asIntBuffer(),
+          map(channel, layout.priceCentsOffset(), (long) n * Integer.BYTES).asIntBuffer(),
+          map(channel, layout.itemCodesOffset(), n));
+    }
+  }
+
+  private static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ORDER);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public Path path() {
+    return path;
+  }
+
+  public long key(int row) {
+    return keys.get(row);
+  }
+
+  public int epochDay(int row) {
+    return epochDays.get(row);
+  }
+
+  public int customerId(int row) {
+    return customerIds.get(row);
+  }
+
+  public int priceCents(int row) {
+    return priceCents.get(row);
+  }
+
+  public String itemName(int row) {
+    return itemDictionary[itemCodes.get(row) & 0xFF];
+  }
+
+  /**
+   * 還原成 Transaction；價格由「分」換回 double
+   */
+  public Transaction get(int row) {
+    return new Transaction(
+        TransactionColumns.unpackKey(keys.get(row)),
+        TransactionColumns.unpackDate(epochDays.get(row)),
+        TransactionColumns.unpackCustomerId(customerIds.get(row)),
+        itemName(row),
+        priceCents.get(row) / 100.0
+    );
+  }
+
+  /**
+   * 直接在映射的鍵欄位上循序比對，不需要先載入或建立索引
+   * @return 第一筆相符的列；找不到時回傳 -1
+   */
+  public int indexOf(long packed) {
+    for (int row = 0; row < size; row++) {
+      if (keys.get(row) == packed) {
+        return row;
+      }
+    }
+    return -1;
+  }
+
+  public int indexOf(String key) {
+    long packed = TransactionColumns.packKey(key);
+    return (packed == TransactionColumns.INVALID_KEY) ? -1 : indexOf(packed);
+  }
+
+  /**
+   * 把映射的欄位整批複製成堆積上的 TransactionColumns，供需要 long[] / int[] 的搜尋結構使用
+   */
+  public TransactionColumns toColumns() {
+    long[] keyArray = new long[size];
+    int[] dayArray = new int[size];
+    int[] customerArray = new int[size];
+    byte[] itemArray = new byte[size];
+    int[] centArray = new int[size];
+    keys.get(0, keyArray);
+    epochDays.get(0, dayArray);
+    customerIds.get(0, customerArray);
+    itemCodes.get(0, itemArray);
+    priceCents.get(0, centArray);
+    return new TransactionColumns(keyArray, dayArray, customerArray, itemArray, itemDictionary.clone(), centArray);
+  }
+
+  /**
+   * 由 CSV 路徑推得欄位檔路徑：transactions.csv → transactions.col
+   */
+  public static Path columnarPathFor(Path csvPath) {
+    String name = csvPath.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return csvPath.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + SUFFIX);
+  }
+}
@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Predicate;
+
+/**
+ * 多執行緒查詢的負載測試：N 個執行緒同時對同一個搜尋結構查詢，
+ * 回報總吞吐量 (ops/s) 與每次查詢延遲的 p50 / p99，觀察執行緒數從 1 增加到 64 時的變化。
+ * 每種結構都可以分別用平台執行緒與虛擬執行緒執行。
+ *
+ * 用法: java ConcurrentLoadTest [--algorithms binary,hash,...] [--threads 1,2,4,8,16,32,64]
+ *                               [--modes platform,virtual] [--size 1000000] [--csv transactions.csv]
+ *                               [--hit-ratio 0.5] [--duration-ms 1000] [--warmup-ms 300] [--seed 42]
+ * 可用的結構與 SearchBenchmark 相同；虛擬執行緒需要 JDK 21 以上，較舊的 JVM 會略過該模式。
+ */
+public class ConcurrentLoadTest {
+
+  static final String PLATFORM = "platform";
+  static final String VIRTUAL = "virtual";
+  // 查詢結果最後寫到這裡，避免 JIT 把查詢當成沒有作用而刪除
+  private static volatile long sink;
+
+  /**
+   * 負載測試設定
+   */
+  record Settings(List<String> algorithms, List<Integer> threadCounts, List<String> modes, int size, String csv,
+                  double hitRatio, long durationMillis, long warmupMillis, long seed) {
+  }
+
+  /**
+   * 一個 (結構, 模式, 執行緒數) 組合的結果
+   */
+  record Result(String algorithm, String mode, int threads, long operations, long elapsedNanos,
+                long p50Nanos, long p99Nanos) {
+    double throughput() {
+      return operations / (elapsedNanos / 1e9);
+    }
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    Settings settings = parseSettings(args);
+    for (String algorithm : settings.algorithms()) {
+      if (!SearchBenchmark.ALGORITHMS.containsKey(algorithm)) {
+        throw new IllegalArgumentException("未知的演算法: " + algorithm + "，可用: "
+            + SearchBenchmark.ALGORITHMS.keySet());
+      }
+    }
+
+    SearchBenchmark.Dataset data;
+    if (settings.csv() != null) {
+      List<Transaction> transactions = SearchPerformanceComparison.loadTransactions(settings.csv());
+      if (transactions.isEmpty()) {
+        System.out.println("讀取資料失敗或檔案為空，程式終止。");
+        return;
+      }
+      data = SearchBenchmark.createDataset(transactions, settings.hitRatio(), settings.seed());
+    } else {
+      data = SearchBenchmark.createDataset(settings.size(), settings.hitRatio(), settings.seed());
+    }
+    System.out.printf("資料量 %d，命中率 %.0f%%，每個組合量測 %d ms，CPU 核心 %d%n%n", data.transactions().size(),
+        settings.hitRatio() * 100, settings.durationMillis(), Runtime.getRuntime().availableProcessors());
+
+    ThreadFactory virtualFactory = virtualThreadFactory();
+    List<Result> results = new ArrayList<>();
+    for (String algorithm : settings.algorithms()) {
+      Predicate<String> search = SearchBenchmark.ALGORITHMS.get(algorithm).apply(data);
+      for (String mode : settings.modes()) {
+        ThreadFactory factory = mode.equals(VIRTUAL) ? virtualFactory : Thread::new;
+        if (factory == null) {
+          System.out.println("# " + algorithm + " " + mode + ": 此 JVM (" + Runtime.version()
+              + ") 不支援虛擬執行緒，需要 JDK 21 以上，略過");
+          continue;
+        }
+        for (int threads : settings.threadCounts()) {
+          // 暖機結果不記錄，只讓 JIT 先編譯好查詢路徑
+          run(algorithm, mode, factory, search, data.queries(), threads, settings.warmupMillis());
+          Result result = run(algorithm, mode, factory, search, data.queries(), threads,
+              settings.durationMillis());
+          results.add(result);
+          System.out.printf("# %s %s x%d: %.0f ops/s%n", algorithm, mode, threads, result.throughput());
+        }
+      }
+    }
+    printTable(results);
+  }
+
+  /**
+   * 啟動 threads 個查詢執行緒，同時開始、在 durationMillis 後一起停止
+   */
+  static Result run(String algorithm, String mode, ThreadFactory factory, Predicate<String> search,
+                    String[] queries, int threads, long durationMillis) throws InterruptedException {
+    QueryWorker[] workers = new QueryWorker[threads];
+    Thread[] handles = new Thread[threads];
+    CountDownLatch ready = new CountDownLatch(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    for (int i = 0; i < threads; i++) {
+      // 每個執行緒從不同位置開始走訪查詢鍵，避免全部同時查同一個 KEY
+      workers[i] = new QueryWorker(search, queries, i * (queries.length / threads), ready, start);
+      handles[i] = factory.newThread(workers[i]);
+      handles[i].start();
+    }
+    ready.await();
+    long startTime = System.nanoTime();
+    start.countDown();
+    Thread.sleep(durationMillis);
+    for (QueryWorker worker : workers) {
+      worker.running = false;
+    }
+    for (Thread handle : handles) {
+      handle.join();
+    }
+    long elapsed = System.nanoTime() - startTime;
+
+    long hits = 0;
+    LatencyHistogram latencies = new LatencyHistogram();
+    for (QueryWorker worker : workers) {
+      hits += worker.hits;
+      latencies.add(worker.latencies);
+    }
+    sink = hits;
+    return new Result(algorithm, mode, threads, latencies.count(), elapsed,
+        latencies.valueAtPercentile(50), latencies.valueAtPercentile(99));
+  }
+
+  /**
+   * 單一查詢執行緒；每個執行緒記錄自己的延遲直方圖，結束後再合併，記錄時不需要同步
+   */
+  private static final class QueryWorker implements Runnable {
+    private final Predicate<String> search;
+    private final String[] queries;
+    private final int offset;
+    private final CountDownLatch ready;
+    private final CountDownLatch start;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private volatile boolean running = true;
+    private long hits;
+
+    QueryWorker(Predicate<String> search, String[] queries, int offset, CountDownLatch ready, CountDownLatch start) {
+      this.search = search;
+      this.queries = queries;
+      this.offset = offset;
+      this.ready = ready;
+      this.start = start;
+    }
+
+    @Override
+    public void run() {
+      ready.countDown();
+      try {
+        start.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      int cursor = offset;
+      long found = 0;
+      while (running) {
+        long begin = System.nanoTime();
+        if (search.test(queries[cursor])) {
+          found++;
+        }
+        latencies.record(System.nanoTime() - begin);
+        if (++cursor == queries.length) {
+          cursor = 0;
+        }
+      }
+      hits = found;
+    }
+  }
+
+  /**
+   * 以反射取得 Thread.ofVirtual().factory()，讓這個類別在 JDK 17 也能編譯與執行
+   * @return 虛擬執行緒工廠；JVM 不支援時回傳 null
+   */
+  static ThreadFactory virtualThreadFactory() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      // JDK 19/20 未開啟 --enable-preview 時，呼叫會以 UnsupportedOperationException 失敗
+      return null;
+    }
+  }
+
+  private static void printTable(List<Result> results) {
+    System.out.println();
+    System.out.println("+----------------+----------+--------+------------------+------------+------------+");
+    System.out.println("| 結構           | 執行緒   | 數量   | 吞吐量 (ops/s)   | p50 (ns)   | p99 (ns)   |");
+    System.out.println("+----------------+----------+--------+------------------+------------+------------+");
+    for (Result r : results) {
+      System.out.printf("| %-14s | %-8s | %-6d | %-16.0f | %-10d | %-10d |%n",
+          r.algorithm(), r.mode(), r.threads(), r.throughput(), r.p50Nanos(), r.p99Nanos());
+    }
+    System.out.println("+----------------+----------+--------+------------------+------------+------------+");
+  }
+
+  private static Settings parseSettings(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i < args.length; i += 2) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("無法辨識的參數: " + args[i]);
+      }
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("參數缺少值: " + args[i]);
+      }
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    List<Integer> threadCounts = new ArrayList<>();
+    for (String s : options.getOrDefault("threads", "1,2,4,8,16,32,64").split(",")) {
+      threadCounts.add(Integer.parseInt(s.trim()));
+    }
+    return new Settings(
+        List.of(options.getOrDefault("algorithms",
+            "binary,hash,columnBinary,eytzinger,learned,radixTree,openAddressing").split(",")),
+        threadCounts,
+        List.of(options.getOrDefault("modes", PLATFORM + "," + VIRTUAL).split(",")),
+        Integer.parseInt(options.getOrDefault("size", "1000000")),
+        options.get("csv"),
+        Double.parseDouble(options.getOrDefault("hit-ratio", "0.5")),
+        Long.parseLong(options.getOrDefault("duration-ms", "1000")),
+        Long.parseLong(options.getOrDefault("warmup-ms", "300")),
+        Long.parseLong(options.getOrDefault("seed", "42")));
+  }
+}
@@ -0,0 +1,140 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * customers.csv 客戶維度表的欄位式儲存：客戶代碼壓成 int，城市與會員等級存成字典代碼。
+ * 由 GenerateTransactionData 產生，交易的客戶代碼以 TransactionColumns.packCustomerId 對應到這裡的 customerIds。
+ */
+public class CustomerTable {
+
+  private final int[] customerIds;
+  private final String[] names;
+  private final byte[] cityCodes;
+  private final String[] cityDictionary;
+  private final byte[] tierCodes;
+  private final String[] tierDictionary;
+  private final int[] joinEpochDays;
+
+  private CustomerTable(int[] customerIds, String[] names, byte[] cityCodes, String[] cityDictionary,
+                        byte[] tierCodes, String[] tierDictionary, int[] joinEpochDays) {
+    this.customerIds = customerIds;
+    this.names = names;
+    this.cityCodes = cityCodes;
+    this.cityDictionary = cityDictionary;
+    this.tierCodes = tierCodes;
+    this.tierDictionary = tierDictionary;
+    this.joinEpochDays = joinEpochDays;
+  }
+
+  /**
+   * 讀取 customers.csv (含標頭)；格式不符的列略過
+   */
+  public static CustomerTable load(Path path) throws IOException {
+    List<String[]> rows = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      reader.readLine(); // 跳過標頭
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] values = line.split(",");
+        if (values.length == 5 && TransactionColumns.packCustomerId(values[0]) != TransactionColumns.INVALID_CUSTOMER) {
+          rows.add(values);
+        }
+      }
+    }
+
+    int n = rows.size();
+    int[] customerIds = new int[n];
+    String[] names = new String[n];
+    byte[] cityCodes = new byte[n];
+    byte[] tierCodes = new byte[n];
+    int[] joinEpochDays = new int[n];
+    Map<String, Integer> cities = new HashMap<>();
+    Map<String, Integer> tiers = new HashMap<>();
+    for (int i = 0; i < n; i++) {
+      String[] values = rows.get(i);
+      customerIds[i] = TransactionColumns.packCustomerId(values[0]);
+      names[i] = values[1];
+      cityCodes[i] = (byte) dictionaryCode(cities, values[2]);
+      tierCodes[i] = (byte) dictionaryCode(tiers, values[3]);
+      joinEpochDays[i] = TransactionColumns.packDate(values[4]);
+    }
+    return new CustomerTable(customerIds, names, cityCodes, toDictionary(cities), tierCodes, toDictionary(tiers),
+        joinEpochDays);
+  }
+
+  private static int dictionaryCode(Map<String, Integer> dictionary, String value) {
+    Integer code = dictionary.get(value);
+    if (code == null) {
+      if (dictionary.size() == TransactionColumns.MAX_ITEM_NAMES) {
+        throw new IllegalArgumentException("不同的值超過 " + TransactionColumns.MAX_ITEM_NAMES + " 種: " + value);
+      }
+      code = dictionary.size();
+      dictionary.put(value, code);
+    }
+    return code;
+  }
+
+  private static String[] toDictionary(Map<String, Integer> codes) {
+    String[] dictionary = new String[codes.size()];
+    codes.forEach((value, code) -> dictionary[code] = value);
+    return dictionary;
+  }
+
+  public int size() {
+    return customerIds.length;
+  }
+
+  /**
+   * 壓縮後的客戶代碼欄位，作為 join 的鍵
+   */
+  public int[] customerIds() {
+    return customerIds;
+  }
+
+  public String customerId(int row) {
+    return TransactionColumns.unpackCustomerId(customerIds[row]);
+  }
+
+  public String name(int row) {
+    return names[row];
+  }
+
+  public String city(int row) {
+    return cityDictionary[cityCodes[row] & 0xFF];
+  }
+
+  public String tier(int row) {
+    return tierDictionary[tierCodes[row] & 0xFF];
+  }
+
+  int tierCode(int row) {
+    return tierCodes[row] & 0xFF;
+  }
+
+  String[] tierDictionary() {
+    return Arrays.copyOf(tierDictionary, tierDictionary.length);
+  }
+
+  public String joinDate(int row) {
+    return TransactionColumns.unpackDate(joinEpochDays[row]);
+  }
+
+  public long estimatedBytes() {
+    long bytes = MemoryEstimator.arrayBytes(customerIds.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(names.length, MemoryEstimator.REFERENCE_BYTES)
+        + 2 * MemoryEstimator.arrayBytes(customerIds.length, Byte.BYTES)
+        + MemoryEstimator.arrayBytes(joinEpochDays.length, Integer.BYTES);
+    for (String name : names) {
+      bytes += MemoryEstimator.stringBytes(name);
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,63 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 比較傳統二分搜尋 (Arrays.binarySearch) 與 Eytzinger 排列在不同資料量下的查詢時間，
+ * 觀察資料超出各層快取後兩者差距如何改變。
+ * 用法: java EytzingerBenchmark [最大資料量，預設 16777216]
+ */
+public class EytzingerBenchmark {
+
+  private static final int QUERY_COUNT = 1 << 20;
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) {
+    int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 24;
+    SplittableRandom random = new SplittableRandom(42);
+    long keySpace = 3_656_158_440_062_976L; // 36^10
+
+    System.out.println("+------------+--------------------+--------------------+----------+");
+    System.out.println("| 資料量     | 二分搜尋 (ns/次)   | Eytzinger (ns/次)  | 加速倍數 |");
+    System.out.println("+------------+--------------------+--------------------+----------+");
+    for (int size = 1 << 10; size <= maxSize; size <<= 2) {
+      long[] keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = random.nextLong(keySpace);
+      }
+      Arrays.sort(keys);
+      EytzingerIndex index = EytzingerIndex.build(keys);
+
+      // 一半命中、一半隨機 (幾乎都不存在)
+      long[] queries = new long[QUERY_COUNT];
+      for (int i = 0; i < QUERY_COUNT; i++) {
+        queries[i] = (i % 2 == 0) ? keys[random.nextInt(size)] : random.nextLong(keySpace);
+      }
+
+      long binaryBest = Long.MAX_VALUE;
+      long eytzingerBest = Long.MAX_VALUE;
+      long checksum = 0;
+      for (int round = 0; round < ROUNDS; round++) {
+        long start = System.nanoTime();
+        for (long q : queries) {
+          checksum += Arrays.binarySearch(keys, q) >= 0 ? 1 : 0;
+        }
+        binaryBest = Math.min(binaryBest, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (long q : queries) {
+          checksum -= index.find(q) >= 0 ? 1 : 0;
+        }
+        eytzingerBest = Math.min(eytzingerBest, System.nanoTime() - start);
+      }
+      if (checksum != 0) {
+        throw new IllegalStateException("兩種搜尋的命中數不同");
+      }
+
+      double binaryNs = binaryBest / (double) QUERY_COUNT;
+      double eytzingerNs = eytzingerBest / (double) QUERY_COUNT;
+      System.out.printf("| %-10d | %-18.1f | %-18.1f | %7.2fx |%n",
+          size, binaryNs, eytzingerNs, binaryNs / eytzingerNs);
+    }
+    System.out.println("+------------+--------------------+--------------------+----------+");
+  }
+}
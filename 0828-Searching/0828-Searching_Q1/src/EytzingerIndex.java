@@ -0,0 +1,107 @@
+/**
+ * 以 Eytzinger (BFS / 堆積) 順序排列已排序的壓縮鍵：節點 k 的子節點是 2k 與 2k+1。
+ * 前幾層集中在陣列開頭而常駐快取，往下走時同一層的候選位置彼此相鄰，
+ * 節點 k 往下三層的 8 個後代 (8k..8k+7) 也彼此相鄰，可以提前讀取。
+ * 下降過程只依比較結果算出下一個索引，不需要分支。
+ */
+public class EytzingerIndex {
+
+  private static final long PREFETCH_SENTINEL = 0x5EED_5EED_5EED_5EEDL;
+
+  // tree[0] 不使用，節點從 1 開始編號
+  private final long[] tree;
+  private final int[] rows;
+  private final int size;
+
+  private EytzingerIndex(long[] tree, int[] rows, int size) {
+    this.tree = tree;
+    this.rows = rows;
+    this.size = size;
+  }
+
+  /**
+   * 由已排序的鍵建立索引，查詢結果為鍵在排序陣列中的位置
+   */
+  public static EytzingerIndex build(long[] sortedKeys) {
+    int[] positions = new int[sortedKeys.length];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = i;
+    }
+    return build(sortedKeys, positions);
+  }
+
+  /**
+   * @param sortedKeys 由小到大排序的壓縮鍵
+   * @param sortedRows 每個鍵對應的列序號，與 sortedKeys 同順序
+   */
+  public static EytzingerIndex build(long[] sortedKeys, int[] sortedRows) {
+    int n = sortedKeys.length;
+    long[] tree = new long[n + 1];
+    int[] rows = new int[n + 1];
+    // 依中序走訪 (左子樹、自己、右子樹) 依序填入排序後的鍵；以明確堆疊取代遞迴
+    int[] stack = new int[64];
+    int depth = 0;
+    int next = 0;
+    int k = 1;
+    while (k <= n || depth > 0) {
+      if (k <= n) {
+        stack[depth++] = k;
+        k = 2 * k;
+      } else {
+        k = stack[--depth];
+        tree[k] = sortedKeys[next];
+        rows[k] = sortedRows[next];
+        next++;
+        k = 2 * k + 1;
+      }
+    }
+    return new EytzingerIndex(tree, rows, n);
+  }
+
+  /**
+   * @return 列序號；找不到時回傳 -1
+   */
+  public int find(long key) {
+    int k = 1;
+    long touched = 0;
+    while (k <= size) {
+      // Java 沒有 prefetch 指令：先讀取三層以下的節點 8k (一條快取線放得下 8 個 long)，
+      // 讓記憶體請求與接下來三次比較重疊，效果等同軟體預取；先比較再位移，8k 不會超出 int
+      touched += tree[(k <= size >>> 3) ? k << 3 : size];
+      k = 2 * k + (tree[k] < key ? 1 : 0);
+    }
+    int result = resultAt(k, key);
+    // 預先讀取的值必須影響回傳值，JIT 才不會刪除它；幾乎不會相等，相等時改走不預取的路徑，結果相同
+    return (touched != PREFETCH_SENTINEL) ? result : findWithoutPrefetch(key);
+  }
+
+  private int findWithoutPrefetch(long key) {
+    int k = 1;
+    while (k <= size) {
+      k = 2 * k + (tree[k] < key ? 1 : 0);
+    }
+    return resultAt(k, key);
+  }
+
+  /**
+   * 走到底後，去掉最後一串「往右」的步驟 (低位的 1 與其上一個 0)，就回到第一個 >= key 的節點
+   */
+  private int resultAt(int k, long key) {
+    k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+    return (k != 0 && tree[k] == key) ? rows[k] : -1;
+  }
+
+  public boolean contains(String key) {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && find(packed) >= 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long estimatedBytes() {
+    return MemoryEstimator.arrayBytes(tree.length, Long.BYTES)
+        + MemoryEstimator.arrayBytes(rows.length, Integer.BYTES);
+  }
+}
@@ -0,0 +1,275 @@
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 以前端編碼 (front coding) 壓縮的排序 KEY 字典，與 SSTable 的資料區塊相同：
+ * 每 blockSize 個 KEY 為一個區塊，區塊第一個 KEY (restart key) 完整保存，
+ * 其餘只存「與前一個 KEY 相同的前綴長度 + 不同的後綴」。
+ * 排序後相鄰的 KEY 共用 "TX-" 與前幾個字元，每個 KEY 只需存幾個位元組，不必各自是一個 String。
+ *
+ * 查詢時先對各區塊的 restart key 做二分搜尋，再在區塊內一邊解碼一邊比對。
+ * 區塊內的比對只記住「目前 KEY 與查詢相同的前綴長度」，不需要還原完整字串。
+ *
+ * 編碼 (長度皆為 varint，通常 1 個位元組)：
+ * - restart key: 長度, 位元組
+ * - 其他 KEY:    相同前綴長度, 後綴長度, 後綴位元組
+ * KEY 以 UTF-8 比較 (無號位元組順序)；交易 KEY 只有 ASCII，與 String.compareTo 的順序相同。
+ */
+public class FrontCodedKeyDictionary {
+
+  static final int MIN_BLOCK_SIZE = 16;
+  static final int MAX_BLOCK_SIZE = 64;
+  static final int DEFAULT_BLOCK_SIZE = 32;
+
+  private final byte[] data;
+  private final int[] restarts;
+  private final int blockSize;
+  private final int size;
+
+  private FrontCodedKeyDictionary(byte[] data, int[] restarts, int blockSize, int size) {
+    this.data = data;
+    this.restarts = restarts;
+    this.blockSize = blockSize;
+    this.size = size;
+  }
+
+  /**
+   * 取出交易的 KEY 排序後建立字典；重複的 KEY 會保留
+   */
+  public static FrontCodedKeyDictionary fromTransactions(List<Transaction> transactions, int blockSize) {
+    String[] keys = new String[transactions.size()];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = transactions.get(i).key();
+    }
+    Arrays.sort(keys);
+    return build(Arrays.asList(keys), blockSize);
+  }
+
+  /**
+   * 直接由磁碟索引已排序的壓縮鍵建立字典，不必載入 List&lt;Transaction&gt;；
+   * 壓縮鍵的大小順序與字串順序相同，KEY 只在編碼時逐一還原，不會同時存在
+   */
+  public static FrontCodedKeyDictionary fromIndex(TransactionIndexFile index, int blockSize) {
+    return build(new AbstractList<String>() {
+      @Override
+      public String get(int position) {
+        return TransactionColumns.unpackKey(index.keyAt(position));
+      }
+
+      @Override
+      public int size() {
+        return index.size();
+      }
+    }, blockSize);
+  }
+
+  /**
+   * @param sortedKeys 由小到大排序的 KEY
+   * @param blockSize 每個區塊的 KEY 數，MIN_BLOCK_SIZE 到 MAX_BLOCK_SIZE；越大越省記憶體，區塊內掃描越長
+   */
+  public static FrontCodedKeyDictionary build(List<String> sortedKeys, int blockSize) {
+    if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+      throw new IllegalArgumentException("區塊大小必須在 " + MIN_BLOCK_SIZE + " 到 " + MAX_BLOCK_SIZE + " 之間: " + blockSize);
+    }
+    int[] restarts = new int[(sortedKeys.size() + blockSize - 1) / blockSize];
+    byte[] data = new byte[Math.max(16, sortedKeys.size() * 4)];
+    int length = 0;
+    byte[] previous = new byte[0];
+    for (int i = 0; i < sortedKeys.size(); i++) {
+      byte[] key = sortedKeys.get(i).getBytes(StandardCharsets.UTF_8);
+      if (compare(previous, key) > 0) {
+        throw new IllegalArgumentException("KEY 沒有排序: " + sortedKeys.get(i - 1) + " > " + sortedKeys.get(i));
+      }
+      int shared = 0;
+      if (i % blockSize == 0) {
+        restarts[i / blockSize] = length;
+      } else {
+        int limit = Math.min(previous.length, key.length);
+        while (shared < limit && previous[shared] == key[shared]) {
+          shared++;
+        }
+      }
+      // 最多兩個 varint (各 5 個位元組) 加上後綴
+      if (length + 10 + key.length - shared > data.length) {
+        data = Arrays.copyOf(data, Math.max(data.length * 2, length + 10 + key.length));
+      }
+      if (i % blockSize != 0) {
+        length = writeVarint(data, length, shared);
+      }
+      length = writeVarint(data, length, key.length - shared);
+      System.arraycopy(key, shared, data, length, key.length - shared);
+      length += key.length - shared;
+      previous = key;
+    }
+    return new FrontCodedKeyDictionary(Arrays.copyOf(data, length), restarts, blockSize, sortedKeys.size());
+  }
+
+  public boolean contains(String key) {
+    return indexOf(key) >= 0;
+  }
+
+  /**
+   * @return KEY 在排序順序中的位置；找不到時回傳 -1
+   */
+  public int indexOf(String key) {
+    byte[] query = key.getBytes(StandardCharsets.UTF_8);
+
+    // 找出最後一個 restart key <= query 的區塊
+    int lo = 0;
+    int hi = restarts.length - 1;
+    int block = -1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int c = compareRestart(mid, query);
+      if (c == 0) {
+        return mid * blockSize;
+      } else if (c < 0) {
+        block = mid;
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    if (block < 0) {
+      return -1;
+    }
+
+    // 目前的 KEY 一定小於 query；matched 是兩者相同的前綴長度
+    int position = restarts[block];
+    int keyLength = readVarint(position);
+    position += varintBytes(keyLength);
+    int matched = 0;
+    while (matched < keyLength && matched < query.length && data[position + matched] == query[matched]) {
+      matched++;
+    }
+    position += keyLength;
+
+    int end = Math.min(blockSize, size - block * blockSize);
+    for (int i = 1; i < end; i++) {
+      int shared = readVarint(position);
+      position += varintBytes(shared);
+      int suffixLength = readVarint(position);
+      position += varintBytes(suffixLength);
+      if (shared < matched) {
+        // 這個 KEY 在 shared 處比前一個大，而前一個在該處與 query 相同，所以已經超過 query
+        return -1;
+      }
+      if (shared == matched) {
+        int j = 0;
+        while (j < suffixLength && matched + j < query.length && data[position + j] == query[matched + j]) {
+          j++;
+        }
+        if (j == suffixLength) {
+          if (matched + j == query.length) {
+            return block * blockSize + i;
+          }
+          // 這個 KEY 是 query 的前綴，仍小於 query
+        } else if (matched + j == query.length || (data[position + j] & 0xFF) > (query[matched + j] & 0xFF)) {
+          return -1;
+        }
+        matched += j;
+      }
+      // shared > matched：在 matched 處與前一個 KEY 相同，仍小於 query
+      position += suffixLength;
+    }
+    return -1;
+  }
+
+  /**
+   * 解碼排序順序中第 index 個 KEY
+   */
+  public String keyAt(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    int position = restarts[index / blockSize];
+    byte[] key = new byte[0];
+    for (int i = 0; i <= index % blockSize; i++) {
+      int shared = 0;
+      if (i > 0) {
+        shared = readVarint(position);
+        position += varintBytes(shared);
+      }
+      int suffixLength = readVarint(position);
+      position += varintBytes(suffixLength);
+      key = Arrays.copyOf(key, shared + suffixLength);
+      System.arraycopy(data, position, key, shared, suffixLength);
+      position += suffixLength;
+    }
+    return new String(key, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * 比較第 block 個區塊的 restart key 與 query，不建立字串
+   */
+  private int compareRestart(int block, byte[] query) {
+    int position = restarts[block];
+    int keyLength = readVarint(position);
+    position += varintBytes(keyLength);
+    int limit = Math.min(keyLength, query.length);
+    for (int i = 0; i < limit; i++) {
+      int c = (data[position + i] & 0xFF) - (query[i] & 0xFF);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return keyLength - query.length;
+  }
+
+  private static int compare(byte[] a, byte[] b) {
+    return Arrays.compareUnsigned(a, b);
+  }
+
+  private static int writeVarint(byte[] out, int position, int value) {
+    while ((value & ~0x7F) != 0) {
+      out[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out[position++] = (byte) value;
+    return position;
+  }
+
+  private int readVarint(int position) {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = data[position++];
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+
+  private static int varintBytes(int value) {
+    int bytes = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      bytes++;
+    }
+    return bytes;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int blockSize() {
+    return blockSize;
+  }
+
+  public long estimatedBytes() {
+    return MemoryEstimator.arrayBytes(data.length, Byte.BYTES) + MemoryEstimator.arrayBytes(restarts.length, Integer.BYTES);
+  }
+
+  public double bytesPerKey() {
+    return estimatedBytes() / (double) Math.max(1, size);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d 個 KEY，區塊 %d 個，%s (%.2f bytes/key)", size, blockSize,
+        MemoryEstimator.format(estimatedBytes()), bytesPerKey());
+  }
+}
@@ -1,126 +1,430 @@
-import java.io.FileWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.text.DecimalFormat;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.Random;
-import java.util.UUID;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * 產生交易測試資料。
+ * 用法: java GenerateTransactionData [--rows 1000000] [--seed 種子] [--threads 核心數] [--format csv|columnar]
+ *                                    [--out transactions.csv 或 transactions.col]
+ *                                    [--customers 100000] [--customers-out customers.csv]
+ *
+ * 資料切成固定大小的分區，每個分區用「種子 + 分區編號」建立自己的 SplittableRandom，
+ * 在工作執行緒上直接編碼成位元組，再由主執行緒依分區順序透過 FileChannel 寫出；
+ * 因此同一個種子無論用幾個執行緒，輸出都完全相同。
+ * --format columnar 改為輸出 ColumnarTransactionFile 的二進位欄位檔；同一個種子兩種格式的內容相同。
+ * 另外輸出 customers.csv 客戶維度表，交易的客戶代碼都取自其中的 CUST-00000000 到 CUST-(customers - 1)。
+ */
 public class GenerateTransactionData {
 
+  static final String HEADER = "交易代碼KEY,交易日期,客戶代碼,物品名稱,價格";
+  static final String CUSTOMER_HEADER = "客戶代碼,客戶名稱,城市,會員等級,加入日期";
+  static final String CSV = "csv";
+  static final String COLUMNAR = "columnar";
+  // 分區大小固定，才能讓輸出與執行緒數無關
+  static final int PARTITION_ROWS = 1 << 16;
+  static final long KEY_SPACE = 3_656_158_440_062_976L; // 36^10
+  static final int CUSTOMER_SPACE = 100_000_000;        // 8 位數
+  static final int DEFAULT_CUSTOMERS = 100_000;
+  static final int MIN_PRICE_CENTS = 1_000;             // 10.00
+  static final int MAX_PRICE_CENTS = 500_000;           // 5000.00 (不含)
+  static final LocalDate FIRST_DATE = LocalDate.of(2023, 1, 1);
+  static final LocalDate END_DATE = LocalDate.of(2025, 12, 31); // 不含
+
+  // 更新為大宗原物料期貨交易標的
+  static final String[] ITEM_NAMES = {
+      // 能源 (Energy)
+      "WTI原油期貨 (Crude Oil WTI)",
+      "布蘭特原油期貨 (Brent Crude)",
+      "天然氣期貨 (Natural Gas)",
+      "熱燃油期貨 (Heating Oil)",
+
+      // 貴金屬 (Precious Metals)
+      "黃金期貨 (Gold)",
+      "白銀期貨 (Silver)",
+      "鉑金期貨 (Platinum)",
+      "鈀金期貨 (Palladium)",
+
+      // 工業金屬 (Industrial Metals)
+      "銅期貨 (Copper)",
+      "鋁期貨 (Aluminum)",
+      "鋅期貨 (Zinc)",
+      "鎳期貨 (Nickel)",
+      "鉛期貨 (Lead)",
+      "鐵礦石期貨 (Iron Ore)",
+
+      // 農產品 (Agricultural)
+      "玉米期貨 (Corn)",
+      "小麥期貨 (Wheat)",
+      "黃豆期貨 (Soybeans)",
+      "黃豆油期貨 (Soybean Oil)",
+      "黃豆粉期貨 (Soybean Meal)",
+      "燕麥期貨 (Oats)",
+      "棉花期貨 (Cotton)",
+      "糖期貨 (Sugar)",
+      "咖啡期貨 (Coffee)",
+      "可可期貨 (Cocoa)",
+      "活牛期貨 (Live Cattle)",
+      "瘦肉豬期貨 (Lean Hogs)"
+  };
+
+  static final String[] CITIES = {"台北市", "新北市", "桃園市", "台中市", "台南市", "高雄市", "新竹市", "基隆市"};
+  // 依人數由多到少排列
+  static final String[] TIERS = {"一般", "銀卡", "金卡", "白金"};
+  private static final int[] TIER_PERCENT = {60, 25, 12, 3};
+  private static final String[] SURNAMES = {"陳", "林", "黃", "張", "李", "王", "吳", "劉", "蔡", "楊"};
+  private static final String[] GIVEN_NAMES = {"志明", "淑芬", "家豪", "雅婷", "俊傑", "怡君", "建宏", "美玲"};
+  private static final LocalDate FIRST_JOIN_DATE = LocalDate.of(2015, 1, 1);
+
+  private static final byte[][] ITEM_BYTES = new byte[ITEM_NAMES.length][];
+  private static final byte[][] DATE_BYTES;
+  private static final int FIRST_EPOCH_DAY = (int) FIRST_DATE.toEpochDay();
+
+  static {
+    for (int i = 0; i < ITEM_NAMES.length; i++) {
+      ITEM_BYTES[i] = ITEM_NAMES[i].getBytes(StandardCharsets.UTF_8);
+    }
+    int days = (int) (END_DATE.toEpochDay() - FIRST_DATE.toEpochDay());
+    DATE_BYTES = new byte[days][];
+    for (int i = 0; i < days; i++) {
+      DATE_BYTES[i] = FIRST_DATE.plusDays(i).toString().getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  /**
+   * 產生設定
+   */
+  record Options(long rows, long seed, int threads, String format, Path out, int customers, Path customersOut) {
+  }
+
   public static void main(String[] args) {
-    String csvFile = "transactions.csv";
-    int numberOfRecords = 1_000_000;
-
-    // 更新為大宗原物料期貨交易標的
-    String[] itemNames = {
-        // 能源 (Energy)
-        "WTI原油期貨 (Crude Oil WTI)",
-        "布蘭特原油期貨 (Brent Crude)",
-        "天然氣期貨 (Natural Gas)",
-        "熱燃油期貨 (Heating Oil)",
-
-        // 貴金屬 (Precious Metals)
-        "黃金期貨 (Gold)",
-        "白銀期貨 (Silver)",
-        "鉑金期貨 (Platinum)",
-        "鈀金期貨 (Palladium)",
-
-        // 工業金屬 (Industrial Metals)
-        "銅期貨 (Copper)",
-        "鋁期貨 (Aluminum)",
-        "鋅期貨 (Zinc)",
-        "鎳期貨 (Nickel)",
-        "鉛期貨 (Lead)",
-        "鐵礦石期貨 (Iron Ore)",
-
-        // 農產品 (Agricultural)
-        "玉米期貨 (Corn)",
-        "小麥期貨 (Wheat)",
-        "黃豆期貨 (Soybeans)",
-        "黃豆油期貨 (Soybean Oil)",
-        "黃豆粉期貨 (Soybean Meal)",
-        "燕麥期貨 (Oats)",
-        "棉花期貨 (Cotton)",
-        "糖期貨 (Sugar)",
-        "咖啡期貨 (Coffee)",
-        "可可期貨 (Cocoa)",
-        "活牛期貨 (Live Cattle)",
-        "瘦肉豬期貨 (Lean Hogs)"
-    };
-
-    try (PrintWriter writer = new PrintWriter(new FileWriter(csvFile))) {
-      // 寫入 CSV 標頭
-      writer.println("交易代碼KEY,交易日期,客戶代碼,物品名稱,價格");
-
-      Random random = new Random();
-      DecimalFormat df = new DecimalFormat("0.00");
-      DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-      for (int i = 0; i < numberOfRecords; i++) {
-        String transactionKey = "TX-" + generateRandomAlphanumeric(10);
-        LocalDate randomDate = generateRandomDate(LocalDate.of(2023, 1, 1), LocalDate.of(2025, 12, 31));
-        String customerId = "CUST-" + generateRandomNumeric(8);
-        String itemName = itemNames[random.nextInt(itemNames.length)];
-        double price = 10.0 + (5000.0 - 10.0) * random.nextDouble();
-
-        writer.println(
-            transactionKey + "," +
-                dateFormatter.format(randomDate) + "," +
-                customerId + "," +
-                itemName + "," +
-                df.format(price)
-        );
+    Options options = parseOptions(args);
+    long startTime = System.nanoTime();
+    try {
+      if (options.format().equals(COLUMNAR)) {
+        writeColumnar(options);
+      } else {
+        writeCsv(options);
       }
-      System.out.println("成功產生 " + numberOfRecords + " 筆交易資料到 " + csvFile);
-
+      writeCustomers(options);
+      double seconds = (System.nanoTime() - startTime) / 1e9;
+      System.out.printf("成功產生 %d 筆交易資料到 %s、%d 位客戶到 %s (種子 %d，%d 執行緒，%.1f 秒)%n",
+          options.rows(), options.out(), options.customers(), options.customersOut(), options.seed(),
+          options.threads(), seconds);
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
   /**
-   * 產生指定長度的隨機英數字串
-   * @param length 字串長度
-   * @return 隨機字串
+   * 依分區平行產生並寫出 CSV
    */
-  private static String generateRandomAlphanumeric(int length) {
-    String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-    StringBuilder sb = new StringBuilder(length);
-    Random random = new Random();
-    for (int i = 0; i < length; i++) {
-      sb.append(chars.charAt(random.nextInt(chars.length())));
-    }
-    return sb.toString();
+  static void writeCsv(Options options) throws IOException {
+    long partitions = (options.rows() + PARTITION_ROWS - 1) / PARTITION_ROWS;
+    ExecutorService pool = Executors.newFixedThreadPool(options.threads());
+    try (FileChannel out = FileChannel.open(options.out(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(out, ByteBuffer.wrap((HEADER + "\n").getBytes(StandardCharsets.UTF_8)));
+
+      // 最多同時保留 2 倍執行緒數的分區在記憶體中，依序寫出
+      Deque<Future<ByteBuffer>> inFlight = new ArrayDeque<>();
+      for (long p = 0; p < partitions; p++) {
+        long partition = p;
+        inFlight.add(pool.submit(() -> encodeCsv(generatePartition(options, partition))));
+        if (inFlight.size() >= options.threads() * 2) {
+          writeFully(out, inFlight.poll().get());
+        }
+      }
+      while (!inFlight.isEmpty()) {
+        writeFully(out, inFlight.poll().get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("產生資料時被中斷", e);
+    } catch (ExecutionException e) {
+      throw new IOException("產生分區失敗", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
   }
 
   /**
-   * 產生指定長度的隨機數字字串
-   * @param length 字串長度
-   * @return 隨機數字字串
+   * 依分區平行產生並寫出欄位檔；欄位位置事先算好，各分區直接寫到自己的位置
    */
-  private static String generateRandomNumeric(int length) {
-    String chars = "0123456789";
-    StringBuilder sb = new StringBuilder(length);
-    Random random = new Random();
-    for (int i = 0; i < length; i++) {
-      sb.append(chars.charAt(random.nextInt(chars.length())));
-    }
-    return sb.toString();
+  static void writeColumnar(Options options) throws IOException {
+    long partitions = (options.rows() + PARTITION_ROWS - 1) / PARTITION_ROWS;
+    ColumnarTransactionFile.Layout layout = ColumnarTransactionFile.Layout.of(options.rows(), ITEM_NAMES);
+    ExecutorService pool = Executors.newFixedThreadPool(options.threads());
+    try (FileChannel out = ColumnarTransactionFile.create(options.out(), layout)) {
+      Deque<Future<Void>> inFlight = new ArrayDeque<>();
+      for (long p = 0; p < partitions; p++) {
+        long partition = p;
+        inFlight.add(pool.submit(() -> {
+          ColumnarTransactionFile.writeRows(out, layout, partition * PARTITION_ROWS,
+              generatePartition(options, partition));
+          return null;
+        }));
+        if (inFlight.size() >= options.threads() * 2) {
+          inFlight.poll().get();
+        }
+      }
+      while (!inFlight.isEmpty()) {
+        inFlight.poll().get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("產生資料時被中斷", e);
+    } catch (ExecutionException e) {
+      throw new IOException("產生分區失敗", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * 寫出客戶維度表；客戶數通常遠少於交易數，單執行緒產生即可。內容只取決於種子與客戶數
+   */
+  static void writeCustomers(Options options) throws IOException {
+    // 與交易分區使用不同的亂數序列
+    SplittableRandom random = new SplittableRandom(PackedKeyHashIndex.mix(~options.seed()));
+    int joinDays = (int) (FIRST_DATE.toEpochDay() - FIRST_JOIN_DATE.toEpochDay());
+    try (BufferedWriter writer = Files.newBufferedWriter(options.customersOut(), StandardCharsets.UTF_8)) {
+      writer.write(CUSTOMER_HEADER);
+      writer.newLine();
+      StringBuilder line = new StringBuilder(64);
+      for (int id = 0; id < options.customers(); id++) {
+        int percent = random.nextInt(100);
+        int tier = 0;
+        while (percent >= TIER_PERCENT[tier]) {
+          percent -= TIER_PERCENT[tier++];
+        }
+        line.setLength(0);
+        line.append(TransactionColumns.unpackCustomerId(id)).append(',')
+            .append(SURNAMES[random.nextInt(SURNAMES.length)])
+            .append(GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)]).append(',')
+            .append(CITIES[random.nextInt(CITIES.length)]).append(',')
+            .append(TIERS[tier]).append(',')
+            .append(FIRST_JOIN_DATE.plusDays(random.nextInt(joinDays)));
+        writer.append(line);
+        writer.newLine();
+      }
+    }
+  }
+
+  /**
+   * 在既有 CSV 檔尾附加 rows 筆新交易 (不寫標頭)，模擬持續寫入的交易檔；
+   * 客戶數取自產生這份資料時輸出的客戶檔，附加的交易才都對應得到客戶
+   * @param customersCsv 產生時 --customers-out 指定的客戶檔
+   * @throws NoSuchFileException 客戶檔不存在；沒有客戶檔的舊資料集請直接指定客戶數
+   */
+  static void appendCsv(Path csv, long rows, long seed, Path customersCsv) throws IOException {
+    appendCsv(csv, rows, seed, customerCount(customersCsv));
+  }
+
+  /**
+   * @param customers 客戶數；附加的交易只使用客戶代碼 0 到 customers - 1
+   */
+  static void appendCsv(Path csv, long rows, long seed, int customers) throws IOException {
+    if (customers < 1 || customers > CUSTOMER_SPACE) {
+      throw new IllegalArgumentException("客戶數必須在 1 到 " + CUSTOMER_SPACE + " 之間: " + customers);
+    }
+    Options options = new Options(rows, seed, 1, CSV, csv, customers, null);
+    long partitions = (rows + PARTITION_ROWS - 1) / PARTITION_ROWS;
+    try (FileChannel out = FileChannel.open(csv, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      for (long p = 0; p < partitions; p++) {
+        writeFully(out, encodeCsv(generatePartition(options, p)));
+      }
+    }
   }
 
   /**
-   * 在指定的日期範圍內產生一個隨機日期
-   * @param startInclusive 起始日期 (包含)
-   * @param endExclusive 結束日期 (不包含)
-   * @return 隨機日期
+   * 由客戶檔算出產生時的客戶數 (最大客戶代碼 + 1)
+   * @throws NoSuchFileException 客戶檔不存在
    */
-  private static LocalDate generateRandomDate(LocalDate startInclusive, LocalDate endExclusive) {
-    long minDay = startInclusive.toEpochDay();
-    long maxDay = endExclusive.toEpochDay();
-    long randomDay = ThreadLocalRandom.current().nextLong(minDay, maxDay);
-    return LocalDate.ofEpochDay(randomDay);
+  static int customerCount(Path customersCsv) throws IOException {
+    if (!Files.exists(customersCsv)) {
+      throw new NoSuchFileException(customersCsv.toString(), null, "找不到客戶檔，請以 --customers-out 指定產生時的客戶檔，或以 --customers 指定客戶數");
+    }
+    int maxId = TransactionColumns.INVALID_CUSTOMER;
+    try (BufferedReader reader = Files.newBufferedReader(customersCsv, StandardCharsets.UTF_8)) {
+      reader.readLine(); // 跳過標頭
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int comma = line.indexOf(',');
+        if (comma > 0) {
+          maxId = Math.max(maxId, TransactionColumns.packCustomerId(line.substring(0, comma)));
+        }
+      }
+    }
+    if (maxId == TransactionColumns.INVALID_CUSTOMER) {
+      throw new IOException(customersCsv + " 沒有任何客戶");
+    }
+    return maxId + 1;
+  }
+
+  /**
+   * 產生一個分區的原生欄位值；結果只取決於種子與分區編號
+   */
+  static TransactionColumns generatePartition(Options options, long partition) {
+    long firstRow = partition * PARTITION_ROWS;
+    int count = (int) Math.min(PARTITION_ROWS, options.rows() - firstRow);
+    // SplittableRandom 每步的增量就是 0x9E3779B97F4A7C15，種子若只差它的倍數，各分區的亂數序列只是彼此平移；
+    // 先用 fmix64 打散，讓每個分區從不相關的狀態開始
+    SplittableRandom random = new SplittableRandom(PackedKeyHashIndex.mix(options.seed() ^ PackedKeyHashIndex.mix(partition)));
+    int dateRange = DATE_BYTES.length;
+
+    long[] keys = new long[count];
+    int[] epochDays = new int[count];
+    int[] customerIds = new int[count];
+    byte[] itemCodes = new byte[count];
+    int[] priceCents = new int[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = random.nextLong(KEY_SPACE);
+      epochDays[i] = FIRST_EPOCH_DAY + random.nextInt(dateRange);
+      customerIds[i] = random.nextInt(options.customers());
+      itemCodes[i] = (byte) random.nextInt(ITEM_NAMES.length);
+      priceCents[i] = random.nextInt(MIN_PRICE_CENTS, MAX_PRICE_CENTS);
+    }
+    return new TransactionColumns(keys, epochDays, customerIds, itemCodes, ITEM_NAMES, priceCents);
+  }
+
+  /**
+   * 將分區編碼成 CSV 位元組，不經過 String 串接與 DecimalFormat
+   */
+  static ByteBuffer encodeCsv(TransactionColumns rows) {
+    int maxItemBytes = 0;
+    for (byte[] item : ITEM_BYTES) {
+      maxItemBytes = Math.max(maxItemBytes, item.length);
+    }
+    // KEY 13 + 日期 10 + 客戶 13 + 物品 + 價格最多 7 + 4 個逗號 + 換行
+    int maxRowBytes = 13 + 10 + 13 + maxItemBytes + 7 + 5;
+    byte[] buffer = new byte[rows.size() * maxRowBytes];
+    long[] keys = rows.keys();
+    int[] epochDays = rows.epochDays();
+    int[] customerIds = rows.customerIds();
+    byte[] itemCodes = rows.itemCodes();
+    int[] priceCents = rows.priceCents();
+
+    int pos = 0;
+    for (int i = 0; i < rows.size(); i++) {
+      buffer[pos++] = 'T';
+      buffer[pos++] = 'X';
+      buffer[pos++] = '-';
+      long key = keys[i];
+      for (int j = TransactionColumns.KEY_SYMBOLS - 1; j >= 0; j--) {
+        buffer[pos + j] = (byte) TransactionColumns.SYMBOLS.charAt((int) (key % 36));
+        key /= 36;
+      }
+      pos += TransactionColumns.KEY_SYMBOLS;
+      buffer[pos++] = ',';
+
+      byte[] date = DATE_BYTES[epochDays[i] - FIRST_EPOCH_DAY];
+      System.arraycopy(date, 0, buffer, pos, date.length);
+      pos += date.length;
+      buffer[pos++] = ',';
+
+      buffer[pos++] = 'C';
+      buffer[pos++] = 'U';
+      buffer[pos++] = 'S';
+      buffer[pos++] = 'T';
+      buffer[pos++] = '-';
+      int customer = customerIds[i];
+      for (int j = TransactionColumns.CUSTOMER_DIGITS - 1; j >= 0; j--) {
+        buffer[pos + j] = (byte) ('0' + customer % 10);
+        customer /= 10;
+      }
+      pos += TransactionColumns.CUSTOMER_DIGITS;
+      buffer[pos++] = ',';
+
+      byte[] item = ITEM_BYTES[itemCodes[i] & 0xFF];
+      System.arraycopy(item, 0, buffer, pos, item.length);
+      pos += item.length;
+      buffer[pos++] = ',';
+
+      pos = writeCents(buffer, pos, priceCents[i]);
+      buffer[pos++] = '\n';
+    }
+    return ByteBuffer.wrap(buffer, 0, pos);
+  }
+
+  /**
+   * 以 "0.00" 格式寫出金額 (單位：分)
+   */
+  private static int writeCents(byte[] buffer, int pos, int cents) {
+    int whole = cents / 100;
+    int start = pos;
+    do {
+      buffer[pos++] = (byte) ('0' + whole % 10);
+      whole /= 10;
+    } while (whole > 0);
+    // 整數部分是倒著寫的，翻轉回來
+    for (int i = start, j = pos - 1; i < j; i++, j--) {
+      byte tmp = buffer[i];
+      buffer[i] = buffer[j];
+      buffer[j] = tmp;
+    }
+    int fraction = cents % 100;
+    buffer[pos++] = '.';
+    buffer[pos++] = (byte) ('0' + fraction / 10);
+    buffer[pos++] = (byte) ('0' + fraction % 10);
+    return pos;
+  }
+
+  static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  /**
+   * 解析 --名稱 值 形式的參數；未指定的種子以目前時間產生，並在結束時印出以便重現
+   */
+  static Options parseOptions(String[] args) {
+    Map<String, String> values = new HashMap<>();
+    for (int i = 0; i < args.length; i += 2) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("無法辨識的參數: " + args[i]);
+      }
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("參數缺少值: " + args[i]);
+      }
+      values.put(args[i].substring(2), args[i + 1]);
+    }
+    long rows = Long.parseLong(values.getOrDefault("rows", "1000000"));
+    long seed = values.containsKey("seed") ? Long.parseLong(values.get("seed")) : System.nanoTime();
+    int threads = Integer.parseInt(values.getOrDefault("threads",
+        Integer.toString(Runtime.getRuntime().availableProcessors())));
+    int customers = Integer.parseInt(values.getOrDefault("customers", Integer.toString(DEFAULT_CUSTOMERS)));
+    if (rows < 0 || threads < 1) {
+      throw new IllegalArgumentException("筆數不可為負，執行緒數至少為 1");
+    }
+    if (customers < 1 || customers > CUSTOMER_SPACE) {
+      throw new IllegalArgumentException("客戶數必須在 1 到 " + CUSTOMER_SPACE + " 之間: " + customers);
+    }
+    String format = values.getOrDefault("format", CSV);
+    if (!format.equals(CSV) && !format.equals(COLUMNAR)) {
+      throw new IllegalArgumentException("未知的格式: " + format + "，可用: " + CSV + ", " + COLUMNAR);
+    }
+    String defaultOut = format.equals(COLUMNAR) ? "transactions" + ColumnarTransactionFile.SUFFIX : "transactions.csv";
+    Path out = Path.of(values.getOrDefault("out", defaultOut));
+    Path customersOut = values.containsKey("customers-out") ? Path.of(values.get("customers-out"))
+        : out.resolveSibling("customers.csv");
+    return new Options(rows, seed, threads, format, out, customers, customersOut);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,432 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 給持續附加資料的 transactions.csv 使用的 LSM 風格增量索引 (KEY → CSV 位元組位移)。
+ *
+ * - 基底：transactions.csv.idx 磁碟索引，涵蓋建立當時的檔案內容
+ * - 記憶表 (memtable)：新附加的列先放在開放定址雜湊表，滿了就排序成一個不可變的排序段 (run)
+ * - 排序段：由新到舊排列，各自帶一個 Bloom 過濾器；同一大小級距累積 MERGE_FANIN 段時，
+ *   背景執行緒把它們合併成一段 (size-tiered compaction)
+ *
+ * 查詢依「記憶表 → 新的排序段 → 舊的排序段 → 基底」的順序，先找到的就是最新的值。
+ * catchUp() 只掃描上次之後附加的位元組，所以附加 1 萬列的成本與 1 萬列成正比，與檔案總大小無關。
+ * 用法: java IncrementalKeyIndex [transactions.csv] [--append 10000] [--seed 42]
+ *                                [--customers-out customers.csv | --customers 100000]
+ * 附加的交易只使用產生資料時的客戶：預設讀取 CSV 旁的 customers.csv，
+ * 產生時以 --customers-out 另外指定客戶檔就傳同一個路徑，沒有客戶檔的舊資料集以 --customers 指定客戶數。
+ */
+public class IncrementalKeyIndex implements AutoCloseable {
+
+  static final int MEMTABLE_LIMIT = 1 << 16;
+  static final int MERGE_FANIN = 4;
+  private static final double RUN_BLOOM_FPP = 0.01;
+
+  private final Path csvPath;
+  private final TransactionIndexFile base;
+  private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "lsm-compaction");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // 記憶表：雜湊表存 KEY → 陣列位置，位移另外放在 long[]
+  private PackedKeyHashIndex memtable = new PackedKeyHashIndex(MEMTABLE_LIMIT);
+  private long[] memKeys = new long[MEMTABLE_LIMIT];
+  private long[] memOffsets = new long[MEMTABLE_LIMIT];
+  private int memSize;
+
+  // 不可變的排序段快照 (新的在前)；讀取端不需要加鎖
+  private volatile List<SortedRun> runs = List.of();
+  // 已經納入索引的 CSV 位元組數
+  private long indexedBytes;
+  private int flushes;
+  private int compactions;
+
+  private IncrementalKeyIndex(Path csvPath, TransactionIndexFile base) {
+    this.csvPath = csvPath;
+    this.base = base;
+    this.indexedBytes = base.indexedBytes();
+  }
+
+  /**
+   * 開啟 (必要時建立) 基底索引，再把基底之後附加的列補進來
+   */
+  public static IncrementalKeyIndex open(Path csvPath) throws IOException {
+    TransactionIndexFile base = TransactionIndexFile.openForAppend(csvPath);
+    if (base == null) {
+      base = TransactionIndexFile.build(csvPath);
+    }
+    IncrementalKeyIndex index = new IncrementalKeyIndex(csvPath, base);
+    index.catchUp();
+    return index;
+  }
+
+  // --- 寫入 ---
+
+  /**
+   * 掃描上次之後附加到 CSV 的完整資料列 (最後一行若還沒寫完換行則留到下次)
+   * @return 這次新增的列數
+   */
+  public synchronized int catchUp() throws IOException {
+    int added = 0;
+    try (FileChannel channel = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size <= indexedBytes) {
+        return 0;
+      }
+      long[] bounds = MappedTransactionLoader.splitChunks(channel, indexedBytes, 1);
+      for (int i = 0; i < bounds.length - 1; i++) {
+        long start = bounds[i];
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, bounds[i + 1] - start);
+        int[] commas = new int[4];
+        int limit = buffer.limit();
+        int pos = 0;
+        while (pos < limit) {
+          int lineEnd = pos;
+          while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+            lineEnd++;
+          }
+          if (lineEnd == limit) {
+            break;
+          }
+          int contentEnd = lineEnd;
+          if (contentEnd > pos && buffer.get(contentEnd - 1) == '\r') {
+            contentEnd--;
+          }
+          if (MappedTransactionLoader.rowFieldsEnd(buffer, pos, contentEnd, commas) >= 0) {
+            long packed = TransactionColumns.packKey(buffer, pos, commas[0] - pos);
+            if (packed != TransactionColumns.INVALID_KEY) {
+              put(packed, start + pos);
+              added++;
+            }
+          }
+          pos = lineEnd + 1;
+          indexedBytes = start + pos;
+        }
+      }
+    }
+    return added;
+  }
+
+  /**
+   * 放入一筆 KEY 與列位移；KEY 已在記憶表中時以新的位移覆蓋
+   */
+  public synchronized void put(long key, long offset) {
+    int position = memtable.get(key);
+    if (position >= 0) {
+      memOffsets[position] = offset;
+      return;
+    }
+    memKeys[memSize] = key;
+    memOffsets[memSize] = offset;
+    memtable.put(key, memSize);
+    memSize++;
+    if (memSize == MEMTABLE_LIMIT) {
+      flush();
+    }
+  }
+
+  /**
+   * 把記憶表排序成新的排序段，並視需要排程背景合併
+   */
+  public synchronized void flush() {
+    if (memSize == 0) {
+      return;
+    }
+    long[] keys = Arrays.copyOf(memKeys, memSize);
+    int[] order = new int[memSize];
+    for (int i = 0; i < memSize; i++) {
+      order[i] = i;
+    }
+    TransactionColumns.sortByKey(keys, order);
+    long[] offsets = new long[memSize];
+    for (int i = 0; i < memSize; i++) {
+      offsets[i] = memOffsets[order[i]];
+    }
+    List<SortedRun> next = new ArrayList<>(runs.size() + 1);
+    next.add(new SortedRun(keys, offsets));
+    next.addAll(runs);
+    runs = List.copyOf(next);
+
+    memtable = new PackedKeyHashIndex(MEMTABLE_LIMIT);
+    memSize = 0;
+    flushes++;
+    compactor.execute(this::compact);
+  }
+
+  /**
+   * 找出最新的一串「同一大小級距、至少 MERGE_FANIN 段」的相鄰排序段並合併；
+   * 只合併相鄰的段，才能維持「新的值蓋過舊的值」的順序
+   */
+  private void compact() {
+    while (true) {
+      List<SortedRun> snapshot = runs;
+      int from = -1;
+      int to = -1;
+      for (int i = 0; i < snapshot.size(); ) {
+        int j = i;
+        while (j < snapshot.size() && snapshot.get(j).tier() == snapshot.get(i).tier()) {
+          j++;
+        }
+        if (j - i >= MERGE_FANIN) {
+          from = i;
+          to = j;
+          break;
+        }
+        i = j;
+      }
+      if (from < 0) {
+        return;
+      }
+      SortedRun merged = SortedRun.merge(snapshot.subList(from, to));
+      synchronized (this) {
+        // 合併期間可能有新的段加在最前面，依物件身分找回原本那幾段的位置
+        List<SortedRun> current = runs;
+        int shift = current.indexOf(snapshot.get(from));
+        List<SortedRun> next = new ArrayList<>(current.subList(0, shift));
+        next.add(merged);
+        next.addAll(current.subList(shift + (to - from), current.size()));
+        runs = List.copyOf(next);
+        compactions++;
+      }
+    }
+  }
+
+  // --- 查詢 ---
+
+  /**
+   * @return 該 KEY 最新一筆在 CSV 中的位元組位移；找不到時回傳 -1
+   */
+  public long offsetOf(long key) {
+    synchronized (this) {
+      int position = memtable.get(key);
+      if (position >= 0) {
+        return memOffsets[position];
+      }
+    }
+    for (SortedRun run : runs) {
+      long offset = run.offsetOf(key);
+      if (offset >= 0) {
+        return offset;
+      }
+    }
+    int position = base.indexOf(key);
+    return (position < 0) ? -1 : base.offsetAt(position);
+  }
+
+  public boolean contains(String key) {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && offsetOf(packed) >= 0;
+  }
+
+  /**
+   * @return 交易；找不到時回傳 null
+   */
+  public Transaction read(String key) throws IOException {
+    long packed = TransactionColumns.packKey(key);
+    long offset = (packed == TransactionColumns.INVALID_KEY) ? -1 : offsetOf(packed);
+    return (offset < 0) ? null : TransactionIndexFile.readLineAt(csvPath, offset);
+  }
+
+  // --- 狀態 ---
+
+  public synchronized int memtableSize() {
+    return memSize;
+  }
+
+  public List<Integer> runSizes() {
+    List<Integer> sizes = new ArrayList<>();
+    for (SortedRun run : runs) {
+      sizes.add(run.keys.length);
+    }
+    return sizes;
+  }
+
+  public int baseSize() {
+    return base.size();
+  }
+
+  public synchronized long indexedBytes() {
+    return indexedBytes;
+  }
+
+  /**
+   * 等待已排程的背景合併完成
+   */
+  public void awaitCompaction() throws InterruptedException {
+    try {
+      compactor.submit(() -> { }).get();
+    } catch (java.util.concurrent.ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("基底 %d 筆，記憶表 %d 筆，排序段 %s，已寫出 %d 次、合併 %d 次",
+        base.size(), memSize, runSizes(), flushes, compactions);
+  }
+
+  /**
+   * 等待進行中的合併結束後關閉背景執行緒；等待時被中斷就不再等，並保留中斷狀態給呼叫端
+   */
+  @Override
+  public void close() {
+    compactor.shutdown();
+    try {
+      compactor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * 不可變的排序段：排序的 KEY、對應的位移與 Bloom 過濾器
+   */
+  static final class SortedRun {
+    final long[] keys;
+    final long[] offsets;
+    private final BloomFilter bloom;
+
+    SortedRun(long[] keys, long[] offsets) {
+      this.keys = keys;
+      this.offsets = offsets;
+      this.bloom = BloomFilter.build(keys, RUN_BLOOM_FPP);
+    }
+
+    long offsetOf(long key) {
+      if (!bloom.mightContain(key)) {
+        return -1;
+      }
+      int position = Arrays.binarySearch(keys, key);
+      return (position < 0) ? -1 : offsets[position];
+    }
+
+    /**
+     * 大小級距：每 MERGE_FANIN 倍一級
+     */
+    int tier() {
+      int tier = 0;
+      for (long size = keys.length / MEMTABLE_LIMIT; size >= MERGE_FANIN; size /= MERGE_FANIN) {
+        tier++;
+      }
+      return tier;
+    }
+
+    /**
+     * 多路合併；同一個 KEY 出現在多段時保留最新 (清單中較前面) 的那一段的位移
+     * @param newestFirst 由新到舊排列的相鄰排序段
+     */
+    static SortedRun merge(List<SortedRun> newestFirst) {
+      int total = 0;
+      for (SortedRun run : newestFirst) {
+        total += run.keys.length;
+      }
+      long[] keys = new long[total];
+      long[] offsets = new long[total];
+      int[] cursors = new int[newestFirst.size()];
+      int size = 0;
+      while (true) {
+        int best = -1;
+        long bestKey = Long.MAX_VALUE;
+        for (int r = 0; r < cursors.length; r++) {
+          SortedRun run = newestFirst.get(r);
+          // 嚴格小於：相同 KEY 時保留較新的段
+          if (cursors[r] < run.keys.length && run.keys[cursors[r]] < bestKey) {
+            best = r;
+            bestKey = run.keys[cursors[r]];
+          }
+        }
+        if (best < 0) {
+          break;
+        }
+        keys[size] = bestKey;
+        offsets[size] = newestFirst.get(best).offsets[cursors[best]];
+        size++;
+        for (int r = 0; r < cursors.length; r++) {
+          SortedRun run = newestFirst.get(r);
+          if (cursors[r] < run.keys.length && run.keys[cursors[r]] == bestKey) {
+            cursors[r]++;
+          }
+        }
+      }
+      return new SortedRun(Arrays.copyOf(keys, size), Arrays.copyOf(offsets, size));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Path csvPath = Path.of(args.length > 0 && !args[0].startsWith("--") ? args[0] : "transactions.csv");
+    int append = 0;
+    long seed = System.nanoTime();
+    Path customersPath = csvPath.resolveSibling("customers.csv");
+    Integer customers = null;
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals("--append")) {
+        append = Integer.parseInt(args[i + 1]);
+      } else if (args[i].equals("--seed")) {
+        seed = Long.parseLong(args[i + 1]);
+      } else if (args[i].equals("--customers-out")) {
+        customersPath = Path.of(args[i + 1]);
+      } else if (args[i].equals("--customers")) {
+        customers = Integer.parseInt(args[i + 1]);
+      }
+    }
+
+    long startTime = System.nanoTime();
+    try (IncrementalKeyIndex index = open(csvPath)) {
+      System.out.printf("開啟增量索引: %.1f ms，%s%n", (System.nanoTime() - startTime) / 1e6, index);
+      if (append == 0) {
+        return;
+      }
+
+      long before = index.indexedBytes();
+      if (customers != null) {
+        GenerateTransactionData.appendCsv(csvPath, append, seed, customers);
+      } else {
+        GenerateTransactionData.appendCsv(csvPath, append, seed, customersPath);
+      }
+      startTime = System.nanoTime();
+      int added = index.catchUp();
+      long catchUpTime = System.nanoTime() - startTime;
+      index.flush();
+      index.awaitCompaction();
+      System.out.printf("附加 %d 列 (%.1f KB)，增量補齊 %d 列: %.1f ms%n", append,
+          (index.indexedBytes() - before) / 1024.0, added, catchUpTime / 1e6);
+      System.out.println("目前狀態: " + index);
+
+      // 驗證：附加的每一列都查得到，而且讀回來的 KEY 相同
+      List<Transaction> appended = new ArrayList<>();
+      try (FileChannel channel = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+        long offset = before;
+        while (offset < channel.size()) {
+          long next = MappedTransactionLoader.nextLineStart(channel, offset);
+          appended.add(TransactionIndexFile.readLineAt(csvPath, offset));
+          offset = next;
+        }
+      }
+      int found = 0;
+      startTime = System.nanoTime();
+      for (Transaction t : appended) {
+        found += index.contains(t.key()) ? 1 : 0;
+      }
+      System.out.printf("新附加的 KEY 查得到 %d / %d 筆，每筆 %.0f ns%n", found, appended.size(),
+          (System.nanoTime() - startTime) / (double) Math.max(1, appended.size()));
+
+      // 對照組：整份重建磁碟索引
+      startTime = System.nanoTime();
+      TransactionIndexFile rebuilt = TransactionIndexFile.build(csvPath);
+      System.out.printf("對照: 整份重建索引 %d 筆需要 %.1f ms%n", rebuilt.size(),
+          (System.nanoTime() - startTime) / 1e6);
+    }
+  }
+}
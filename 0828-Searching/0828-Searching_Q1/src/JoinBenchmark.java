@@ -0,0 +1,129 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * 將交易與客戶維度表依客戶代碼 join，比較分區雜湊 join 與排序合併 join 的建立 / 探測時間與記憶體，
+ * 核對兩者的配對完全相同，最後以 join 結果統計各會員等級的交易筆數與金額。
+ * 用法: java JoinBenchmark [transactions.csv] [customers.csv]
+ * 兩個檔案都由 GenerateTransactionData 產生 (客戶代碼取自同一組客戶)。
+ */
+public class JoinBenchmark {
+
+  private static final int REPETITIONS = 3;
+
+  public static void main(String[] args) throws IOException {
+    Path transactionsPath = Path.of(args.length > 0 ? args[0] : "transactions.csv");
+    Path customersPath = Path.of(args.length > 1 ? args[1] : "customers.csv");
+    if (!Files.exists(transactionsPath) || !Files.exists(customersPath)) {
+      System.out.println("找不到 " + transactionsPath + " 或 " + customersPath
+          + "，請先執行 GenerateTransactionData，程式終止。");
+      return;
+    }
+    TransactionColumns transactions = TransactionColumns.from(MappedTransactionLoader.load(transactionsPath.toString()));
+    CustomerTable customers = CustomerTable.load(customersPath);
+    int[] left = transactions.customerIds();
+    int[] right = customers.customerIds();
+    System.out.printf("交易 %d 筆 (%s)，客戶 %d 位 (%s)%n", left.length,
+        MemoryEstimator.format(transactions.estimatedBytes()), right.length,
+        MemoryEstimator.format(customers.estimatedBytes()));
+
+    JoinEngine.Strategy chosen = JoinEngine.choose(left.length, right.length,
+        JoinEngine.isSorted(left), JoinEngine.isSorted(right));
+    System.out.printf("自動選擇: %s (交易%s依客戶排序，客戶表%s依客戶排序)%n%n", chosen,
+        JoinEngine.isSorted(left) ? "已" : "未", JoinEngine.isSorted(right) ? "已" : "未");
+
+    JoinEngine.Result hash = best(() -> JoinEngine.hashJoin(left, right));
+    JoinEngine.Result sortMerge = best(() -> JoinEngine.sortMergeJoin(left, right));
+    JoinEngine.Result auto = best(() -> JoinEngine.join(left, right));
+    if (!samePairs(hash, sortMerge) || !samePairs(hash, auto)) {
+      throw new IllegalStateException("兩種 join 的配對結果不同");
+    }
+
+    System.out.println("+----------------------+--------------+--------------+--------------+--------------+----------+");
+    System.out.println("| 策略                 | 建立 (ms)    | 探測 (ms)    | 合計 (ms)    | 額外記憶體   | 配對數   |");
+    System.out.println("+----------------------+--------------+--------------+--------------+--------------+----------+");
+    printRow("分區雜湊 join", hash);
+    printRow("排序合併 join", sortMerge);
+    printRow("自動 (" + auto.strategy() + ")", auto);
+    System.out.println("+----------------------+--------------+--------------+--------------+--------------+----------+");
+    System.out.println("排序合併的「建立」為排序兩邊的時間，「探測」為合併的時間");
+
+    System.out.println("\n--- 自動選擇的規則 ---");
+    long budget = Runtime.getRuntime().maxMemory() / 4;
+    System.out.printf("較小一邊的雜湊表不超過最大堆積的 1/4 (%s) 時用雜湊 join；兩邊都已排序或放不下時用排序合併%n",
+        MemoryEstimator.format(budget));
+    int[][] cases = {{left.length, right.length, 0}, {left.length, right.length, 1},
+        {Integer.MAX_VALUE, Integer.MAX_VALUE - 1, 0}};
+    for (int[] c : cases) {
+      System.out.printf("  %,d 列 × %,d 列，%s → %s%n", c[0], c[1], c[2] == 1 ? "兩邊已排序" : "未排序",
+          JoinEngine.choose(c[0], c[1], c[2] == 1, c[2] == 1));
+    }
+
+    System.out.println("\n--- 各會員等級的交易 (以 join 結果統計) ---");
+    printTierReport(transactions, customers, hash);
+  }
+
+  @FunctionalInterface
+  private interface JoinRun {
+    JoinEngine.Result run();
+  }
+
+  /**
+   * 執行數次取合計時間最短的一次，排除第一次的 JIT 編譯
+   */
+  private static JoinEngine.Result best(JoinRun run) {
+    JoinEngine.Result best = null;
+    for (int i = 0; i < REPETITIONS; i++) {
+      JoinEngine.Result result = run.run();
+      if (best == null || result.buildNanos() + result.probeNanos() < best.buildNanos() + best.probeNanos()) {
+        best = result;
+      }
+    }
+    return best;
+  }
+
+  private static void printRow(String name, JoinEngine.Result result) {
+    System.out.printf("| %-20s | %-12.1f | %-12.1f | %-12.1f | %-12s | %-8d |%n", name, result.buildNanos() / 1e6,
+        result.probeNanos() / 1e6, (result.buildNanos() + result.probeNanos()) / 1e6,
+        MemoryEstimator.format(result.estimatedBytes()), result.size());
+  }
+
+  /**
+   * 兩個結果的配對 (不論順序) 是否相同
+   */
+  private static boolean samePairs(JoinEngine.Result a, JoinEngine.Result b) {
+    return a.size() == b.size() && Arrays.equals(sortedPairs(a), sortedPairs(b));
+  }
+
+  private static long[] sortedPairs(JoinEngine.Result result) {
+    long[] pairs = new long[result.size()];
+    for (int i = 0; i < pairs.length; i++) {
+      pairs[i] = ((long) result.leftRows()[i] << 32) | result.rightRows()[i];
+    }
+    Arrays.sort(pairs);
+    return pairs;
+  }
+
+  private static void printTierReport(TransactionColumns transactions, CustomerTable customers,
+                                      JoinEngine.Result result) {
+    String[] tiers = customers.tierDictionary();
+    long[] counts = new long[tiers.length];
+    long[] cents = new long[tiers.length];
+    int[] priceCents = transactions.priceCents();
+    for (int i = 0; i < result.size(); i++) {
+      int tier = customers.tierCode(result.rightRows()[i]);
+      counts[tier]++;
+      cents[tier] += priceCents[result.leftRows()[i]];
+    }
+    System.out.println("+----------+--------------+--------------------+");
+    System.out.println("| 會員等級 | 交易筆數     | 金額               |");
+    System.out.println("+----------+--------------+--------------------+");
+    for (int tier = 0; tier < tiers.length; tier++) {
+      System.out.printf("| %-6s | %-12d | %-18.2f |%n", tiers[tier], counts[tier], cents[tier] / 100.0);
+    }
+    System.out.println("+----------+--------------+--------------------+");
+    System.out.printf("沒有對應客戶的交易: %d 筆%n", transactions.size() - result.size());
+  }
+}
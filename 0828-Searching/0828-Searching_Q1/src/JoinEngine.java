@@ -0,0 +1,305 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * 以 int 鍵做等值 join (例如交易的客戶代碼對客戶維度表)，結果是兩邊配對的列序號。
+ *
+ * - 分區雜湊 join：兩邊先依鍵的雜湊值切成 2^k 個分區，讓每個分區的雜湊表小到能放進快取，
+ *   再平行地在每個分區內以較小的一邊建立雜湊表、另一邊探測
+ * - 排序合併 join：兩邊各自依鍵排序 (ParallelRadixSort，帶著列序號)，再一次走過兩個排序序列；
+ *   兩邊已排序時不需要任何額外的結構
+ * 兩者都支援兩邊都有重複的鍵 (多對多)。
+ */
+public class JoinEngine {
+
+  // 每個分區的建立端約為這麼多筆，雜湊表 (heads + next + keys) 約 64 KB，可放進 L2
+  private static final int ROWS_PER_PARTITION = 4096;
+  private static final int MAX_PARTITION_BITS = 12;
+  // 建立端雜湊表 (分區後的鍵、列、鏈結與 heads) 每筆大約的位元組數，用來判斷是否放得進記憶體預算
+  private static final int HASH_BYTES_PER_BUILD_ROW = 24;
+
+  enum Strategy {
+    HASH("分區雜湊 join"),
+    SORT_MERGE("排序合併 join");
+
+    private final String label;
+
+    Strategy(String label) {
+      this.label = label;
+    }
+
+    @Override
+    public String toString() {
+      return label;
+    }
+  }
+
+  /**
+   * join 的結果與成本
+   * @param leftRows 與 rightRows 同長度，第 i 組配對為 (leftRows[i], rightRows[i])
+   * @param buildNanos 雜湊 join 為分區加建表的時間；排序合併 join 為排序的時間
+   * @param probeNanos 雜湊 join 為探測的時間；排序合併 join 為合併的時間
+   * @param estimatedBytes 執行時額外配置的記憶體估計 (不含輸入欄位)
+   */
+  record Result(Strategy strategy, int[] leftRows, int[] rightRows, long buildNanos, long probeNanos,
+                long estimatedBytes) {
+    public int size() {
+      return leftRows.length;
+    }
+  }
+
+  /**
+   * 依兩邊大小自動選擇策略：
+   * - 兩邊都已依鍵排序：排序合併，只需一次合併
+   * - 較小的一邊建成雜湊表放得進記憶體預算 (最大堆積的 1/4)：分區雜湊 join，只需走過大的一邊一次
+   * - 否則：排序合併 (兩邊都要排序，但不需要一次放下整個雜湊表)
+   */
+  static Strategy choose(int leftSize, int rightSize, boolean leftSorted, boolean rightSorted) {
+    if (leftSorted && rightSorted) {
+      return Strategy.SORT_MERGE;
+    }
+    long hashBytes = (long) Math.min(leftSize, rightSize) * HASH_BYTES_PER_BUILD_ROW;
+    return (hashBytes <= Runtime.getRuntime().maxMemory() / 4) ? Strategy.HASH : Strategy.SORT_MERGE;
+  }
+
+  public static Result join(int[] leftKeys, int[] rightKeys) {
+    Strategy strategy = choose(leftKeys.length, rightKeys.length, isSorted(leftKeys), isSorted(rightKeys));
+    return (strategy == Strategy.HASH) ? hashJoin(leftKeys, rightKeys) : sortMergeJoin(leftKeys, rightKeys);
+  }
+
+  // --- 分區雜湊 join ---
+
+  public static Result hashJoin(int[] leftKeys, int[] rightKeys) {
+    long startTime = System.nanoTime();
+    // 以較小的一邊建立雜湊表
+    boolean buildLeft = leftKeys.length < rightKeys.length;
+    int[] buildKeys = buildLeft ? leftKeys : rightKeys;
+    int[] probeKeys = buildLeft ? rightKeys : leftKeys;
+    int bits = partitionBits(buildKeys.length);
+    Partitioned build = partition(buildKeys, bits);
+    Partitioned probe = partition(probeKeys, bits);
+    int partitions = 1 << bits;
+
+    int[][] heads = new int[partitions][];
+    int[][] next = new int[partitions][];
+    IntStream.range(0, partitions).parallel().forEach(p -> {
+      int from = build.starts[p];
+      int to = build.starts[p + 1];
+      int capacity = Integer.highestOneBit(Math.max(1, to - from) * 2 - 1) << 1;
+      int[] head = new int[capacity];
+      int[] chain = new int[to - from];
+      Arrays.fill(head, -1);
+      for (int i = from; i < to; i++) {
+        int bucket = bucket(build.keys[i], capacity);
+        chain[i - from] = head[bucket];
+        head[bucket] = i - from;
+      }
+      heads[p] = head;
+      next[p] = chain;
+    });
+    long buildNanos = System.nanoTime() - startTime;
+
+    startTime = System.nanoTime();
+    int[][] matchedBuild = new int[partitions][];
+    int[][] matchedProbe = new int[partitions][];
+    IntStream.range(0, partitions).parallel().forEach(p -> {
+      int buildFrom = build.starts[p];
+      int[] head = heads[p];
+      int[] chain = next[p];
+      int[] buildRows = new int[16];
+      int[] probeRows = new int[16];
+      int count = 0;
+      for (int i = probe.starts[p]; i < probe.starts[p + 1]; i++) {
+        int key = probe.keys[i];
+        for (int j = head[bucket(key, head.length)]; j >= 0; j = chain[j]) {
+          if (build.keys[buildFrom + j] == key) {
+            if (count == buildRows.length) {
+              buildRows = Arrays.copyOf(buildRows, count * 2);
+              probeRows = Arrays.copyOf(probeRows, count * 2);
+            }
+            buildRows[count] = build.rows[buildFrom + j];
+            probeRows[count++] = probe.rows[i];
+          }
+        }
+      }
+      matchedBuild[p] = Arrays.copyOf(buildRows, count);
+      matchedProbe[p] = Arrays.copyOf(probeRows, count);
+    });
+    int[] buildMatches = concat(matchedBuild);
+    int[] probeMatches = concat(matchedProbe);
+    long probeNanos = System.nanoTime() - startTime;
+
+    long bytes = build.estimatedBytes() + probe.estimatedBytes()
+        + 2 * MemoryEstimator.arrayBytes(buildMatches.length, Integer.BYTES);
+    for (int p = 0; p < partitions; p++) {
+      bytes += MemoryEstimator.arrayBytes(heads[p].length, Integer.BYTES)
+          + MemoryEstimator.arrayBytes(next[p].length, Integer.BYTES);
+    }
+    return new Result(Strategy.HASH, buildLeft ? buildMatches : probeMatches, buildLeft ? probeMatches : buildMatches,
+        buildNanos, probeNanos, bytes);
+  }
+
+  /**
+   * 依雜湊值的最高幾個位元分區後的鍵與原始列序號；分區 p 位於 [starts[p], starts[p + 1])
+   */
+  private record Partitioned(int[] starts, int[] keys, int[] rows) {
+    long estimatedBytes() {
+      return MemoryEstimator.arrayBytes(starts.length, Integer.BYTES)
+          + 2 * MemoryEstimator.arrayBytes(keys.length, Integer.BYTES);
+    }
+  }
+
+  private static int partitionBits(int buildSize) {
+    int bits = 0;
+    while (bits < MAX_PARTITION_BITS && ((long) ROWS_PER_PARTITION << bits) < buildSize) {
+      bits++;
+    }
+    return bits;
+  }
+
+  /**
+   * 平行分區：各區段先統計每個分區的筆數，算出每個 (分區, 區段) 的起點後各自寫到不相交的位置
+   */
+  private static Partitioned partition(int[] keys, int bits) {
+    int n = keys.length;
+    int partitions = 1 << bits;
+    int chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), n / ROWS_PER_PARTITION));
+    int chunkSize = (n + chunks - 1) / chunks;
+    int[][] counts = new int[chunks][partitions];
+    IntStream.range(0, chunks).parallel().forEach(chunk -> {
+      for (int i = chunk * chunkSize; i < Math.min(n, (chunk + 1) * chunkSize); i++) {
+        counts[chunk][partitionOf(keys[i], bits)]++;
+      }
+    });
+    int[] starts = new int[partitions + 1];
+    int[][] cursors = new int[chunks][partitions];
+    int position = 0;
+    for (int p = 0; p < partitions; p++) {
+      starts[p] = position;
+      for (int chunk = 0; chunk < chunks; chunk++) {
+        cursors[chunk][p] = position;
+        position += counts[chunk][p];
+      }
+    }
+    starts[partitions] = n;
+    int[] partitionedKeys = new int[n];
+    int[] rows = new int[n];
+    IntStream.range(0, chunks).parallel().forEach(chunk -> {
+      int[] cursor = cursors[chunk];
+      for (int i = chunk * chunkSize; i < Math.min(n, (chunk + 1) * chunkSize); i++) {
+        int target = cursor[partitionOf(keys[i], bits)]++;
+        partitionedKeys[target] = keys[i];
+        rows[target] = i;
+      }
+    });
+    return new Partitioned(starts, partitionedKeys, rows);
+  }
+
+  /**
+   * 分區用雜湊值的最高位元，分區內的雜湊表用最低位元，兩者互不相關
+   */
+  private static int partitionOf(int key, int bits) {
+    return (bits == 0) ? 0 : (int) (PackedKeyHashIndex.mix(key) >>> (Long.SIZE - bits));
+  }
+
+  private static int bucket(int key, int capacity) {
+    return (int) PackedKeyHashIndex.mix(key) & (capacity - 1);
+  }
+
+  // --- 排序合併 join ---
+
+  public static Result sortMergeJoin(int[] leftKeys, int[] rightKeys) {
+    long startTime = System.nanoTime();
+    long[] leftSorted = new long[leftKeys.length];
+    int[] leftOrder = new int[leftKeys.length];
+    sortWithRows(leftKeys, leftSorted, leftOrder);
+    long[] rightSorted = new long[rightKeys.length];
+    int[] rightOrder = new int[rightKeys.length];
+    sortWithRows(rightKeys, rightSorted, rightOrder);
+    long buildNanos = System.nanoTime() - startTime;
+
+    startTime = System.nanoTime();
+    int[] leftRows = new int[Math.max(16, Math.min(leftKeys.length, rightKeys.length))];
+    int[] rightRows = new int[leftRows.length];
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < leftSorted.length && j < rightSorted.length) {
+      if (leftSorted[i] < rightSorted[j]) {
+        i++;
+      } else if (leftSorted[i] > rightSorted[j]) {
+        j++;
+      } else {
+        // 兩邊相同鍵的區段做笛卡兒積
+        long key = leftSorted[i];
+        int leftEnd = i;
+        while (leftEnd < leftSorted.length && leftSorted[leftEnd] == key) {
+          leftEnd++;
+        }
+        int rightEnd = j;
+        while (rightEnd < rightSorted.length && rightSorted[rightEnd] == key) {
+          rightEnd++;
+        }
+        long needed = count + (long) (leftEnd - i) * (rightEnd - j);
+        if (needed > leftRows.length) {
+          int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, leftRows.length * 2L));
+          leftRows = Arrays.copyOf(leftRows, capacity);
+          rightRows = Arrays.copyOf(rightRows, capacity);
+        }
+        for (int a = i; a < leftEnd; a++) {
+          for (int b = j; b < rightEnd; b++) {
+            leftRows[count] = leftOrder[a];
+            rightRows[count++] = rightOrder[b];
+          }
+        }
+        i = leftEnd;
+        j = rightEnd;
+      }
+    }
+    leftRows = Arrays.copyOf(leftRows, count);
+    rightRows = Arrays.copyOf(rightRows, count);
+    long probeNanos = System.nanoTime() - startTime;
+
+    // 排序時另有同樣大小的基數排序緩衝區
+    long bytes = 2 * (MemoryEstimator.arrayBytes(leftKeys.length, Long.BYTES + Integer.BYTES)
+        + MemoryEstimator.arrayBytes(rightKeys.length, Long.BYTES + Integer.BYTES))
+        + 2 * MemoryEstimator.arrayBytes(count, Integer.BYTES);
+    return new Result(Strategy.SORT_MERGE, leftRows, rightRows, buildNanos, probeNanos, bytes);
+  }
+
+  /**
+   * 已排序的一邊只需複製，不必再排序
+   */
+  private static void sortWithRows(int[] keys, long[] sortedKeys, int[] order) {
+    for (int i = 0; i < keys.length; i++) {
+      sortedKeys[i] = keys[i];
+      order[i] = i;
+    }
+    if (!isSorted(keys)) {
+      ParallelRadixSort.sortByKey(sortedKeys, order);
+    }
+  }
+
+  static boolean isSorted(int[] keys) {
+    for (int i = 1; i < keys.length; i++) {
+      if (keys[i - 1] > keys[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int[] concat(int[][] parts) {
+    int total = 0;
+    for (int[] part : parts) {
+      total += part.length;
+    }
+    int[] result = new int[total];
+    int position = 0;
+    for (int[] part : parts) {
+      System.arraycopy(part, 0, result, position, part.length);
+      position += part.length;
+    }
+    return result;
+  }
+}
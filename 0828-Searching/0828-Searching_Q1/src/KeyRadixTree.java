@@ -0,0 +1,441 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 以交易代碼的 10 個 base-36 字元為路徑的基數樹 (ART 風格的自適應節點)。
+ * 內部節點依子節點數量在 Node4、Node16、Node36 (直接索引) 之間成長；
+ * 只有一個鍵的子樹直接放葉節點 (lazy expansion)，只有一個子節點的路徑則跳過不存
+ * (path compression：節點記錄分岔的字元位置，並保留子樹中任一個鍵用來比對略過的前綴)。
+ * 每個內部節點記錄子樹內的鍵數，所以前綴計數只需要走前綴長度那麼多層。
+ */
+public class KeyRadixTree {
+
+  private static final int SYMBOL_COUNT = 36;
+  private static final int DEPTH = TransactionColumns.KEY_SYMBOLS;
+  // POW36[i] = 36^i
+  private static final long[] POW36 = new long[DEPTH + 1];
+
+  static {
+    POW36[0] = 1;
+    for (int i = 1; i <= DEPTH; i++) {
+      POW36[i] = POW36[i - 1] * SYMBOL_COUNT;
+    }
+  }
+
+  private Node root;
+  private int size;
+  // insert 的回傳值已經用來替換節點，是否新增了鍵另外記在這裡
+  private boolean added;
+
+  /**
+   * 依列序號建立：keys[i] 對應列 i
+   */
+  public static KeyRadixTree build(long[] keys) {
+    KeyRadixTree tree = new KeyRadixTree();
+    for (int row = 0; row < keys.length; row++) {
+      tree.put(keys[row], row);
+    }
+    return tree;
+  }
+
+  /**
+   * 放入鍵值；鍵已存在時覆蓋列序號
+   */
+  public void put(long key, int row) {
+    if (key < 0 || key >= POW36[DEPTH]) {
+      throw new IllegalArgumentException("不是合法的壓縮鍵: " + key);
+    }
+    added = false;
+    root = insert(root, key, row);
+    if (added) {
+      size++;
+    }
+  }
+
+  private Node insert(Node node, long key, int row) {
+    if (node == null) {
+      added = true;
+      return new Leaf(key, row);
+    }
+    if (node instanceof Leaf leaf) {
+      if (leaf.key == key) {
+        leaf.row = row;
+        return leaf;
+      }
+      added = true;
+      return branch(firstDifference(key, leaf.key), leaf, 1, new Leaf(key, row));
+    }
+    Inner inner = (Inner) node;
+    int difference = firstDifference(key, inner.sampleKey);
+    if (difference < inner.depth) {
+      // 被略過的前綴不同：在分歧處插入新的分岔節點
+      added = true;
+      return branch(difference, inner, inner.count, new Leaf(key, row));
+    }
+    int symbol = symbolAt(key, inner.depth);
+    Node child = inner.child(symbol);
+    Node replacement = insert(child, key, row);
+    if (child == null) {
+      inner = inner.addChild(symbol, replacement);
+    } else if (replacement != child) {
+      inner.replaceChild(symbol, replacement);
+    }
+    if (added) {
+      inner.count++;
+    }
+    return inner;
+  }
+
+  private static Inner branch(int depth, Node existing, int existingCount, Leaf leaf) {
+    Inner node = new SmallNode(4, depth, leaf.key);
+    node.addChild(symbolAt(existing instanceof Leaf l ? l.key : ((Inner) existing).sampleKey, depth), existing);
+    node.addChild(symbolAt(leaf.key, depth), leaf);
+    node.count = existingCount + 1;
+    return node;
+  }
+
+  // --- 查詢 ---
+
+  /**
+   * @return 列序號；找不到時回傳 -1
+   */
+  public int get(long key) {
+    Node node = root;
+    while (node instanceof Inner inner) {
+      node = inner.child(symbolAt(key, inner.depth));
+    }
+    return (node != null && ((Leaf) node).key == key) ? ((Leaf) node).row : -1;
+  }
+
+  public boolean contains(String key) {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && get(packed) >= 0;
+  }
+
+  /**
+   * @param prefix 例如 "TX-7Q"；必須以 "TX-" 開頭，否則回傳 0
+   * @return 以該前綴開頭的 KEY 數量
+   */
+  public int countWithPrefix(String prefix) {
+    long[] parsed = parsePrefix(prefix);
+    if (parsed == null) {
+      return 0;
+    }
+    Node node = subtree(parsed);
+    if (node == null) {
+      return 0;
+    }
+    return (node instanceof Inner inner) ? inner.count : 1;
+  }
+
+  /**
+   * 依排序列出以該前綴開頭的 KEY
+   * @param limit 最多回傳幾筆
+   */
+  public List<String> keysWithPrefix(String prefix, int limit) {
+    List<String> keys = new ArrayList<>();
+    long[] parsed = parsePrefix(prefix);
+    if (parsed != null) {
+      collect(subtree(parsed), limit, keys, null);
+    }
+    return keys;
+  }
+
+  /**
+   * @return 以該前綴開頭的所有交易的列序號，依 KEY 排序
+   */
+  public int[] rowsWithPrefix(String prefix) {
+    int count = countWithPrefix(prefix);
+    int[] rows = new int[count];
+    if (count > 0) {
+      collect(subtree(parsePrefix(prefix)), count, null, rows);
+    }
+    return rows;
+  }
+
+  /**
+   * 找出「所有鍵都以前綴開頭」的最上層子樹；沒有符合的鍵時回傳 null
+   * @param parsed {前綴長度, 前綴的 base-36 值}
+   */
+  private Node subtree(long[] parsed) {
+    int length = (int) parsed[0];
+    long value = parsed[1];
+    Node node = root;
+    while (node instanceof Inner inner) {
+      if (inner.depth >= length) {
+        return prefixOf(inner.sampleKey, length) == value ? inner : null;
+      }
+      // 子樹共用前 depth 個字元，先確認被略過的部分也符合前綴
+      if (prefixOf(inner.sampleKey, inner.depth) != value / POW36[length - inner.depth]) {
+        return null;
+      }
+      node = inner.child((int) (value / POW36[length - 1 - inner.depth] % SYMBOL_COUNT));
+    }
+    return (node != null && prefixOf(((Leaf) node).key, length) == value) ? node : null;
+  }
+
+  /**
+   * 依序走訪子樹的葉節點，把 KEY 加入 keys 或把列序號寫入 rows
+   * @return 已收集的數量
+   */
+  private int collect(Node node, int limit, List<String> keys, int[] rows) {
+    int collected = 0;
+    Node[] stack = new Node[DEPTH * SYMBOL_COUNT + 1];
+    int top = 0;
+    if (node != null) {
+      stack[top++] = node;
+    }
+    while (top > 0 && collected < limit) {
+      Node current = stack[--top];
+      if (current instanceof Leaf leaf) {
+        if (keys != null) {
+          keys.add(TransactionColumns.unpackKey(leaf.key));
+        }
+        if (rows != null) {
+          rows[collected] = leaf.row;
+        }
+        collected++;
+      } else {
+        // 反向推入，讓最小的字元先被取出
+        Inner inner = (Inner) current;
+        for (int symbol = SYMBOL_COUNT - 1; symbol >= 0; symbol--) {
+          Node child = inner.child(symbol);
+          if (child != null) {
+            stack[top++] = child;
+          }
+        }
+      }
+    }
+    return collected;
+  }
+
+  /**
+   * @return {長度, 值}；字元不合法或不是 TX- 開頭時回傳 null
+   */
+  private static long[] parsePrefix(String prefix) {
+    // 與 ShardedKeyIndex.prefixRange 相同，一定要有完整的 "TX-"；T 與 X 本身也是合法的 base-36 字元，
+    // 若同時接受省略 "TX-" 的寫法，"T" 會分不清是指全部的鍵還是第一個字元為 T 的鍵
+    if (!prefix.startsWith(TransactionColumns.KEY_PREFIX)) {
+      return null;
+    }
+    String symbols = prefix.substring(TransactionColumns.KEY_PREFIX.length());
+    if (symbols.length() > DEPTH) {
+      return null;
+    }
+    long value = 0;
+    for (int i = 0; i < symbols.length(); i++) {
+      int symbol = TransactionColumns.symbolValue(symbols.charAt(i));
+      if (symbol < 0) {
+        return null;
+      }
+      value = value * SYMBOL_COUNT + symbol;
+    }
+    return new long[] {symbols.length(), value};
+  }
+
+  private static int symbolAt(long key, int depth) {
+    return (int) (key / POW36[DEPTH - 1 - depth] % SYMBOL_COUNT);
+  }
+
+  private static long prefixOf(long key, int length) {
+    return key / POW36[DEPTH - length];
+  }
+
+  private static int firstDifference(long a, long b) {
+    int depth = 0;
+    while (depth < DEPTH && symbolAt(a, depth) == symbolAt(b, depth)) {
+      depth++;
+    }
+    return depth;
+  }
+
+  // --- 統計 ---
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return {葉節點, Node4, Node16, Node36} 的數量
+   */
+  public long[] nodeCounts() {
+    long[] counts = new long[4];
+    visit(root, counts, null);
+    return counts;
+  }
+
+  public long estimatedBytes() {
+    long[] bytes = new long[1];
+    visit(root, new long[4], bytes);
+    return bytes[0];
+  }
+
+  private static void visit(Node node, long[] counts, long[] bytes) {
+    if (node == null) {
+      return;
+    }
+    if (node instanceof Leaf) {
+      counts[0]++;
+      if (bytes != null) {
+        bytes[0] += Leaf.BYTES;
+      }
+      return;
+    }
+    Inner inner = (Inner) node;
+    counts[inner instanceof DirectNode ? 3 : (((SmallNode) inner).symbols.length == 4 ? 1 : 2)]++;
+    if (bytes != null) {
+      bytes[0] += inner.estimatedBytes();
+    }
+    for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+      visit(inner.child(symbol), counts, bytes);
+    }
+  }
+
+  @Override
+  public String toString() {
+    long[] counts = nodeCounts();
+    return String.format("%d 個鍵，葉節點 %d、Node4 %d、Node16 %d、Node36 %d，約 %s",
+        size, counts[0], counts[1], counts[2], counts[3], MemoryEstimator.format(estimatedBytes()));
+  }
+
+  // --- 節點 ---
+
+  private abstract static class Node {
+  }
+
+  private static final class Leaf extends Node {
+    // 標頭 + long + int
+    static final long BYTES = MemoryEstimator.align(MemoryEstimator.OBJECT_HEADER_BYTES + Long.BYTES + Integer.BYTES);
+
+    final long key;
+    int row;
+
+    Leaf(long key, int row) {
+      this.key = key;
+      this.row = row;
+    }
+  }
+
+  private abstract static class Inner extends Node {
+    // 標頭 + depth + sampleKey + count + 子節點數 + 兩個陣列參考
+    static final long FIELD_BYTES = MemoryEstimator.align(MemoryEstimator.OBJECT_HEADER_BYTES
+        + 3 * Integer.BYTES + Long.BYTES + 2 * MemoryEstimator.REFERENCE_BYTES);
+
+    // 這個節點依第 depth 個字元分岔；子樹內所有鍵的前 depth 個字元與 sampleKey 相同
+    final int depth;
+    final long sampleKey;
+    int count;
+
+    Inner(int depth, long sampleKey) {
+      this.depth = depth;
+      this.sampleKey = sampleKey;
+    }
+
+    abstract Node child(int symbol);
+
+    /**
+     * 加入新的子節點；容量不足時回傳成長後的新節點
+     */
+    abstract Inner addChild(int symbol, Node child);
+
+    abstract void replaceChild(int symbol, Node child);
+
+    abstract long estimatedBytes();
+  }
+
+  /**
+   * Node4 / Node16：字元與子節點依字元排序存放
+   */
+  private static final class SmallNode extends Inner {
+    final byte[] symbols;
+    final Node[] children;
+    int childCount;
+
+    SmallNode(int capacity, int depth, long sampleKey) {
+      super(depth, sampleKey);
+      this.symbols = new byte[capacity];
+      this.children = new Node[capacity];
+    }
+
+    @Override
+    Node child(int symbol) {
+      for (int i = 0; i < childCount; i++) {
+        if (symbols[i] == symbol) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    @Override
+    Inner addChild(int symbol, Node child) {
+      if (childCount == symbols.length) {
+        Inner grown = (symbols.length == 4)
+            ? new SmallNode(16, depth, sampleKey) : new DirectNode(depth, sampleKey);
+        for (int i = 0; i < childCount; i++) {
+          grown.addChild(symbols[i], children[i]);
+        }
+        grown.count = count;
+        return grown.addChild(symbol, child);
+      }
+      int position = childCount;
+      while (position > 0 && symbols[position - 1] > symbol) {
+        symbols[position] = symbols[position - 1];
+        children[position] = children[position - 1];
+        position--;
+      }
+      symbols[position] = (byte) symbol;
+      children[position] = child;
+      childCount++;
+      return this;
+    }
+
+    @Override
+    void replaceChild(int symbol, Node child) {
+      for (int i = 0; i < childCount; i++) {
+        if (symbols[i] == symbol) {
+          children[i] = child;
+          return;
+        }
+      }
+    }
+
+    @Override
+    long estimatedBytes() {
+      return FIELD_BYTES + MemoryEstimator.arrayBytes(symbols.length, 1)
+          + MemoryEstimator.arrayBytes(children.length, MemoryEstimator.REFERENCE_BYTES);
+    }
+  }
+
+  /**
+   * Node36：以字元值直接索引子節點
+   */
+  private static final class DirectNode extends Inner {
+    final Node[] children = new Node[SYMBOL_COUNT];
+
+    DirectNode(int depth, long sampleKey) {
+      super(depth, sampleKey);
+    }
+
+    @Override
+    Node child(int symbol) {
+      return children[symbol];
+    }
+
+    @Override
+    Inner addChild(int symbol, Node child) {
+      children[symbol] = child;
+      return this;
+    }
+
+    @Override
+    void replaceChild(int symbol, Node child) {
+      children[symbol] = child;
+    }
+
+    @Override
+    long estimatedBytes() {
+      return FIELD_BYTES + MemoryEstimator.arrayBytes(children.length, MemoryEstimator.REFERENCE_BYTES);
+    }
+  }
+}
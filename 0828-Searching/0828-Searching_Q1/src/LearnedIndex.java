@@ -0,0 +1,178 @@
+import java.util.Arrays;
+
+/**
+ * PGM 風格的學習型索引：把「排序後的壓縮鍵 → 位置」這條累積分佈曲線切成多段直線，
+ * 每段保證預測位置與實際位置相差不超過 epsilon。
+ * 查詢時先以二分搜尋找出鍵所屬的線段 (線段數遠少於鍵數，常駐快取)，
+ * 再用直線算出預測位置，只在 [預測 - epsilon, 預測 + epsilon] 這個小視窗內做二分搜尋。
+ *
+ * 線段以「收縮錐」貪婪法建立：從線段起點出發，可行斜率的範圍隨每個新點縮小，
+ * 範圍變成空集合時就從該點開始新的線段。
+ */
+public class LearnedIndex {
+
+  static final int DEFAULT_EPSILON = 32;
+
+  private final long[] keys;
+  private final int epsilon;
+  // 每段的第一個鍵、起點位置與斜率
+  private final long[] segmentKeys;
+  private final int[] segmentStarts;
+  private final double[] segmentSlopes;
+  private final int maxError;
+
+  private LearnedIndex(long[] keys, int epsilon, long[] segmentKeys, int[] segmentStarts, double[] segmentSlopes) {
+    this.keys = keys;
+    this.epsilon = epsilon;
+    this.segmentKeys = segmentKeys;
+    this.segmentStarts = segmentStarts;
+    this.segmentSlopes = segmentSlopes;
+    this.maxError = measureMaxError();
+  }
+
+  public static LearnedIndex build(long[] sortedKeys) {
+    return build(sortedKeys, DEFAULT_EPSILON);
+  }
+
+  /**
+   * @param sortedKeys 由小到大排序的壓縮鍵；索引直接引用這個陣列，呼叫端不可修改
+   * @param epsilon 預測位置允許的最大誤差
+   */
+  public static LearnedIndex build(long[] sortedKeys, int epsilon) {
+    if (epsilon < 1) {
+      throw new IllegalArgumentException("誤差上限至少為 1: " + epsilon);
+    }
+    int n = sortedKeys.length;
+    long[] keys = new long[16];
+    int[] starts = new int[16];
+    double[] slopes = new double[16];
+    int segments = 0;
+
+    int start = 0;
+    while (start < n) {
+      long firstKey = sortedKeys[start];
+      double low = 0;
+      double high = Double.POSITIVE_INFINITY;
+      int end = start + 1;
+      for (; end < n; end++) {
+        double dx = (double) (sortedKeys[end] - firstKey);
+        int dy = end - start;
+        if (dx == 0) {
+          // 重複的鍵：預測位置固定在起點，只能容納 epsilon 個
+          if (dy > epsilon) {
+            break;
+          }
+          continue;
+        }
+        double pointLow = (dy - epsilon) / dx;
+        double pointHigh = (dy + epsilon) / dx;
+        if (pointLow > high || pointHigh < low) {
+          break;
+        }
+        low = Math.max(low, pointLow);
+        high = Math.min(high, pointHigh);
+      }
+      if (segments == keys.length) {
+        keys = Arrays.copyOf(keys, segments * 2);
+        starts = Arrays.copyOf(starts, segments * 2);
+        slopes = Arrays.copyOf(slopes, segments * 2);
+      }
+      keys[segments] = firstKey;
+      starts[segments] = start;
+      slopes[segments] = Double.isInfinite(high) ? 0 : (low + high) / 2;
+      segments++;
+      start = end;
+    }
+    return new LearnedIndex(sortedKeys, epsilon,
+        Arrays.copyOf(keys, segments), Arrays.copyOf(starts, segments), Arrays.copyOf(slopes, segments));
+  }
+
+  /**
+   * @return 鍵在排序陣列中的位置；找不到時回傳 -1
+   */
+  public int indexOf(long key) {
+    int segment = segmentOf(key);
+    if (segment < 0) {
+      return -1;
+    }
+    int predicted = predict(segment, key);
+    int lo = Math.max(0, predicted - epsilon);
+    int hi = Math.min(keys.length, predicted + epsilon + 1);
+    int position = Arrays.binarySearch(keys, lo, hi, key);
+    return (position >= 0) ? position : -1;
+  }
+
+  public boolean contains(String key) {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && indexOf(packed) >= 0;
+  }
+
+  /**
+   * @return 最後一個起始鍵 &lt;= key 的線段；key 比所有鍵都小時回傳 -1
+   */
+  private int segmentOf(long key) {
+    int lo = 0;
+    int hi = segmentKeys.length - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (segmentKeys[mid] <= key) {
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo - 1;
+  }
+
+  private int predict(int segment, long key) {
+    double offset = segmentSlopes[segment] * (double) (key - segmentKeys[segment]);
+    long position = segmentStarts[segment] + (long) Math.floor(offset + 0.5);
+    return (int) Math.min(position, keys.length - 1);
+  }
+
+  /**
+   * 實際量測每個鍵的預測誤差，確認不超過 epsilon
+   */
+  private int measureMaxError() {
+    int max = 0;
+    int segment = 0;
+    for (int i = 0; i < keys.length; i++) {
+      while (segment + 1 < segmentStarts.length && segmentStarts[segment + 1] <= i) {
+        segment++;
+      }
+      max = Math.max(max, Math.abs(predict(segment, keys[i]) - i));
+    }
+    return max;
+  }
+
+  public int size() {
+    return keys.length;
+  }
+
+  public int segmentCount() {
+    return segmentKeys.length;
+  }
+
+  public int epsilon() {
+    return epsilon;
+  }
+
+  public int maxError() {
+    return maxError;
+  }
+
+  /**
+   * 模型本身 (線段) 的大小，不含共用的排序鍵陣列
+   */
+  public long modelBytes() {
+    return MemoryEstimator.arrayBytes(segmentKeys.length, Long.BYTES)
+        + MemoryEstimator.arrayBytes(segmentStarts.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(segmentSlopes.length, Double.BYTES);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d 個線段，模型 %.1f KB，最大誤差 %d (上限 %d)",
+        segmentCount(), modelBytes() / 1024.0, maxError, epsilon);
+  }
+}
@@ -0,0 +1,81 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 比較逐行讀取 (BufferedReader + split) 與記憶體映射平行載入器的讀取時間。
+ * 用法: java LoaderBenchmark [transactions_1m.csv transactions_10m.csv transactions_100m.csv ...]
+ * 1 億筆資料轉成 Transaction 物件需要數十 GB 的堆積，請以 -Xmx 配合調整。
+ */
+public class LoaderBenchmark {
+
+  private static final int REPETITIONS = 3;
+
+  public static void main(String[] args) throws IOException {
+    List<String> files = new ArrayList<>();
+    for (String arg : args) {
+      files.add(arg);
+    }
+    if (files.isEmpty()) {
+      files.add("transactions.csv");
+    }
+
+    int cores = Runtime.getRuntime().availableProcessors();
+    List<Integer> parallelisms = new ArrayList<>();
+    for (int p = 1; p < cores; p *= 2) {
+      parallelisms.add(p);
+    }
+    parallelisms.add(cores);
+
+    for (String file : files) {
+      if (!new File(file).exists()) {
+        System.out.println("找不到 " + file + "，略過。");
+        continue;
+      }
+      System.out.printf("%n=== %s (%.1f MB) ===%n", file, new File(file).length() / 1e6);
+
+      // 基準：逐行讀取；只保留列數與雜湊值，避免兩份大型列表同時存在
+      long baselineBest = Long.MAX_VALUE;
+      int expectedSize = 0;
+      int expectedHash = 0;
+      for (int i = 0; i < REPETITIONS; i++) {
+        long start = System.nanoTime();
+        List<Transaction> rows = SearchPerformanceComparison.loadTransactionsWithReader(file);
+        baselineBest = Math.min(baselineBest, System.nanoTime() - start);
+        expectedSize = rows.size();
+        expectedHash = rows.hashCode();
+      }
+
+      System.out.println("+----------------------+-----------+--------------+----------+------+");
+      System.out.println("| 載入方式             | 最佳 (ms) | 列/秒        | 加速倍數 | 一致 |");
+      System.out.println("+----------------------+-----------+--------------+----------+------+");
+      printRow("BufferedReader", baselineBest, expectedSize, baselineBest, true);
+
+      for (int parallelism : parallelisms) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+          long best = Long.MAX_VALUE;
+          boolean same = true;
+          for (int i = 0; i < REPETITIONS; i++) {
+            long start = System.nanoTime();
+            List<Transaction> rows = MappedTransactionLoader.load(file, pool);
+            best = Math.min(best, System.nanoTime() - start);
+            same &= rows.size() == expectedSize && rows.hashCode() == expectedHash;
+          }
+          printRow("映射平行 x" + parallelism, best, expectedSize, baselineBest, same);
+        } finally {
+          pool.shutdown();
+        }
+      }
+      System.out.println("+----------------------+-----------+--------------+----------+------+");
+    }
+  }
+
+  private static void printRow(String name, long nanos, int rows, long baselineNanos, boolean same) {
+    double millis = nanos / 1e6;
+    System.out.printf("| %-20s | %9.1f | %12.0f | %7.2fx | %-4s |%n",
+        name, millis, rows / (nanos / 1e9), (double) baselineNanos / nanos, same ? "是" : "否");
+  }
+}
@@ -0,0 +1,507 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 以記憶體映射 (FileChannel.map) 平行讀取 transactions.csv。
+ * 檔案依換行切成多個區塊，每個區塊在 ForkJoin 執行緒上直接解析位元組，
+ * 不經過 readLine() 與 String.split()，最後依原始順序串接成同樣的 Transaction 列表。
+ * loadColumns 則直接解析成 TransactionColumns，並可在解析時就篩掉不需要的列。
+ */
+public class MappedTransactionLoader {
+
+  // 單一區塊上限；MappedByteBuffer 以 int 定址，不能超過 2GB
+  static final long MAX_CHUNK_BYTES = 256L << 20;
+  // 每個執行緒分到的區塊數，讓工作竊取可以平衡不同長度的區塊
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private static final double[] POW10 = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  public static List<Transaction> load(String filePath) throws IOException {
+    return load(filePath, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * 使用指定的 ForkJoinPool 讀取 CSV (跳過標頭)
+   * @param filePath CSV 檔案路徑
+   * @param pool 執行解析工作的執行緒池，平行度決定使用的核心數
+   * @return 與逐行讀取相同順序的交易列表
+   */
+  public static List<Transaction> load(String filePath, ForkJoinPool pool) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+      long dataStart = skipHeader(channel);
+      long[] bounds = splitChunks(channel, dataStart, pool.getParallelism() * CHUNKS_PER_THREAD);
+
+      List<ChunkParseTask> tasks = new ArrayList<>(bounds.length - 1);
+      for (int i = 0; i < bounds.length - 1; i++) {
+        tasks.add(new ChunkParseTask(channel, bounds[i], bounds[i + 1]));
+      }
+      pool.invoke(new RecursiveTask<Void>() {
+        @Override
+        protected Void compute() {
+          ForkJoinTask.invokeAll(tasks);
+          return null;
+        }
+      });
+
+      int total = 0;
+      for (ChunkParseTask task : tasks) {
+        total += task.getRawResult().size();
+      }
+      List<Transaction> transactions = new ArrayList<>(total);
+      for (ChunkParseTask task : tasks) {
+        transactions.addAll(task.getRawResult());
+      }
+      return transactions;
+    } catch (UncheckedIOException e) {
+      // 映射錯誤在工作執行緒中拋出，這裡還原成呼叫端熟悉的例外型別
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * 載入時的列篩選條件，只看得到解析後的日期、客戶、物品與價格
+   */
+  @FunctionalInterface
+  public interface RowFilter {
+    RowFilter ALL = (epochDay, customerId, itemName, priceCents) -> true;
+
+    boolean accept(int epochDay, int customerId, String itemName, int priceCents);
+  }
+
+  /**
+   * 讀取 CSV 並直接建立欄位式儲存，解析時就以 filter 篩選 (述詞下推)：
+   * 不符合的列不建立 Transaction、不壓縮交易代碼，也不佔用欄位空間。
+   * 被篩掉的列不檢查交易代碼與客戶代碼的格式。
+   * @return 符合條件的列，順序與檔案相同
+   * @throws IllegalArgumentException 保留下來的列代碼格式錯誤，或物品名稱超過 256 種 (與 TransactionColumns.from 相同)；
+   *     任何一列的價格換成分後超出 int 範圍 (篩選需要價格，所以不論是否保留都會檢查)
+   */
+  public static TransactionColumns loadColumns(String filePath, ForkJoinPool pool, RowFilter filter)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+      long dataStart = skipHeader(channel);
+      long[] bounds = splitChunks(channel, dataStart, pool.getParallelism() * CHUNKS_PER_THREAD);
+
+      List<ColumnChunkTask> tasks = new ArrayList<>(bounds.length - 1);
+      for (int i = 0; i < bounds.length - 1; i++) {
+        tasks.add(new ColumnChunkTask(channel, bounds[i], bounds[i + 1], filter));
+      }
+      pool.invoke(new RecursiveTask<Void>() {
+        @Override
+        protected Void compute() {
+          ForkJoinTask.invokeAll(tasks);
+          return null;
+        }
+      });
+
+      List<ColumnChunk> chunks = new ArrayList<>(tasks.size());
+      for (ColumnChunkTask task : tasks) {
+        chunks.add(task.getRawResult());
+      }
+      return ColumnChunk.concat(chunks);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * 回傳第一個換行之後的位置，也就是資料列的起點
+   */
+  static long skipHeader(FileChannel channel) throws IOException {
+    return nextLineStart(channel, 0);
+  }
+
+  /**
+   * 將 [start, 檔尾) 切成約 chunkCount 個區塊，每個邊界都落在某一行的開頭
+   * @return 長度為區塊數 + 1 的邊界陣列
+   */
+  static long[] splitChunks(FileChannel channel, long start, int chunkCount) throws IOException {
+    long size = channel.size();
+    long remaining = Math.max(0, size - start);
+    long count = Math.max(chunkCount, (remaining + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+    long step = Math.max(1, remaining / Math.max(1, count));
+
+    List<Long> bounds = new ArrayList<>();
+    bounds.add(start);
+    long last = start;
+    while (last < size) {
+      long next = (size - last <= step) ? size : nextLineStart(channel, last + step);
+      if (next - last > Integer.MAX_VALUE) {
+        throw new IOException("單一資料列過長，無法映射: 位移 " + last);
+      }
+      bounds.add(next);
+      last = next;
+    }
+    long[] result = new long[bounds.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = bounds.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * 從 position 開始找下一個 '\n'，回傳它後一個位元組的位置；找不到則回傳檔案大小
+   */
+  static long nextLineStart(FileChannel channel, long position) throws IOException {
+    ByteBuffer probe = ByteBuffer.allocate(4096);
+    long size = channel.size();
+    while (position < size) {
+      probe.clear();
+      int read = channel.read(probe, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (probe.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  /**
+   * 解析單一區塊的工作；區塊各自映射，所以總檔案大小不受 2GB 限制
+   */
+  private static class ChunkParseTask extends RecursiveTask<List<Transaction>> {
+    private static final long serialVersionUID = 1L;
+
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+
+    ChunkParseTask(FileChannel channel, long start, long end) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected List<Transaction> compute() {
+      MappedByteBuffer buffer;
+      try {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      // 每列約 75 位元組，預先配置避免 ArrayList 反覆擴容
+      List<Transaction> out = new ArrayList<>((int) ((end - start) / 64) + 16);
+      LineParser parser = new LineParser();
+      int limit = buffer.limit();
+      int pos = 0;
+      while (pos < limit) {
+        int lineEnd = pos;
+        while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+          lineEnd++;
+        }
+        int contentEnd = lineEnd;
+        if (contentEnd > pos && buffer.get(contentEnd - 1) == '\r') {
+          contentEnd--;
+        }
+        Transaction t = parser.parse(buffer, pos, contentEnd - pos);
+        if (t != null) {
+          out.add(t);
+        }
+        pos = lineEnd + 1;
+      }
+      return out;
+    }
+  }
+
+  /**
+   * 將單一區塊解析成欄位，只保留通過 filter 的列
+   */
+  private static class ColumnChunkTask extends RecursiveTask<ColumnChunk> {
+    private static final long serialVersionUID = 1L;
+
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+    private final RowFilter filter;
+
+    ColumnChunkTask(FileChannel channel, long start, long end, RowFilter filter) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+      this.filter = filter;
+    }
+
+    @Override
+    protected ColumnChunk compute() {
+      MappedByteBuffer buffer;
+      try {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      ColumnChunk out = new ColumnChunk(1024);
+      LineParser parser = new LineParser();
+      int limit = buffer.limit();
+      int pos = 0;
+      while (pos < limit) {
+        int lineEnd = pos;
+        while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+          lineEnd++;
+        }
+        int contentEnd = lineEnd;
+        if (contentEnd > pos && buffer.get(contentEnd - 1) == '\r') {
+          contentEnd--;
+        }
+        parser.parseInto(buffer, pos, contentEnd - pos, filter, out);
+        pos = lineEnd + 1;
+      }
+      return out;
+    }
+  }
+
+  /**
+   * 單一區塊解析出的欄位；物品名稱先以區塊內的字典編碼，串接時再換成全域代碼
+   */
+  private static class ColumnChunk {
+    private long[] keys;
+    private int[] epochDays;
+    private int[] customerIds;
+    private byte[] itemCodes;
+    private int[] priceCents;
+    private int size;
+    private final Map<String, Integer> dictionary = new LinkedHashMap<>();
+
+    ColumnChunk(int capacity) {
+      keys = new long[capacity];
+      epochDays = new int[capacity];
+      customerIds = new int[capacity];
+      itemCodes = new byte[capacity];
+      priceCents = new int[capacity];
+    }
+
+    void add(long key, int epochDay, int customerId, String itemName, int cents) {
+      if (size == keys.length) {
+        int capacity = size * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        customerIds = Arrays.copyOf(customerIds, capacity);
+        itemCodes = Arrays.copyOf(itemCodes, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+      }
+      keys[size] = key;
+      epochDays[size] = epochDay;
+      customerIds[size] = customerId;
+      itemCodes[size] = (byte) code(dictionary, itemName);
+      priceCents[size] = cents;
+      size++;
+    }
+
+    private static int code(Map<String, Integer> dictionary, String itemName) {
+      Integer code = dictionary.get(itemName);
+      if (code == null) {
+        if (dictionary.size() == TransactionColumns.MAX_ITEM_NAMES) {
+          throw new IllegalArgumentException("物品名稱超過 " + TransactionColumns.MAX_ITEM_NAMES + " 種，無法以 byte 編碼");
+        }
+        code = dictionary.size();
+        dictionary.put(itemName, code);
+      }
+      return code;
+    }
+
+    /**
+     * 依區塊順序串接；全域字典的順序與逐列第一次出現的順序相同，和 TransactionColumns.from 一致
+     */
+    static TransactionColumns concat(List<ColumnChunk> chunks) {
+      int total = 0;
+      for (ColumnChunk chunk : chunks) {
+        total += chunk.size;
+      }
+      long[] keys = new long[total];
+      int[] epochDays = new int[total];
+      int[] customerIds = new int[total];
+      byte[] itemCodes = new byte[total];
+      int[] priceCents = new int[total];
+      Map<String, Integer> dictionary = new LinkedHashMap<>();
+      int offset = 0;
+      for (ColumnChunk chunk : chunks) {
+        byte[] remap = new byte[chunk.dictionary.size()];
+        chunk.dictionary.forEach((name, local) -> remap[local] = (byte) code(dictionary, name));
+        System.arraycopy(chunk.keys, 0, keys, offset, chunk.size);
+        System.arraycopy(chunk.epochDays, 0, epochDays, offset, chunk.size);
+        System.arraycopy(chunk.customerIds, 0, customerIds, offset, chunk.size);
+        System.arraycopy(chunk.priceCents, 0, priceCents, offset, chunk.size);
+        for (int i = 0; i < chunk.size; i++) {
+          itemCodes[offset + i] = remap[chunk.itemCodes[i] & 0xFF];
+        }
+        offset += chunk.size;
+      }
+      return new TransactionColumns(keys, epochDays, customerIds, itemCodes,
+          dictionary.keySet().toArray(new String[0]), priceCents);
+    }
+  }
+
+  /**
+   * 資料列的欄位規則，載入器、StreamingAggregator 與 TransactionIndexFile、IncrementalKeyIndex 的 KEY 掃描共用：
+   * 與 String.split(",") 相同，結尾的空欄位不算，並要求剛好五個欄位
+   * @param from 列的起點
+   * @param to 列的結尾 (不含換行與 '\r')
+   * @param commas 填入四個逗號的位置
+   * @return 去掉結尾空欄位後的結尾位置；欄位數不是五個時回傳 -1
+   */
+  static int rowFieldsEnd(ByteBuffer buffer, int from, int to, int[] commas) {
+    int end = to;
+    while (end > from && buffer.get(end - 1) == ',') {
+      end--;
+    }
+    int found = 0;
+    for (int i = from; i < end; i++) {
+      if (buffer.get(i) == ',') {
+        if (found == 4) {
+          return -1;
+        }
+        commas[found++] = i;
+      }
+    }
+    return (found == 4) ? end : -1;
+  }
+
+  /**
+   * 解析單一資料列 (不含換行)，給只需要讀少數幾列的呼叫端使用
+   * @return 交易；欄位數不是五個時回傳 null
+   */
+  static Transaction parseLine(ByteBuffer buffer, int offset, int length) {
+    return new LineParser().parse(buffer, offset, length);
+  }
+
+  /**
+   * 單一執行緒專用的行解析器，重複使用行緩衝區與物品名稱快取
+   */
+  private static class LineParser {
+    private byte[] line = new byte[256];
+    private ByteBuffer lineBuffer = ByteBuffer.wrap(line);
+    private final int[] commas = new int[4];
+    // 物品名稱種類很少，快取後同名物品共用同一個 String
+    private final byte[][] nameBytes = new byte[64][];
+    private final String[] names = new String[64];
+
+    Transaction parse(ByteBuffer buffer, int offset, int length) {
+      int end = split(buffer, offset, length);
+      if (end < 0) {
+        return null;
+      }
+      return new Transaction(
+          text(0, commas[0]),
+          text(commas[0] + 1, commas[1]),
+          text(commas[1] + 1, commas[2]),
+          itemName(commas[2] + 1, commas[3]),
+          parsePrice(line, commas[3] + 1, end)
+      );
+    }
+
+    /**
+     * 先解析 filter 需要的四個欄位，通過後才壓縮交易代碼並加入 out
+     */
+    void parseInto(ByteBuffer buffer, int offset, int length, RowFilter filter, ColumnChunk out) {
+      int end = split(buffer, offset, length);
+      if (end < 0) {
+        return;
+      }
+      int epochDay = TransactionColumns.packDate(lineBuffer, commas[0] + 1, commas[1] - commas[0] - 1);
+      int customerId = TransactionColumns.packCustomerId(lineBuffer, commas[1] + 1, commas[2] - commas[1] - 1);
+      String itemName = itemName(commas[2] + 1, commas[3]);
+      int cents = TransactionColumns.packCents(line, commas[3] + 1, end);
+      if (!filter.accept(epochDay, customerId, itemName, cents)) {
+        return;
+      }
+      if (customerId == TransactionColumns.INVALID_CUSTOMER) {
+        throw new IllegalArgumentException("客戶代碼格式錯誤: " + text(commas[1] + 1, commas[2]));
+      }
+      long key = TransactionColumns.packKey(lineBuffer, 0, commas[0]);
+      if (key == TransactionColumns.INVALID_KEY) {
+        throw new IllegalArgumentException("交易代碼格式錯誤: " + text(0, commas[0]));
+      }
+      out.add(key, epochDay, customerId, itemName, cents);
+    }
+
+    /**
+     * 把一列複製到行緩衝區並找出四個逗號的位置
+     * @return 去掉結尾空欄位後的長度；欄位數不是五個時回傳 -1
+     */
+    private int split(ByteBuffer buffer, int offset, int length) {
+      if (length > line.length) {
+        line = new byte[Math.max(length, line.length * 2)];
+        lineBuffer = ByteBuffer.wrap(line);
+      }
+      buffer.get(offset, line, 0, length);
+      return rowFieldsEnd(lineBuffer, 0, length, commas);
+    }
+
+    private String text(int from, int to) {
+      return new String(line, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private String itemName(int from, int to) {
+      int hash = 0;
+      for (int i = from; i < to; i++) {
+        hash = 31 * hash + line[i];
+      }
+      int slot = hash & (names.length - 1);
+      byte[] cached = nameBytes[slot];
+      if (cached != null && Arrays.equals(cached, 0, cached.length, line, from, to)) {
+        return names[slot];
+      }
+      String name = text(from, to);
+      nameBytes[slot] = Arrays.copyOfRange(line, from, to);
+      names[slot] = name;
+      return name;
+    }
+  }
+
+  /**
+   * 直接從位元組解析價格；格式不是單純的 [-]digits[.digits] 時交給 Double.parseDouble
+   * 尾數小於 2^53 且小數位數不超過 22 時，一次除法的結果與 Double.parseDouble 完全相同
+   */
+  static double parsePrice(byte[] bytes, int from, int to) {
+    int i = from;
+    boolean negative = false;
+    if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+      negative = bytes[i] == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = -1;
+    for (; i < to; i++) {
+      byte b = bytes[i];
+      if (b >= '0' && b <= '9') {
+        mantissa = mantissa * 10 + (b - '0');
+        digits++;
+        if (scale >= 0) {
+          scale++;
+        }
+      } else if (b == '.' && scale < 0) {
+        scale = 0;
+      } else {
+        break;
+      }
+    }
+    if (i != to || digits == 0 || digits > 15 || scale >= POW10.length) {
+      return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+    }
+    double value = (scale > 0) ? mantissa / POW10[scale] : mantissa;
+    return negative ? -value : value;
+  }
+}
@@ -0,0 +1,91 @@
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 估算物件佔用的堆積大小 (假設 64 位元 JVM、開啟 compressed oops 與 compact strings)。
+ * 這是用來比較資料結構的數量級，不是精確的量測工具。
+ */
+public class MemoryEstimator {
+
+  static final int OBJECT_HEADER_BYTES = 12;
+  static final int ARRAY_HEADER_BYTES = 16;
+  static final int REFERENCE_BYTES = 4;
+
+  /**
+   * 物件大小對齊到 8 位元組
+   */
+  static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
+  static long arrayBytes(long length, int elementBytes) {
+    return align(ARRAY_HEADER_BYTES + length * elementBytes);
+  }
+
+  /**
+   * String 物件 (標頭 + hash + coder + value 參考) 加上內部 byte[]
+   */
+  static long stringBytes(String s) {
+    boolean latin1 = true;
+    for (int i = 0; i < s.length() && latin1; i++) {
+      latin1 = s.charAt(i) <= 0xFF;
+    }
+    return align(OBJECT_HEADER_BYTES + 4 + 1 + 1 + REFERENCE_BYTES)
+        + arrayBytes(s.length(), latin1 ? 1 : 2);
+  }
+
+  /**
+   * ArrayList&lt;Transaction&gt; 的總大小；共用的 String (例如物品名稱) 只計算一次
+   */
+  static long transactionListBytes(List<Transaction> rows) {
+    long recordBytes = align(OBJECT_HEADER_BYTES + 4L * REFERENCE_BYTES + Double.BYTES);
+    long bytes = align(OBJECT_HEADER_BYTES + 4 + 4 + REFERENCE_BYTES)
+        + arrayBytes(rows.size(), REFERENCE_BYTES)
+        + recordBytes * rows.size();
+    Map<String, Boolean> seen = new IdentityHashMap<>();
+    for (Transaction t : rows) {
+      bytes += distinctStringBytes(t.key(), seen)
+          + distinctStringBytes(t.date(), seen)
+          + distinctStringBytes(t.customerId(), seen)
+          + distinctStringBytes(t.itemName(), seen);
+    }
+    return bytes;
+  }
+
+  /**
+   * HashMap 本身的大小 (表格 + 每筆一個 Node)，不含鍵與值物件
+   */
+  static long hashMapBytes(int size) {
+    long capacity = Math.max(16, Long.highestOneBit(Math.max(1, (long) Math.ceil(size / 0.75)) - 1) << 1);
+    long nodeBytes = align(OBJECT_HEADER_BYTES + 4 + 3L * REFERENCE_BYTES);
+    return align(OBJECT_HEADER_BYTES + 4 * 4 + 2 * REFERENCE_BYTES)
+        + arrayBytes(capacity, REFERENCE_BYTES) + nodeBytes * size;
+  }
+
+  private static long distinctStringBytes(String s, Map<String, Boolean> seen) {
+    if (s == null || seen.put(s, Boolean.TRUE) != null) {
+      return 0;
+    }
+    return stringBytes(s);
+  }
+
+  /**
+   * 整個行程實際的堆積用量 (先要求 GC，再取 totalMemory - freeMemory)；
+   * 與上面的估算不同，這包含所有仍被參考的物件，用來比較不同模式下整體保留了多少資料
+   */
+  static long usedHeapBytes() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * 以 MB 顯示位元組數
+   */
+  static String format(long bytes) {
+    return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+  }
+}
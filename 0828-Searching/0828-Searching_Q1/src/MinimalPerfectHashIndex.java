@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 以 BBHash 方法建立在固定 KEY 集合上的最小完美雜湊索引。
+ * 交易資料載入後就不再變動，因此可以為這批 KEY 找出一個沒有碰撞的函式，
+ * 把 n 個 KEY 一對一地對應到 [0, n) 的槽位，不需要 HashMap 的空槽與 Node 物件。
+ *
+ * 建立方式：第 0 層配置 gamma * n 個位元，每個 KEY 雜湊到其中一格；只有自己一個 KEY 的格子設為 1，
+ * 發生碰撞的 KEY 留到下一層 (大小為 gamma * 剩餘數量) 重試，直到全部放好。
+ * 查詢時依序檢查各層，第一個為 1 的位元就是這個 KEY 的位置，其前面 1 的個數 (rank) 即為槽位。
+ * 完美雜湊對不在集合中的 KEY 也會回傳某個槽位，所以槽位上另存壓縮鍵供比對。
+ */
+public class MinimalPerfectHashIndex {
+
+  static final double DEFAULT_GAMMA = 2.0;
+  // 超過這個層數仍碰撞的 KEY 改放到一般雜湊表
+  private static final int MAX_LEVELS = 32;
+  // 每 8 個 long (512 位元) 記一次前綴 1 的個數
+  private static final int RANK_BLOCK_WORDS = 8;
+
+  private final long[] bits;
+  private final int[] levelStarts;
+  private final int[] levelSizes;
+  private final int[] blockRanks;
+  private final long[] slotKeys;
+  private final int[] slotRows;
+  private final PackedKeyHashIndex fallback;
+  private final double gamma;
+
+  private MinimalPerfectHashIndex(long[] bits, int[] levelStarts, int[] levelSizes, long[] slotKeys,
+                                  int[] slotRows, PackedKeyHashIndex fallback, double gamma) {
+    this.bits = bits;
+    this.levelStarts = levelStarts;
+    this.levelSizes = levelSizes;
+    this.slotKeys = slotKeys;
+    this.slotRows = slotRows;
+    this.fallback = fallback;
+    this.gamma = gamma;
+    this.blockRanks = new int[(bits.length + RANK_BLOCK_WORDS - 1) / RANK_BLOCK_WORDS + 1];
+    int rank = 0;
+    for (int word = 0; word < bits.length; word++) {
+      if (word % RANK_BLOCK_WORDS == 0) {
+        blockRanks[word / RANK_BLOCK_WORDS] = rank;
+      }
+      rank += Long.bitCount(bits[word]);
+    }
+  }
+
+  public static MinimalPerfectHashIndex build(long[] keys) {
+    return build(keys, DEFAULT_GAMMA);
+  }
+
+  /**
+   * 依列序號建立索引：keys[i] 對應列 i
+   * @param gamma 每層位元數與剩餘 KEY 數的比例；越大層數越少、建立越快，但每個 KEY 佔的位元越多
+   */
+  public static MinimalPerfectHashIndex build(long[] keys, double gamma) {
+    if (gamma < 1.0) {
+      throw new IllegalArgumentException("gamma 必須至少為 1: " + gamma);
+    }
+    int[] remaining = new int[keys.length];
+    for (int i = 0; i < remaining.length; i++) {
+      remaining[i] = i;
+    }
+    int remainingCount = remaining.length;
+
+    List<long[]> levels = new ArrayList<>();
+    List<Integer> sizes = new ArrayList<>();
+    while (remainingCount > 0 && levels.size() < MAX_LEVELS) {
+      int level = levels.size();
+      int size = (int) Math.min(Integer.MAX_VALUE - 63L, Math.max(64, (long) Math.ceil(gamma * remainingCount)));
+      long[] seen = new long[(size + 63) >>> 6];
+      long[] collided = new long[seen.length];
+      for (int i = 0; i < remainingCount; i++) {
+        int position = position(keys[remaining[i]], level, size);
+        long mask = 1L << position;
+        int word = position >>> 6;
+        if ((seen[word] & mask) != 0) {
+          collided[word] |= mask;
+        }
+        seen[word] |= mask;
+      }
+      // 只留下恰好一個 KEY 的位置；碰撞的 KEY 移到陣列前段，進入下一層
+      int next = 0;
+      for (int i = 0; i < remainingCount; i++) {
+        int position = position(keys[remaining[i]], level, size);
+        if ((collided[position >>> 6] & (1L << position)) != 0) {
+          remaining[next++] = remaining[i];
+        }
+      }
+      if (next == remainingCount) {
+        // 這一層一個都放不進去 (通常是重複的 KEY)，再加層也沒有用，剩下的交給備用表
+        break;
+      }
+      for (int w = 0; w < seen.length; w++) {
+        seen[w] &= ~collided[w];
+      }
+      levels.add(seen);
+      sizes.add(size);
+      remainingCount = next;
+    }
+
+    // 各層的位元依序接成一個位元陣列，每層從 64 的倍數開始
+    int levelCount = levels.size();
+    int[] levelStarts = new int[levelCount];
+    int[] levelSizes = new int[levelCount];
+    int totalWords = 0;
+    for (int level = 0; level < levelCount; level++) {
+      levelStarts[level] = totalWords << 6;
+      levelSizes[level] = sizes.get(level);
+      totalWords += levels.get(level).length;
+    }
+    long[] bits = new long[totalWords];
+    for (int level = 0; level < levelCount; level++) {
+      long[] levelBits = levels.get(level);
+      System.arraycopy(levelBits, 0, bits, levelStarts[level] >>> 6, levelBits.length);
+    }
+
+    PackedKeyHashIndex fallback = null;
+    boolean[] unplaced = new boolean[keys.length];
+    if (remainingCount > 0) {
+      fallback = new PackedKeyHashIndex(remainingCount);
+      for (int i = 0; i < remainingCount; i++) {
+        fallback.put(keys[remaining[i]], remaining[i]);
+        unplaced[remaining[i]] = true;
+      }
+    }
+
+    int placed = keys.length - remainingCount;
+    MinimalPerfectHashIndex index = new MinimalPerfectHashIndex(bits, levelStarts, levelSizes,
+        new long[placed], new int[placed], fallback, gamma);
+    // 依函式算出的槽位填入壓縮鍵與列序號；放在備用表的 KEY 可能落在別人的槽位，要跳過
+    for (int row = 0; row < keys.length; row++) {
+      if (!unplaced[row]) {
+        int slot = index.slotOf(keys[row]);
+        index.slotKeys[slot] = keys[row];
+        index.slotRows[slot] = row;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * 最小完美雜湊函式本身：集合中的 KEY 回傳唯一的槽位，其他 KEY 回傳任意槽位或 -1
+   */
+  int slotOf(long key) {
+    for (int level = 0; level < levelStarts.length; level++) {
+      int bit = levelStarts[level] + position(key, level, levelSizes[level]);
+      if ((bits[bit >>> 6] & (1L << bit)) != 0) {
+        return rank(bit);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return 列序號；找不到時回傳 -1
+   */
+  public int get(long key) {
+    int slot = slotOf(key);
+    if (slot >= 0 && slotKeys[slot] == key) {
+      return slotRows[slot];
+    }
+    // 備用表中的 KEY 也可能落在別的 KEY 的位元上，所以比對失敗時仍要查備用表
+    return (fallback != null) ? fallback.get(key) : -1;
+  }
+
+  public boolean contains(String key) {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && get(packed) >= 0;
+  }
+
+  /**
+   * 位元 bit 之前 (不含) 的 1 的個數
+   */
+  private int rank(int bit) {
+    int word = bit >>> 6;
+    int block = word / RANK_BLOCK_WORDS;
+    int rank = blockRanks[block];
+    for (int w = block * RANK_BLOCK_WORDS; w < word; w++) {
+      rank += Long.bitCount(bits[w]);
+    }
+    return rank + Long.bitCount(bits[word] & ((1L << bit) - 1));
+  }
+
+  /**
+   * 每層使用不同的雜湊：以層數擾動後再做 fmix64，並以乘法取高位縮放到 [0, size)
+   */
+  private static int position(long key, int level, int size) {
+    long h = PackedKeyHashIndex.mix(key + (level + 1) * 0x9E3779B97F4A7C15L);
+    return (int) (((h >>> 32) * size) >>> 32);
+  }
+
+  public int size() {
+    return slotKeys.length + (fallback != null ? fallback.size() : 0);
+  }
+
+  public int levels() {
+    return levelStarts.length;
+  }
+
+  public double gamma() {
+    return gamma;
+  }
+
+  /**
+   * 雜湊函式本身 (各層位元與 rank 表) 平均每個 KEY 使用的位元數，不含槽位上的壓縮鍵與列序號
+   */
+  public double bitsPerKey() {
+    long functionBits = (long) bits.length * Long.SIZE + (long) blockRanks.length * Integer.SIZE;
+    return functionBits / (double) Math.max(1, size());
+  }
+
+  public long estimatedBytes() {
+    long bytes = MemoryEstimator.arrayBytes(bits.length, Long.BYTES)
+        + MemoryEstimator.arrayBytes(blockRanks.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(slotKeys.length, Long.BYTES)
+        + MemoryEstimator.arrayBytes(slotRows.length, Integer.BYTES)
+        + 2 * MemoryEstimator.arrayBytes(levelStarts.length, Integer.BYTES);
+    if (fallback != null) {
+      bytes += MemoryEstimator.arrayBytes(fallback.capacity(), Long.BYTES + Integer.BYTES);
+    }
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d 筆，%d 層，gamma %.1f，函式 %.2f bits/key，另存 %d 筆於備用雜湊表，共 %s",
+        size(), levels(), gamma, bitsPerKey(), (fallback != null ? fallback.size() : 0),
+        MemoryEstimator.format(estimatedBytes()));
+  }
+}
@@ -0,0 +1,168 @@
+import java.util.Arrays;
+
+/**
+ * 以壓縮後的 64 位元交易代碼為鍵的開放定址雜湊索引 (線性探測)。
+ * 鍵與值分別放在 long[] 與 int[]，查詢時不產生任何物件，回傳的是列序號。
+ */
+public class PackedKeyHashIndex {
+
+  // 合法的壓縮鍵一定是非負數，所以用 -1 標記空槽
+  private static final long EMPTY = -1L;
+  static final double DEFAULT_LOAD_FACTOR = 0.5;
+
+  private final long[] slotKeys;
+  private final int[] slotRows;
+  private final int mask;
+  private int size;
+
+  public PackedKeyHashIndex(int expectedSize) {
+    this(expectedSize, DEFAULT_LOAD_FACTOR);
+  }
+
+  public PackedKeyHashIndex(int expectedSize, double loadFactor) {
+    if (loadFactor <= 0 || loadFactor >= 1) {
+      throw new IllegalArgumentException("負載因子必須介於 0 與 1 之間: " + loadFactor);
+    }
+    long needed = (long) Math.ceil(Math.max(1, expectedSize) / loadFactor);
+    int capacity = Integer.highestOneBit((int) Math.min(needed, 1 << 30));
+    if (capacity < needed && capacity < (1 << 30)) {
+      capacity <<= 1;
+    }
+    slotKeys = new long[capacity];
+    slotRows = new int[capacity];
+    Arrays.fill(slotKeys, EMPTY);
+    mask = capacity - 1;
+  }
+
+  /**
+   * 依列序號建立索引：keys[i] 對應列 i
+   */
+  public static PackedKeyHashIndex build(long[] keys) {
+    PackedKeyHashIndex index = new PackedKeyHashIndex(keys.length);
+    for (int row = 0; row < keys.length; row++) {
+      index.put(keys[row], row);
+    }
+    return index;
+  }
+
+  /**
+   * 放入鍵值；鍵已存在時覆蓋列序號 (與 HashMap.put 相同)
+   */
+  public void put(long key, int row) {
+    if (key < 0) {
+      throw new IllegalArgumentException("壓縮鍵必須是非負數: " + key);
+    }
+    if (size >= mask) {
+      throw new IllegalStateException("索引已滿，容量 " + capacity());
+    }
+    int slot = slotOf(key);
+    while (slotKeys[slot] != EMPTY) {
+      if (slotKeys[slot] == key) {
+        slotRows[slot] = row;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    slotKeys[slot] = key;
+    slotRows[slot] = row;
+    size++;
+  }
+
+  /**
+   * @return 列序號；找不到時回傳 -1
+   */
+  public int get(long key) {
+    int slot = slotOf(key);
+    long current;
+    while ((current = slotKeys[slot]) != EMPTY) {
+      if (current == key) {
+        return slotRows[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  public boolean contains(String key) {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && get(packed) >= 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return slotKeys.length;
+  }
+
+  public double loadFactor() {
+    return size / (double) capacity();
+  }
+
+  public long estimatedBytes() {
+    return MemoryEstimator.arrayBytes(slotKeys.length, Long.BYTES)
+        + MemoryEstimator.arrayBytes(slotRows.length, Integer.BYTES);
+  }
+
+  /**
+   * 走訪整張表計算探測長度：命中時為「離家距離 + 1」，
+   * 未命中時為從家位置走到下一個空槽所需的比較次數 (假設雜湊值均勻分布於所有槽)
+   */
+  public ProbeStats probeStats() {
+    long hitProbes = 0;
+    int maxHitProbe = 0;
+    for (int slot = 0; slot < slotKeys.length; slot++) {
+      if (slotKeys[slot] != EMPTY) {
+        int probe = ((slot - slotOf(slotKeys[slot])) & mask) + 1;
+        hitProbes += probe;
+        maxHitProbe = Math.max(maxHitProbe, probe);
+      }
+    }
+
+    // 未命中：每個家位置要往後比較到第一個空槽 (含空槽本身)
+    // 從一個空槽開始往回掃，連續佔用長度 run 會貢獻 run+1 次比較
+    long missProbes = 0;
+    int start = 0;
+    while (slotKeys[start] != EMPTY) {
+      start++;
+    }
+    int run = 0;
+    for (int i = 0; i < slotKeys.length; i++) {
+      int slot = (start - i) & mask;
+      run = (slotKeys[slot] == EMPTY) ? 0 : run + 1;
+      missProbes += run + 1;
+    }
+    return new ProbeStats(loadFactor(),
+        size == 0 ? 0 : hitProbes / (double) size,
+        maxHitProbe,
+        missProbes / (double) slotKeys.length);
+  }
+
+  /**
+   * 索引的統計資訊
+   */
+  public record ProbeStats(double loadFactor, double averageHitProbes, int maxHitProbes, double averageMissProbes) {
+    @Override
+    public String toString() {
+      return String.format("負載因子 %.3f，命中平均探測 %.2f 次 (最多 %d 次)，未命中平均探測 %.2f 次",
+          loadFactor, averageHitProbes, maxHitProbes, averageMissProbes);
+    }
+  }
+
+  private int slotOf(long key) {
+    return (int) mix(key) & mask;
+  }
+
+  /**
+   * MurmurHash3 的 fmix64；壓縮鍵的低位元分布不均，需要先打散
+   */
+  static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,111 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在壓縮後的 long[] 交易代碼欄位上做線性掃描。
+ * 單執行緒版本一次比較 8 個鍵 (不短路的 | 運算，沒有逐鍵分支)，
+ * 平行版本以 ForkJoin 切割區間，任一段找到後其餘工作在下一個檢查點提早結束。
+ */
+public class ParallelKeyScan {
+
+  static final int LANES = 8;
+  // 小於此長度不再切割，避免工作排程的成本超過掃描本身
+  private static final int SEQUENTIAL_THRESHOLD = 1 << 16;
+  // 每掃描這麼多個鍵檢查一次其他工作是否已找到
+  private static final int CANCEL_CHECK_INTERVAL = 1 << 12;
+
+  public static int indexOf(long[] keys, long target) {
+    return indexOf(keys, target, 0, keys.length);
+  }
+
+  /**
+   * 在 [from, to) 中尋找 target
+   * @return 索引；找不到時回傳 -1
+   */
+  static int indexOf(long[] keys, long target, int from, int to) {
+    int i = from;
+    int blockEnd = from + ((to - from) / LANES) * LANES;
+    for (; i < blockEnd; i += LANES) {
+      boolean any = (keys[i] == target) | (keys[i + 1] == target)
+          | (keys[i + 2] == target) | (keys[i + 3] == target)
+          | (keys[i + 4] == target) | (keys[i + 5] == target)
+          | (keys[i + 6] == target) | (keys[i + 7] == target);
+      if (any) {
+        for (int lane = 0; lane < LANES; lane++) {
+          if (keys[i + lane] == target) {
+            return i + lane;
+          }
+        }
+      }
+    }
+    for (; i < to; i++) {
+      if (keys[i] == target) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public static int parallelIndexOf(long[] keys, long target) {
+    return parallelIndexOf(keys, target, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * 以指定的執行緒池平行掃描；鍵不重複時結果與 indexOf 相同
+   */
+  public static int parallelIndexOf(long[] keys, long target, ForkJoinPool pool) {
+    if (keys.length <= SEQUENTIAL_THRESHOLD || pool.getParallelism() == 1) {
+      return indexOf(keys, target);
+    }
+    AtomicInteger found = new AtomicInteger(-1);
+    pool.invoke(new ScanTask(keys, target, 0, keys.length, found));
+    return found.get();
+  }
+
+  public static boolean contains(long[] keys, String key) {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && parallelIndexOf(keys, packed) >= 0;
+  }
+
+  private static class ScanTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] keys;
+    private final long target;
+    private final int from;
+    private final int to;
+    private final AtomicInteger found;
+
+    ScanTask(long[] keys, long target, int from, int to, AtomicInteger found) {
+      this.keys = keys;
+      this.target = target;
+      this.from = from;
+      this.to = to;
+      this.found = found;
+    }
+
+    @Override
+    protected void compute() {
+      if (found.get() >= 0) {
+        return;
+      }
+      if (to - from <= SEQUENTIAL_THRESHOLD) {
+        for (int start = from; start < to; start += CANCEL_CHECK_INTERVAL) {
+          if (found.get() >= 0) {
+            return;
+          }
+          int index = indexOf(keys, target, start, Math.min(to, start + CANCEL_CHECK_INTERVAL));
+          if (index >= 0) {
+            found.compareAndSet(-1, index);
+            return;
+          }
+        }
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new ScanTask(keys, target, from, mid, found), new ScanTask(keys, target, mid, to, found));
+    }
+  }
+}
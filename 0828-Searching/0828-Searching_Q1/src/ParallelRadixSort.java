@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 以壓縮的 64 位元 KEY 做平行 LSD 基數排序，並讓列序號 (permutation) 跟著移動。
+ * 每一輪處理 8 個位元：各執行緒先統計自己區段的位元組分布，算出每個 (桶, 區段) 的起始位置後，
+ * 再各自把資料搬到不相交的位置，所以搬移時不需要同步，而且是穩定排序。
+ * 所有 KEY 在某個位元組都相同時 (例如 36^10 &lt; 2^52 使最高的位元組全為 0) 直接略過那一輪。
+ *
+ * 用來取代 Collections.sort(binarySearchList)：逐筆以 String.compareTo 比較的單執行緒排序，
+ * 改為在壓縮鍵上排序後依 permutation 取出 Transaction。
+ */
+public class ParallelRadixSort {
+
+  static final int RADIX_BITS = 8;
+  private static final int BUCKETS = 1 << RADIX_BITS;
+  // 少於這個數量時單執行緒排序，平行化的成本不划算
+  private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+  /**
+   * 建立排序列表的方式
+   */
+  enum Method {
+    RADIX("平行基數排序"),
+    PARALLEL_SORT("Arrays.parallelSort"),
+    COLLECTIONS_SORT("Collections.sort");
+
+    private final String label;
+
+    Method(String label) {
+      this.label = label;
+    }
+
+    @Override
+    public String toString() {
+      return label;
+    }
+  }
+
+  /**
+   * 依 KEY 排序 keys，rows 跟著一起移動；結果與 TransactionColumns.sortByKey 相同，但相同 KEY 保持原順序
+   */
+  static void sortByKey(long[] keys, int[] rows) {
+    int n = keys.length;
+    int chunks = (n < PARALLEL_THRESHOLD) ? 1 : Runtime.getRuntime().availableProcessors();
+    int chunkSize = (n + chunks - 1) / Math.max(1, chunks);
+    long[] keyBuffer = new long[n];
+    int[] rowBuffer = new int[n];
+    long[] fromKeys = keys;
+    int[] fromRows = rows;
+    long[] toKeys = keyBuffer;
+    int[] toRows = rowBuffer;
+
+    for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+      int[][] counts = new int[chunks][BUCKETS];
+      long[] source = fromKeys;
+      int pass = shift;
+      forEachChunk(chunks, chunkSize, n, (chunk, from, to) -> {
+        int[] count = counts[chunk];
+        for (int i = from; i < to; i++) {
+          count[digit(source[i], pass)]++;
+        }
+      });
+      if (isSingleBucket(counts, n)) {
+        continue;
+      }
+      // 桶依序排列，同一個桶內依區段排列，維持穩定性
+      int[][] starts = new int[chunks][BUCKETS];
+      int position = 0;
+      for (int bucket = 0; bucket < BUCKETS; bucket++) {
+        for (int chunk = 0; chunk < chunks; chunk++) {
+          starts[chunk][bucket] = position;
+          position += counts[chunk][bucket];
+        }
+      }
+      int[] sourceRows = fromRows;
+      long[] targetKeys = toKeys;
+      int[] targetRows = toRows;
+      forEachChunk(chunks, chunkSize, n, (chunk, from, to) -> {
+        int[] next = starts[chunk];
+        for (int i = from; i < to; i++) {
+          int target = next[digit(source[i], pass)]++;
+          targetKeys[target] = source[i];
+          targetRows[target] = sourceRows[i];
+        }
+      });
+      fromKeys = targetKeys;
+      fromRows = targetRows;
+      toKeys = source;
+      toRows = sourceRows;
+    }
+    if (fromKeys != keys) {
+      System.arraycopy(fromKeys, 0, keys, 0, n);
+      System.arraycopy(fromRows, 0, rows, 0, n);
+    }
+  }
+
+  /**
+   * 回傳依 KEY 排序的新列表，順序與 Collections.sort(new ArrayList&lt;&gt;(transactions)) 相同。
+   * RADIX 遇到無法壓縮的 KEY (格式不符) 時改用 PARALLEL_SORT，因為壓縮值無法保留它們的字串順序。
+   */
+  static List<Transaction> sorted(List<Transaction> transactions, Method method) {
+    if (method == Method.RADIX) {
+      int n = transactions.size();
+      long[] keys = new long[n];
+      int[] rows = new int[n];
+      for (int row = 0; row < n; row++) {
+        keys[row] = TransactionColumns.packKey(transactions.get(row).key());
+        if (keys[row] == TransactionColumns.INVALID_KEY) {
+          return sorted(transactions, Method.PARALLEL_SORT);
+        }
+        rows[row] = row;
+      }
+      sortByKey(keys, rows);
+      Transaction[] ordered = new Transaction[n];
+      for (int i = 0; i < n; i++) {
+        ordered[i] = transactions.get(rows[i]);
+      }
+      return new ArrayList<>(Arrays.asList(ordered));
+    }
+    if (method == Method.PARALLEL_SORT) {
+      Transaction[] ordered = transactions.toArray(new Transaction[0]);
+      Arrays.parallelSort(ordered);
+      return new ArrayList<>(Arrays.asList(ordered));
+    }
+    List<Transaction> ordered = new ArrayList<>(transactions);
+    Collections.sort(ordered);
+    return ordered;
+  }
+
+  /**
+   * 以符號位元反轉後的值取位元組，讓負數 (INVALID_KEY) 排在最前面，與 long 的大小順序一致
+   */
+  private static int digit(long key, int shift) {
+    return (int) ((key ^ Long.MIN_VALUE) >>> shift) & (BUCKETS - 1);
+  }
+
+  private static boolean isSingleBucket(int[][] counts, int n) {
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      int total = 0;
+      for (int[] count : counts) {
+        total += count[bucket];
+      }
+      if (total != 0) {
+        return total == n;
+      }
+    }
+    return true;
+  }
+
+  @FunctionalInterface
+  private interface ChunkTask {
+    void run(int chunk, int from, int to);
+  }
+
+  private static void forEachChunk(int chunks, int chunkSize, int n, ChunkTask task) {
+    IntStream range = IntStream.range(0, chunks);
+    (chunks > 1 ? range.parallel() : range).forEach(chunk ->
+        task.run(chunk, Math.min(n, chunk * chunkSize), Math.min(n, (chunk + 1) * chunkSize)));
+  }
+}
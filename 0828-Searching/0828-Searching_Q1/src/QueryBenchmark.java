@@ -0,0 +1,213 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * 比較同一組篩選條件在不同寫法下的時間，並核對結果完全相同：
+ * - List&lt;Transaction&gt; 上的 stream / parallelStream 管線
+ * - TransactionQuery 的批次選擇向量，單執行緒與 ForkJoin 平行
+ * - 從讀檔開始計時：讀完整份再篩選，與把條件下推到載入器
+ * 用法: java QueryBenchmark [transactions.csv]
+ */
+public class QueryBenchmark {
+
+  private static final int REPETITIONS = 5;
+
+  /**
+   * 一個查詢的兩種寫法；filter 與 conditions 必須描述同一組條件
+   */
+  private record Query(String name, String description, Predicate<Transaction> filter,
+                       TransactionQuery.Condition... conditions) {
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path csvPath = Path.of(args.length > 0 ? args[0] : "transactions.csv");
+    if (!Files.exists(csvPath)) {
+      System.out.println("找不到 " + csvPath + "，程式終止。");
+      return;
+    }
+    List<Transaction> transactions = MappedTransactionLoader.load(csvPath.toString());
+    TransactionColumns columns = TransactionColumns.from(transactions);
+    ForkJoinPool single = new ForkJoinPool(1);
+    ForkJoinPool parallel = ForkJoinPool.commonPool();
+    System.out.printf("交易 %d 筆，處理器 %d 個 (平行版使用 %d 個執行緒)%n%n", columns.size(),
+        Runtime.getRuntime().availableProcessors(), parallel.getParallelism());
+
+    Transaction sample = transactions.get(0);
+    List<Query> queries = new ArrayList<>();
+    queries.add(new Query("Q1", "黃金期貨 且 價格 > 3000 且 2024 年",
+        t -> t.itemName().equals("黃金期貨 (Gold)") && t.price() > 3000 && t.date().startsWith("2024"),
+        TransactionQuery.itemIs("黃金期貨 (Gold)"), TransactionQuery.priceAbove(300_000),
+        TransactionQuery.inYear(2024)));
+    queries.add(new Query("Q2", "2024 年 3 月 且 價格 1000 ~ 2000",
+        t -> t.date().compareTo("2024-03-01") >= 0 && t.date().compareTo("2024-03-31") <= 0
+            && t.price() >= 1000 && t.price() <= 2000,
+        TransactionQuery.dateBetween(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31)),
+        TransactionQuery.priceBetween(100_000, 200_000)));
+    queries.add(new Query("Q3", "2025 年 (選擇率約 1/3)", t -> t.date().startsWith("2025"),
+        TransactionQuery.inYear(2025)));
+    queries.add(new Query("Q4", "客戶 " + sample.customerId(), t -> t.customerId().equals(sample.customerId()),
+        TransactionQuery.customerIs(sample.customerId())));
+
+    System.out.println("--- 篩選後彙總 (筆數、金額、最低 / 最高價) ---");
+    System.out.println("+------+----------+--------------+--------------+--------------+--------------+");
+    System.out.println("| 查詢 | 筆數     | stream (ms)  | 平行 stream  | 批次 1 執行緒| 批次平行     |");
+    System.out.println("+------+----------+--------------+--------------+--------------+--------------+");
+    for (Query query : queries) {
+      LongSummaryStatistics expected = streamSummary(transactions, query, false);
+      long streamTime = Long.MAX_VALUE;
+      long parallelStreamTime = Long.MAX_VALUE;
+      long singleTime = Long.MAX_VALUE;
+      long parallelTime = Long.MAX_VALUE;
+      for (int round = 0; round < REPETITIONS; round++) {
+        long startTime = System.nanoTime();
+        LongSummaryStatistics sequentialStream = streamSummary(transactions, query, false);
+        streamTime = Math.min(streamTime, System.nanoTime() - startTime);
+
+        startTime = System.nanoTime();
+        LongSummaryStatistics parallelStream = streamSummary(transactions, query, true);
+        parallelStreamTime = Math.min(parallelStreamTime, System.nanoTime() - startTime);
+
+        startTime = System.nanoTime();
+        TransactionQuery.Summary singleSummary = build(columns, query).withPool(single).summarize();
+        singleTime = Math.min(singleTime, System.nanoTime() - startTime);
+
+        startTime = System.nanoTime();
+        TransactionQuery.Summary parallelSummary = build(columns, query).withPool(parallel).summarize();
+        parallelTime = Math.min(parallelTime, System.nanoTime() - startTime);
+
+        verify(query, expected, sequentialStream);
+        verify(query, expected, parallelStream);
+        verify(query, expected, singleSummary);
+        verify(query, expected, parallelSummary);
+      }
+      System.out.printf("| %-4s | %-8d | %-12.2f | %-12.2f | %-12.2f | %-12.2f |%n", query.name(), expected.getCount(),
+          streamTime / 1e6, parallelStreamTime / 1e6, singleTime / 1e6, parallelTime / 1e6);
+    }
+    System.out.println("+------+----------+--------------+--------------+--------------+--------------+");
+    for (Query query : queries) {
+      System.out.printf("%s: %s%n", query.name(), query.description());
+    }
+
+    Query first = queries.get(0);
+    System.out.println("\n--- 依物品分組 (2024 年，價格 > 3000) ---");
+    Map<String, StreamingAggregator.GroupStats> grouped = TransactionQuery.over(columns)
+        .where(TransactionQuery.priceAbove(300_000)).where(TransactionQuery.inYear(2024)).groupByItem();
+    Map<String, long[]> streamGrouped = transactions.stream()
+        .filter(t -> t.price() > 3000 && t.date().startsWith("2024"))
+        .collect(Collectors.groupingBy(Transaction::itemName, TreeMap::new,
+            Collectors.reducing(new long[2], t -> new long[]{1, TransactionColumns.toCents(t.price())},
+                (a, b) -> new long[]{a[0] + b[0], a[1] + b[1]})));
+    if (grouped.size() != streamGrouped.size()) {
+      throw new IllegalStateException("分組數不同: " + grouped.size() + " / " + streamGrouped.size());
+    }
+    grouped.forEach((item, stats) -> {
+      long[] expected = streamGrouped.get(item);
+      if (expected == null || expected[0] != stats.count() || expected[1] != stats.sumCents()) {
+        throw new IllegalStateException(item + " 的分組結果不同");
+      }
+    });
+    grouped.values().stream().limit(5).forEach(stats -> System.out.printf("  %s: %d 筆，平均 %.2f%n",
+        stats.group(), stats.count(), stats.averagePrice()));
+    System.out.printf("  ... 共 %d 組，與 stream groupingBy 相同%n", grouped.size());
+
+    System.out.println("\n--- " + first.name() + " 投影前 5 筆 (代碼、日期、價格) ---");
+    List<String[]> projected = build(columns, first)
+        .select(5, TransactionQuery.Column.KEY, TransactionQuery.Column.DATE, TransactionQuery.Column.PRICE);
+    List<String[]> streamProjected = transactions.stream().filter(first.filter()).limit(5)
+        .map(t -> new String[]{t.key(), t.date(), String.format("%.2f", t.price())}).toList();
+    for (int i = 0; i < projected.size(); i++) {
+      if (!Arrays.equals(projected.get(i), streamProjected.get(i))) {
+        throw new IllegalStateException("第 " + i + " 筆投影結果不同");
+      }
+      System.out.println("  " + String.join(", ", projected.get(i)));
+    }
+
+    System.out.println("\n--- 從讀檔開始計時 (" + first.name() + ") ---");
+    runPushDownTest(csvPath.toString(), first, streamSummary(transactions, first, false));
+  }
+
+  /**
+   * 讀完整份再篩選，對照條件下推到載入器時只建立符合的列
+   */
+  private static void runPushDownTest(String csvFile, Query query, LongSummaryStatistics expected) throws IOException {
+    long fullStream = Long.MAX_VALUE;
+    long fullColumns = Long.MAX_VALUE;
+    long pushDown = Long.MAX_VALUE;
+    long pushDownBytes = 0;
+    long fullBytes = 0;
+    for (int round = 0; round < REPETITIONS; round++) {
+      long startTime = System.nanoTime();
+      List<Transaction> loaded = MappedTransactionLoader.load(csvFile);
+      verify(query, expected, streamSummary(loaded, query, true));
+      fullStream = Math.min(fullStream, System.nanoTime() - startTime);
+
+      startTime = System.nanoTime();
+      TransactionColumns all = MappedTransactionLoader.loadColumns(csvFile, ForkJoinPool.commonPool(),
+          MappedTransactionLoader.RowFilter.ALL);
+      verify(query, expected, build(all, query).summarize());
+      fullColumns = Math.min(fullColumns, System.nanoTime() - startTime);
+      fullBytes = all.estimatedBytes();
+
+      startTime = System.nanoTime();
+      TransactionQuery pushed = TransactionQuery.load(csvFile, query.conditions());
+      verify(query, expected, pushed.summarize());
+      pushDown = Math.min(pushDown, System.nanoTime() - startTime);
+      pushDownBytes = pushed.columns().estimatedBytes();
+    }
+    System.out.println("+------------------------------+--------------+--------------+");
+    System.out.println("| 方式                         | 時間 (ms)    | 載入的資料   |");
+    System.out.println("+------------------------------+--------------+--------------+");
+    System.out.printf("| load + parallelStream        | %-12.1f | 全部物件     |%n", fullStream / 1e6);
+    System.out.printf("| loadColumns + 批次查詢       | %-12.1f | %-12s |%n", fullColumns / 1e6,
+        MemoryEstimator.format(fullBytes));
+    System.out.printf("| 條件下推到載入器             | %-12.1f | %-12s |%n", pushDown / 1e6,
+        MemoryEstimator.format(pushDownBytes));
+    System.out.println("+------------------------------+--------------+--------------+");
+    System.out.printf("下推時只保留 %d 列，被篩掉的列不建立物件也不壓縮交易代碼%n", expected.getCount());
+  }
+
+  private static TransactionQuery build(TransactionColumns columns, Query query) {
+    TransactionQuery result = TransactionQuery.over(columns);
+    for (TransactionQuery.Condition condition : query.conditions()) {
+      result.where(condition);
+    }
+    return result;
+  }
+
+  /**
+   * 對照組：stream 篩選後把價格換成分再統計
+   */
+  private static LongSummaryStatistics streamSummary(List<Transaction> transactions, Query query, boolean parallel) {
+    return (parallel ? transactions.parallelStream() : transactions.stream())
+        .filter(query.filter())
+        .mapToLong(t -> TransactionColumns.toCents(t.price()))
+        .summaryStatistics();
+  }
+
+  private static void verify(Query query, LongSummaryStatistics expected, LongSummaryStatistics actual) {
+    if (expected.getCount() != actual.getCount() || expected.getSum() != actual.getSum()) {
+      throw new IllegalStateException(query.name() + " 的 stream 結果不一致");
+    }
+  }
+
+  private static void verify(Query query, LongSummaryStatistics expected, TransactionQuery.Summary actual) {
+    boolean same = expected.getCount() == actual.count() && expected.getSum() == actual.sumCents()
+        && (actual.count() == 0
+        || (expected.getMin() == actual.minCents() && expected.getMax() == actual.maxCents()));
+    if (!same) {
+      throw new IllegalStateException(query.name() + " 的結果與 stream 不同: " + actual.count() + " / "
+          + expected.getCount() + " 筆");
+    }
+  }
+}
@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 比較基數樹、排序列表與 HashMap 的記憶體用量、精確查詢與前綴查詢時間。
+ * 用法: java RadixTreeBenchmark [transactions.csv]
+ */
+public class RadixTreeBenchmark {
+
+  private static final int LOOKUP_COUNT = 100_000;
+  private static final int PREFIX_QUERIES = 200;
+  // HashMap 只能全表掃描，前綴查詢只跑少量
+  private static final int HASH_PREFIX_QUERIES = 5;
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) {
+    String csvFile = args.length > 0 ? args[0] : "transactions.csv";
+    List<Transaction> transactions = SearchPerformanceComparison.loadTransactions(csvFile);
+    if (transactions.isEmpty()) {
+      System.out.println("讀取資料失敗或檔案為空，程式終止。");
+      return;
+    }
+    int n = transactions.size();
+
+    long startTime = System.nanoTime();
+    List<Transaction> sortedList = new ArrayList<>(transactions);
+    Collections.sort(sortedList);
+    long sortTime = System.nanoTime() - startTime;
+
+    startTime = System.nanoTime();
+    Map<String, Transaction> hashMap = new HashMap<>();
+    for (Transaction t : transactions) {
+      hashMap.put(t.key(), t);
+    }
+    long hashTime = System.nanoTime() - startTime;
+
+    TransactionColumns columns = TransactionColumns.from(transactions);
+    startTime = System.nanoTime();
+    KeyRadixTree tree = KeyRadixTree.build(columns.keys());
+    long treeTime = System.nanoTime() - startTime;
+    System.out.println("基數樹: " + tree + "\n");
+
+    // 排序列表與 HashMap 還需要每筆 KEY 的 String；基數樹直接存壓縮鍵
+    long keyStrings = 0;
+    for (Transaction t : transactions) {
+      keyStrings += MemoryEstimator.stringBytes(t.key());
+    }
+    System.out.println("+--------------+--------------+--------------+--------------+");
+    System.out.println("| 結構         | 建立 (ms)    | 索引大小     | 含 KEY 字串  |");
+    System.out.println("+--------------+--------------+--------------+--------------+");
+    long listBytes = MemoryEstimator.arrayBytes(n, MemoryEstimator.REFERENCE_BYTES);
+    long mapBytes = MemoryEstimator.hashMapBytes(n);
+    long treeBytes = tree.estimatedBytes();
+    printMemoryRow("排序列表", sortTime, listBytes, listBytes + keyStrings);
+    printMemoryRow("HashMap", hashTime, mapBytes, mapBytes + keyStrings);
+    printMemoryRow("基數樹", treeTime, treeBytes, treeBytes);
+    System.out.println("+--------------+--------------+--------------+--------------+");
+
+    // 精確查詢：一半存在、一半不存在
+    List<String> lookups = new ArrayList<>();
+    List<String> missing = new ArrayList<>();
+    SearchPerformanceComparison.prepareSearchKeys(transactions, lookups, missing, LOOKUP_COUNT / 2);
+    lookups.addAll(missing);
+    Collections.shuffle(lookups);
+    long listLookup = Long.MAX_VALUE;
+    long mapLookup = Long.MAX_VALUE;
+    long treeLookup = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      int hits = 0;
+      startTime = System.nanoTime();
+      for (String key : lookups) {
+        hits += SearchPerformanceComparison.binarySearch(sortedList, key) ? 1 : 0;
+      }
+      listLookup = Math.min(listLookup, System.nanoTime() - startTime);
+      startTime = System.nanoTime();
+      for (String key : lookups) {
+        hits -= SearchPerformanceComparison.hashSearch(hashMap, key) ? 1 : 0;
+      }
+      mapLookup = Math.min(mapLookup, System.nanoTime() - startTime);
+      startTime = System.nanoTime();
+      for (String key : lookups) {
+        hits += tree.contains(key) ? 1 : 0;
+      }
+      treeLookup = Math.min(treeLookup, System.nanoTime() - startTime);
+      if (hits != LOOKUP_COUNT / 2) {
+        throw new IllegalStateException("三種結構的命中數不同");
+      }
+    }
+    System.out.printf("\n精確查詢 (%d 次): 排序列表 %.1f ns，HashMap %.1f ns，基數樹 %.1f ns\n\n", lookups.size(),
+        listLookup / (double) lookups.size(), mapLookup / (double) lookups.size(),
+        treeLookup / (double) lookups.size());
+
+    // 前綴查詢：各長度的前綴都取自真實 KEY
+    Random random = new Random(42);
+    System.out.println("+----------+------------+--------------------+--------------------+--------------------+");
+    System.out.println("| 前綴長度 | 平均筆數   | 排序列表 (ns/次)   | HashMap (ns/次)    | 基數樹 (ns/次)     |");
+    System.out.println("+----------+------------+--------------------+--------------------+--------------------+");
+    for (int length = 1; length <= 5; length++) {
+      List<String> prefixes = new ArrayList<>();
+      for (int i = 0; i < PREFIX_QUERIES; i++) {
+        String key = transactions.get(random.nextInt(n)).key();
+        prefixes.add(key.substring(0, TransactionColumns.KEY_PREFIX.length() + length));
+      }
+
+      long listTime = Long.MAX_VALUE;
+      long treeCountTime = Long.MAX_VALUE;
+      long total = 0;
+      for (int round = 0; round < ROUNDS; round++) {
+        long listTotal = 0;
+        startTime = System.nanoTime();
+        for (String prefix : prefixes) {
+          listTotal += sortedListPrefixCount(sortedList, prefix);
+        }
+        listTime = Math.min(listTime, System.nanoTime() - startTime);
+
+        long treeTotal = 0;
+        startTime = System.nanoTime();
+        for (String prefix : prefixes) {
+          treeTotal += tree.countWithPrefix(prefix);
+        }
+        treeCountTime = Math.min(treeCountTime, System.nanoTime() - startTime);
+        if (listTotal != treeTotal) {
+          throw new IllegalStateException("前綴 " + length + " 的計數不同: " + listTotal + " / " + treeTotal);
+        }
+        total = treeTotal;
+      }
+
+      long mapTotal = 0;
+      long treeSubset = 0;
+      startTime = System.nanoTime();
+      for (String prefix : prefixes.subList(0, HASH_PREFIX_QUERIES)) {
+        for (String key : hashMap.keySet()) {
+          mapTotal += key.startsWith(prefix) ? 1 : 0;
+        }
+      }
+      long mapTime = System.nanoTime() - startTime;
+      for (String prefix : prefixes.subList(0, HASH_PREFIX_QUERIES)) {
+        treeSubset += tree.countWithPrefix(prefix);
+      }
+      if (mapTotal != treeSubset) {
+        throw new IllegalStateException("HashMap 掃描的前綴計數不同");
+      }
+
+      System.out.printf("| %-8d | %-10d | %-18.1f | %-18.1f | %-18.1f |\n", length, total / PREFIX_QUERIES,
+          listTime / (double) PREFIX_QUERIES, mapTime / (double) HASH_PREFIX_QUERIES,
+          treeCountTime / (double) PREFIX_QUERIES);
+    }
+    System.out.println("+----------+------------+--------------------+--------------------+--------------------+");
+
+    String sample = transactions.get(0).key().substring(0, TransactionColumns.KEY_PREFIX.length() + 4);
+    System.out.println("\n範例: " + sample + "* 共 " + tree.countWithPrefix(sample) + " 筆，前 5 筆 "
+        + tree.keysWithPrefix(sample, 5));
+  }
+
+  /**
+   * 在排序列表上以兩次二分搜尋找出前綴範圍；'~' 排在所有 KEY 字元之後
+   */
+  static int sortedListPrefixCount(List<Transaction> sortedList, String prefix) {
+    return lowerBound(sortedList, prefix + "~") - lowerBound(sortedList, prefix);
+  }
+
+  private static int lowerBound(List<Transaction> sortedList, String key) {
+    int index = Collections.binarySearch(sortedList, new Transaction(key, null, null, null, 0.0));
+    return (index >= 0) ? index : -index - 1;
+  }
+
+  private static void printMemoryRow(String name, long buildNanos, long indexBytes, long totalBytes) {
+    System.out.printf("| %-12s | %-12.1f | %-12s | %-12s |\n", name, buildNanos / 1e6,
+        MemoryEstimator.format(indexBytes), MemoryEstimator.format(totalBytes));
+  }
+}
@@ -0,0 +1,493 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 交易搜尋演算法的無頭 (headless) 基準測試，做法比照 JMH：
+ * 每個 (演算法, 資料量, 命中率) 組合在獨立的 JVM 分支 (fork) 中執行，
+ * 先暖機再量測多個固定時長的迭代，結果透過 Blackhole 消耗避免被 JIT 消除，
+ * 最後輸出吞吐量與平均時間 (含 99.9% 信賴區間誤差)，並寫成 JMH 格式的 JSON 方便跨版本比對。
+ *
+ * 用法: java SearchBenchmark [--algorithms linear,binary,hash] [--sizes 10000,100000,1000000,10000000]
+ *                            [--hit-ratios 1.0,0.5,0.0] [--forks 2] [--warmup 3] [--iterations 5]
+ *                            [--iteration-ms 1000] [--seed 42] [--out search-benchmark.json]
+ * 本專案沒有 Maven/Gradle 建置，所以不依賴 JMH 函式庫，改以這個類別提供同樣的量測流程。
+ */
+public class SearchBenchmark {
+
+  private static final int QUERY_COUNT = 4096;
+  private static final String WORKER_FLAG = "--worker";
+  private static final String RESULT_PREFIX = "ITERATION ";
+
+  /**
+   * 演算法名稱對應「由資料集建立搜尋函式」；建構時間不列入量測
+   */
+  static final Map<String, Function<Dataset, Predicate<String>>> ALGORITHMS = new LinkedHashMap<>();
+
+  static {
+    ALGORITHMS.put("linear", data -> key -> SearchPerformanceComparison.linearSearch(data.transactions(), key));
+    ALGORITHMS.put("binary", data -> {
+      List<Transaction> sorted = new ArrayList<>(data.transactions());
+      Collections.sort(sorted);
+      return key -> SearchPerformanceComparison.binarySearch(sorted, key);
+    });
+    ALGORITHMS.put("hash", data -> {
+      Map<String, Transaction> map = new HashMap<>(data.transactions().size() * 2);
+      for (Transaction t : data.transactions()) {
+        map.put(t.key(), t);
+      }
+      return key -> SearchPerformanceComparison.hashSearch(map, key);
+    });
+    ALGORITHMS.put("columnLinear", data -> {
+      TransactionColumns columns = TransactionColumns.from(data.transactions());
+      return key -> SearchPerformanceComparison.linearSearch(columns, key);
+    });
+    ALGORITHMS.put("laneLinear", data -> {
+      long[] keys = TransactionColumns.from(data.transactions()).keys();
+      return key -> {
+        long packed = TransactionColumns.packKey(key);
+        return packed != TransactionColumns.INVALID_KEY && ParallelKeyScan.indexOf(keys, packed) >= 0;
+      };
+    });
+    ALGORITHMS.put("parallelLinear", data -> {
+      TransactionColumns columns = TransactionColumns.from(data.transactions());
+      return key -> SearchPerformanceComparison.parallelLinearSearch(columns, key);
+    });
+    ALGORITHMS.put("columnBinary", data -> {
+      TransactionColumns sorted = TransactionColumns.from(data.transactions()).sortedByKey();
+      return key -> SearchPerformanceComparison.binarySearch(sorted, key);
+    });
+    ALGORITHMS.put("eytzinger", data -> {
+      EytzingerIndex index = EytzingerIndex.build(TransactionColumns.from(data.transactions()).sortedByKey().keys());
+      return key -> SearchPerformanceComparison.eytzingerSearch(index, key);
+    });
+    ALGORITHMS.put("openAddressing", data -> {
+      PackedKeyHashIndex index = PackedKeyHashIndex.build(TransactionColumns.from(data.transactions()).keys());
+      return key -> SearchPerformanceComparison.openAddressingSearch(index, key);
+    });
+    ALGORITHMS.put("learned", data -> {
+      LearnedIndex index = LearnedIndex.build(TransactionColumns.from(data.transactions()).sortedByKey().keys());
+      return key -> SearchPerformanceComparison.learnedSearch(index, key);
+    });
+    ALGORITHMS.put("radixTree", data -> {
+      KeyRadixTree tree = KeyRadixTree.build(TransactionColumns.from(data.transactions()).keys());
+      return tree::contains;
+    });
+    ALGORITHMS.put("perfectHash", data -> {
+      MinimalPerfectHashIndex index = MinimalPerfectHashIndex.build(TransactionColumns.from(data.transactions()).keys());
+      return index::contains;
+    });
+  }
+
+  /**
+   * 基準測試用的資料集與查詢鍵 (命中與未命中依比例混合)
+   */
+  record Dataset(List<Transaction> transactions, String[] queries) {
+  }
+
+  /**
+   * 量測設定
+   */
+  record Settings(List<String> algorithms, List<Integer> sizes, List<Double> hitRatios, int forks,
+                  int warmupIterations, int measurementIterations, long iterationMillis, long seed, String out) {
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].equals(WORKER_FLAG)) {
+      runWorker(args);
+      return;
+    }
+    Settings settings = parseSettings(args);
+    for (String algorithm : settings.algorithms()) {
+      if (!ALGORITHMS.containsKey(algorithm)) {
+        throw new IllegalArgumentException("未知的演算法: " + algorithm + "，可用: " + ALGORITHMS.keySet());
+      }
+    }
+
+    List<Result> results = new ArrayList<>();
+    for (String algorithm : settings.algorithms()) {
+      for (int size : settings.sizes()) {
+        for (double hitRatio : settings.hitRatios()) {
+          System.out.printf("# %s size=%d hitRatio=%.2f%n", algorithm, size, hitRatio);
+          List<List<double[]>> forkSamples = new ArrayList<>();
+          int forks = Math.max(1, settings.forks());
+          for (int fork = 0; fork < forks; fork++) {
+            forkSamples.add(settings.forks() == 0
+                ? measure(algorithm, size, hitRatio, settings)
+                : runFork(algorithm, size, hitRatio, settings));
+          }
+          results.add(new Result(algorithm, size, hitRatio, forkSamples));
+        }
+      }
+    }
+
+    printTable(results);
+    writeJson(results, settings);
+    System.out.println("\n結果已寫入 " + settings.out());
+  }
+
+  // --- 執行分支 ---
+
+  /**
+   * 啟動新的 JVM 執行單一組合，沿用目前的 JVM 參數 (例如 -Xmx) 與 classpath
+   * @return 每次量測迭代的 {運算次數, 耗時奈秒}
+   */
+  private static List<double[]> runFork(String algorithm, int size, double hitRatio, Settings settings)
+      throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    for (String jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+      // 除錯代理會搶同一個埠，不能傳給分支
+      if (!jvmArg.startsWith("-agentlib:jdwp")) {
+        command.add(jvmArg);
+      }
+    }
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(SearchBenchmark.class.getName());
+    command.add(WORKER_FLAG);
+    command.add(algorithm);
+    command.add(Integer.toString(size));
+    command.add(Double.toString(hitRatio));
+    command.add(Integer.toString(settings.warmupIterations()));
+    command.add(Integer.toString(settings.measurementIterations()));
+    command.add(Long.toString(settings.iterationMillis()));
+    command.add(Long.toString(settings.seed()));
+
+    Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    List<double[]> samples = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(RESULT_PREFIX)) {
+          String[] parts = line.substring(RESULT_PREFIX.length()).split(" ");
+          samples.add(new double[]{Double.parseDouble(parts[0]), Double.parseDouble(parts[1])});
+        } else {
+          System.out.println(line);
+        }
+      }
+    }
+    int exitCode = process.waitFor();
+    if (exitCode != 0) {
+      throw new IllegalStateException("分支 JVM 結束碼 " + exitCode + ": " + algorithm);
+    }
+    return samples;
+  }
+
+  private static void runWorker(String[] args) {
+    Settings settings = new Settings(List.of(args[1]), List.of(Integer.parseInt(args[2])),
+        List.of(Double.parseDouble(args[3])), 1, Integer.parseInt(args[4]), Integer.parseInt(args[5]),
+        Long.parseLong(args[6]), Long.parseLong(args[7]), null);
+    for (double[] sample : measure(args[1], settings.sizes().get(0), settings.hitRatios().get(0), settings)) {
+      System.out.println(RESULT_PREFIX + (long) sample[0] + " " + (long) sample[1]);
+    }
+  }
+
+  /**
+   * 在目前的 JVM 中暖機並量測
+   */
+  private static List<double[]> measure(String algorithm, int size, double hitRatio, Settings settings) {
+    Dataset data = createDataset(size, hitRatio, settings.seed());
+    Predicate<String> search = ALGORITHMS.get(algorithm).apply(data);
+    Blackhole blackhole = new Blackhole();
+
+    for (int i = 0; i < settings.warmupIterations(); i++) {
+      double[] sample = runIteration(search, data.queries(), settings.iterationMillis(), blackhole);
+      System.err.printf("  暖機 %d: %.1f ns/op%n", i + 1, sample[1] / sample[0]);
+    }
+    List<double[]> samples = new ArrayList<>();
+    for (int i = 0; i < settings.measurementIterations(); i++) {
+      samples.add(runIteration(search, data.queries(), settings.iterationMillis(), blackhole));
+    }
+    blackhole.publish();
+    return samples;
+  }
+
+  /**
+   * 在固定時長內反覆查詢；只在批次邊界讀取時鐘，避免 nanoTime 本身的成本混進結果
+   */
+  private static double[] runIteration(Predicate<String> search, String[] queries, long millis, Blackhole blackhole) {
+    long budget = millis * 1_000_000L;
+    long ops = 0;
+    int cursor = 0;
+    long start = System.nanoTime();
+    long elapsed;
+    do {
+      for (int i = 0; i < 16; i++) {
+        blackhole.consume(search.test(queries[cursor]));
+        cursor = (cursor + 1) & (QUERY_COUNT - 1);
+      }
+      ops += 16;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < budget);
+    return new double[]{ops, elapsed};
+  }
+
+  /**
+   * 模仿 JMH Blackhole：把結果累積到欄位，結束時寫入 volatile，讓 JIT 無法刪除搜尋呼叫
+   */
+  static final class Blackhole {
+    private static volatile long published;
+    private long hits;
+    private long calls;
+
+    void consume(boolean value) {
+      calls++;
+      if (value) {
+        hits++;
+      }
+    }
+
+    void publish() {
+      published = hits ^ calls;
+    }
+  }
+
+  // --- 資料集 ---
+
+  /**
+   * 依種子產生確定性的資料集；除了 KEY 之外的欄位共用同一組字串以節省記憶體
+   */
+  static Dataset createDataset(int size, double hitRatio, long seed) {
+    return createDataset(syntheticTransactions(size, seed), hitRatio, seed);
+  }
+
+  /**
+   * 以既有的交易 (例如從 CSV 載入) 建立資料集，查詢鍵同樣依種子產生
+   */
+  static Dataset createDataset(List<Transaction> transactions, double hitRatio, long seed) {
+    int size = transactions.size();
+    Set<String> keys = new HashSet<>(size * 2);
+    for (Transaction t : transactions) {
+      keys.add(t.key());
+    }
+    SplittableRandom random = new SplittableRandom(seed ^ 0x5DEECE66DL);
+    String[] queries = new String[QUERY_COUNT];
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      if (random.nextDouble() < hitRatio) {
+        queries[i] = transactions.get(random.nextInt(size)).key();
+      } else {
+        String key;
+        do {
+          key = randomKey(random);
+        } while (keys.contains(key));
+        queries[i] = key;
+      }
+    }
+    return new Dataset(transactions, queries);
+  }
+
+  static List<Transaction> syntheticTransactions(int size, long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    List<Transaction> transactions = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      transactions.add(new Transaction(randomKey(random), "2024-01-01", "CUST-00000001", "黃金期貨 (Gold)",
+          10 + random.nextInt(499_000) / 100.0));
+    }
+    return transactions;
+  }
+
+  static String randomKey(SplittableRandom random) {
+    char[] chars = new char[TransactionColumns.KEY_PREFIX.length() + TransactionColumns.KEY_SYMBOLS];
+    TransactionColumns.KEY_PREFIX.getChars(0, TransactionColumns.KEY_PREFIX.length(), chars, 0);
+    for (int i = TransactionColumns.KEY_PREFIX.length(); i < chars.length; i++) {
+      chars[i] = TransactionColumns.SYMBOLS.charAt(random.nextInt(36));
+    }
+    return new String(chars);
+  }
+
+  // --- 統計與輸出 ---
+
+  /**
+   * 一個參數組合的所有分支樣本
+   */
+  record Result(String algorithm, int size, double hitRatio, List<List<double[]>> forkSamples) {
+
+    /** 每次迭代的吞吐量 (ops/s)，依分支分組 */
+    List<List<Double>> throughput() {
+      return convert(sample -> sample[0] / (sample[1] / 1e9));
+    }
+
+    /** 每次迭代的平均時間 (ns/op)，依分支分組 */
+    List<List<Double>> averageTime() {
+      return convert(sample -> sample[1] / sample[0]);
+    }
+
+    private List<List<Double>> convert(Function<double[], Double> metric) {
+      List<List<Double>> converted = new ArrayList<>();
+      for (List<double[]> fork : forkSamples) {
+        List<Double> values = new ArrayList<>();
+        for (double[] sample : fork) {
+          values.add(metric.apply(sample));
+        }
+        converted.add(values);
+      }
+      return converted;
+    }
+  }
+
+  /**
+   * @return {平均值, 99.9% 信賴區間半寬}
+   */
+  static double[] scoreAndError(List<List<Double>> raw) {
+    List<Double> all = new ArrayList<>();
+    raw.forEach(all::addAll);
+    int n = all.size();
+    double mean = 0;
+    for (double v : all) {
+      mean += v;
+    }
+    mean /= n;
+    if (n < 2) {
+      return new double[]{mean, Double.NaN};
+    }
+    double variance = 0;
+    for (double v : all) {
+      variance += (v - mean) * (v - mean);
+    }
+    variance /= (n - 1);
+    return new double[]{mean, studentT999(n - 1) * Math.sqrt(variance / n)};
+  }
+
+  /**
+   * 雙尾 99.9% 的 Student t 臨界值 (與 JMH 預設的信賴水準相同)
+   */
+  static double studentT999(int degreesOfFreedom) {
+    double[] table = {636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59,
+        4.44, 4.32, 4.22, 4.14, 4.07, 4.01, 3.97, 3.92, 3.88, 3.85,
+        3.82, 3.79, 3.77, 3.75, 3.73, 3.71, 3.69, 3.67, 3.66, 3.65};
+    if (degreesOfFreedom <= table.length) {
+      return table[degreesOfFreedom - 1];
+    }
+    if (degreesOfFreedom <= 40) return 3.55;
+    if (degreesOfFreedom <= 60) return 3.46;
+    if (degreesOfFreedom <= 120) return 3.37;
+    return 3.29;
+  }
+
+  private static void printTable(List<Result> results) {
+    System.out.println();
+    System.out.printf("%-16s %10s %9s %6s %4s %16s %14s %7s%n",
+        "Benchmark", "(size)", "(hitRatio)", "Mode", "Cnt", "Score", "Error", "Units");
+    for (Result result : results) {
+      printRow(result, "thrpt", result.throughput(), "ops/s");
+    }
+    for (Result result : results) {
+      printRow(result, "avgt", result.averageTime(), "ns/op");
+    }
+  }
+
+  private static void printRow(Result result, String mode, List<List<Double>> raw, String unit) {
+    double[] score = scoreAndError(raw);
+    int count = raw.stream().mapToInt(List::size).sum();
+    System.out.printf(Locale.ROOT, "%-16s %10d %9.2f %6s %4d %16.3f ± %12.3f %7s%n",
+        result.algorithm(), result.size(), result.hitRatio(), mode, count, score[0], score[1], unit);
+  }
+
+  /**
+   * 以 JMH 的 JSON 結構輸出 (benchmark / mode / params / primaryMetric)，欄位順序固定方便 diff
+   */
+  private static void writeJson(List<Result> results, Settings settings) throws IOException {
+    File file = new File(settings.out());
+    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+      writer.println("[");
+      for (int i = 0; i < results.size(); i++) {
+        Result result = results.get(i);
+        writeJsonEntry(writer, result, "thrpt", result.throughput(), "ops/s", settings);
+        writer.println(",");
+        writeJsonEntry(writer, result, "avgt", result.averageTime(), "ns/op", settings);
+        writer.println(i < results.size() - 1 ? "," : "");
+      }
+      writer.println("]");
+    }
+  }
+
+  private static void writeJsonEntry(PrintWriter writer, Result result, String mode, List<List<Double>> raw,
+                                     String unit, Settings settings) {
+    double[] score = scoreAndError(raw);
+    writer.println("  {");
+    writer.printf("    \"benchmark\" : \"SearchBenchmark.%s\",%n", result.algorithm());
+    writer.printf("    \"mode\" : \"%s\",%n", mode);
+    writer.println("    \"threads\" : 1,");
+    writer.printf("    \"forks\" : %d,%n", settings.forks());
+    writer.printf("    \"warmupIterations\" : %d,%n", settings.warmupIterations());
+    writer.printf("    \"warmupTime\" : \"%d ms\",%n", settings.iterationMillis());
+    writer.printf("    \"measurementIterations\" : %d,%n", settings.measurementIterations());
+    writer.printf("    \"measurementTime\" : \"%d ms\",%n", settings.iterationMillis());
+    writer.printf(Locale.ROOT, "    \"params\" : { \"size\" : \"%d\", \"hitRatio\" : \"%.2f\" },%n",
+        result.size(), result.hitRatio());
+    writer.println("    \"primaryMetric\" : {");
+    writer.printf(Locale.ROOT, "      \"score\" : %s,%n", json(score[0]));
+    writer.printf(Locale.ROOT, "      \"scoreError\" : %s,%n", json(score[1]));
+    writer.printf(Locale.ROOT, "      \"scoreConfidence\" : [ %s, %s ],%n",
+        json(score[0] - score[1]), json(score[0] + score[1]));
+    writer.printf("      \"scoreUnit\" : \"%s\",%n", unit);
+    writer.print("      \"rawData\" : [ ");
+    for (int f = 0; f < raw.size(); f++) {
+      writer.print("[ ");
+      for (int i = 0; i < raw.get(f).size(); i++) {
+        writer.print(json(raw.get(f).get(i)) + (i < raw.get(f).size() - 1 ? ", " : " "));
+      }
+      writer.print(f < raw.size() - 1 ? "], " : "] ");
+    }
+    writer.println("]");
+    writer.println("    }");
+    writer.print("  }");
+  }
+
+  private static String json(double value) {
+    return Double.isFinite(value) ? String.format(Locale.ROOT, "%.3f", value) : "\"NaN\"";
+  }
+
+  // --- 參數解析 ---
+
+  private static Settings parseSettings(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i < args.length; i += 2) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("無法辨識的參數: " + args[i]);
+      }
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("參數缺少值: " + args[i]);
+      }
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    List<Integer> sizes = new ArrayList<>();
+    for (String s : options.getOrDefault("sizes", "10000,100000,1000000,10000000").split(",")) {
+      sizes.add(Integer.parseInt(s.trim()));
+    }
+    List<Double> hitRatios = new ArrayList<>();
+    for (String s : options.getOrDefault("hit-ratios", "1.0,0.5,0.0").split(",")) {
+      hitRatios.add(Double.parseDouble(s.trim()));
+    }
+    return new Settings(
+        List.of(options.getOrDefault("algorithms", "linear,binary,hash").split(",")),
+        sizes,
+        hitRatios,
+        Integer.parseInt(options.getOrDefault("forks", "2")),
+        Integer.parseInt(options.getOrDefault("warmup", "3")),
+        Integer.parseInt(options.getOrDefault("iterations", "5")),
+        Long.parseLong(options.getOrDefault("iteration-ms", "1000")),
+        Long.parseLong(options.getOrDefault("seed", "42")),
+        options.getOrDefault("out", "search-benchmark.json"));
+  }
+}
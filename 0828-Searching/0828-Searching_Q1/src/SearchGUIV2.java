@@ -2,9 +2,9 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -14,6 +14,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class SearchGUIV2 {
   // --- GUI 元件 ---
@@ -25,8 +27,34 @@ public class SearchGUIV2 {
   private BarChartPanel chartPanel;
 
   // --- 資料與邏輯 ---
-  private static final int NUM_SEARCHES = 10;
+  // 每種 KEY 取樣的數量與每個演算法的計時預算；樣本足夠多，百分位數才有意義
+  private static final int NUM_SEARCHES = 1_000;
+  private static final long MEASURE_BUDGET_NANOS = 500_000_000L;
+  private static final Path CSV_PATH = Path.of("transactions.csv");
+  private static final String DISK_INDEX = "磁碟索引";
   private List<Transaction> transactions;
+  private PackedKeyHashIndex.ProbeStats probeStats;
+  private LearnedIndex learnedIndex;
+  // CSV 沒有變更時沿用上次載入的資料與建好的搜尋結構
+  private long loadedCsvSize = -1;
+  private long loadedCsvModified = -1;
+  private TransactionColumns columns;
+  // Eytzinger 與學習型索引共用同一份排序後的 KEY，只排序一次
+  private long[] sortedKeys;
+  private final Map<String, Function<String, Boolean>> builtAlgorithms = new HashMap<>();
+  // 每個搜尋結構的建立時間 (奈秒)，與查詢時間一起顯示，算出要查詢幾次才能回本
+  private final Map<String, Long> buildNanos = new HashMap<>();
+  private volatile TransactionIndexFile indexFile;
+  // 背景開啟與比較流程共用同一份磁碟索引，同時只允許一個建立者
+  private final Object indexLock = new Object();
+  private volatile long indexBuildNanos;
+  private ParallelRadixSort.Method builtSortMethod;
+  private JCheckBox parallelSortToggle;
+
+  // 可勾選的演算法，依圖表由上到下的順序排列
+  private static final String[] ALGORITHM_NAMES =
+      {"線性搜尋", "平行線性搜尋", "二分搜尋", "Eytzinger", "學習型索引", DISK_INDEX, "雜湊搜尋", "開放定址"};
+  private final Map<String, JCheckBox> algorithmToggles = new LinkedHashMap<>();
 
   // 現代化配色方案
   private static class ModernColors {
@@ -46,27 +74,29 @@ public class SearchGUIV2 {
   // 狀態類型枚舉
   private enum StatusType { SUCCESS, ERROR, WARNING, INFO }
 
-  // 定義一個內部 record 來簡化資料傳遞
-  record Transaction(String key, String date, String customerId, String itemName, double price)
-      implements Comparable<Transaction> {
-    @Override
-    public int compareTo(Transaction other) {
-      return this.key.compareTo(other.key);
-    }
+  /**
+   * 一次比較的結果；baselineNanos 是線性搜尋的平均查詢時間，沒有量測時為 0
+   */
+  private record ComparisonResult(Map<String, LatencyHistogram> existing, Map<String, LatencyHistogram> nonExisting,
+                                  Map<String, Long> buildNanos, double baselineNanos) {
   }
 
   // 自訂的長條圖面板類別
   private static class BarChartPanel extends JPanel {
-    private Map<String, Long> existingKeyResults;
-    private Map<String, Long> nonExistingKeyResults;
+    private Map<String, LatencyHistogram> existingKeyResults;
+    private Map<String, LatencyHistogram> nonExistingKeyResults;
+    private Map<String, Long> buildNanos = Map.of();
+    private double baselineNanos;
     private final Font FONT_SMALL = new Font("微軟正黑體", Font.PLAIN, 11);
     private final Font FONT_MEDIUM = new Font("微軟正黑體", Font.BOLD, 12);
     private final Font FONT_LARGE = new Font("微軟正黑體", Font.BOLD, 14);
     private final Font FONT_TITLE = new Font("微軟正黑體", Font.BOLD, 16);
 
-    public void setResults(Map<String, Long> existing, Map<String, Long> nonExisting) {
-      this.existingKeyResults = existing;
-      this.nonExistingKeyResults = nonExisting;
+    public void setResults(ComparisonResult result) {
+      this.existingKeyResults = result.existing();
+      this.nonExistingKeyResults = result.nonExisting();
+      this.buildNanos = result.buildNanos();
+      this.baselineNanos = result.baselineNanos();
       repaint();
     }
 
@@ -99,19 +129,19 @@ public class SearchGUIV2 {
       }
 
       // --- 長條圖（橫向）---
-      int chartAreaX = paddingLeft + 120; // 左側預留演算法名稱空間
+      int chartAreaX = paddingLeft + 170; // 左側預留演算法名稱與建立時間空間
       int chartAreaY = paddingTop + 70;  // 上方預留標題空間
-      int chartAreaWidth = getWidth() - paddingLeft - paddingRight - 220; // 右側預留空間
+      int chartAreaWidth = getWidth() - paddingLeft - paddingRight - 270; // 右側預留空間
       int chartAreaHeight = getHeight() - paddingTop - paddingBottom - 120; // 上下預留空間
 
-      int barHeight = 24;
-      int groupGap = 32;
-      int barGap = 8;
-      String[] algoNames = {"線性搜尋", "二分搜尋", "雜湊搜尋"};
-      int barCount = algoNames.length;
-      int totalGroups = barCount;
+      // 演算法依結果的插入順序排列；數量增加時依可用高度縮小長條
+      String[] algoNames = existingKeyResults.keySet().toArray(new String[0]);
+      int totalGroups = algoNames.length;
+      int barHeight = Math.max(8, Math.min(24, chartAreaHeight / (totalGroups * 3)));
+      int groupGap = barHeight * 4 / 3;
+      int barGap = barHeight / 3;
       int totalBars = totalGroups * 2;
-      int maxBarLength = chartAreaWidth - 60; // 右側預留數值空間
+      int maxBarLength = chartAreaWidth - 150; // 右側預留百分位數標籤空間
 
       // --- 座標軸（橫向）---
       g2.setColor(new Color(200, 200, 200));
@@ -128,59 +158,51 @@ public class SearchGUIV2 {
       // Y軸（左側）
       g2.drawLine(axisX0, axisY0, axisX0, axisY1);
 
-      // --- 橫向長條圖繪製 ---
+      // --- 橫向長條圖繪製 (對數刻度) ---
+      // 深色段為 p50、淺色段延伸到 p99、細線延伸到最大值，細線上的刻度標示 p99.9
       long maxTime = 1;
-      for (long time : existingKeyResults.values()) {
-        if (time > maxTime) maxTime = time;
+      for (LatencyHistogram h : existingKeyResults.values()) {
+        maxTime = Math.max(maxTime, h.max());
       }
-      for (long time : nonExistingKeyResults.values()) {
-        if (time > maxTime) maxTime = time;
+      for (LatencyHistogram h : nonExistingKeyResults.values()) {
+        maxTime = Math.max(maxTime, h.max());
       }
-      long visualMax = (long) Math.log10(maxTime);
-      if (visualMax == 0) visualMax = 1;
-      double scale = maxBarLength / (double) visualMax;
+      double scale = maxBarLength / Math.max(1, Math.log10(maxTime));
 
       int currentY = chartAreaY;
       for (String algo : algoNames) {
-        long existingTime = existingKeyResults.get(algo);
-        long nonExistingTime = nonExistingKeyResults.get(algo);
-        double scaledExisting = (existingTime > 0) ? Math.log10(existingTime) : 0;
-        double scaledNonExisting = (nonExistingTime > 0) ? Math.log10(nonExistingTime) : 0;
-        int existingBarLength = (int) (scaledExisting * scale);
-        int nonExistingBarLength = (int) (scaledNonExisting * scale);
         // 統一演算法名稱文字格式
         g2.setFont(FONT_LARGE);
         g2.setColor(ModernColors.TEXT_PRIMARY);
         g2.drawString(algo, paddingLeft + 10, currentY + barHeight + 2);
-        // "存在" 長條
-        g2.setColor(new Color(50, 150, 250));
-        g2.fillRect(axisX0, currentY, existingBarLength, barHeight);
-        g2.setColor(Color.BLACK);
         g2.setFont(FONT_SMALL);
-        g2.drawString(existingTime + " ns", axisX0 + existingBarLength + 8, currentY + barHeight - 6);
+        g2.setColor(ModernColors.TEXT_SECONDARY);
+        g2.drawString(buildLabel(algo), paddingLeft + 10, currentY + 2 * barHeight + barGap);
+        // "存在" 長條
+        drawPercentileBar(g2, existingKeyResults.get(algo), ModernColors.CHART_EXISTING, axisX0, currentY,
+            barHeight, scale);
         currentY += barHeight + barGap;
         // "不存在" 長條
-        g2.setColor(new Color(250, 100, 100));
-        g2.fillRect(axisX0, currentY, nonExistingBarLength, barHeight);
-        g2.setColor(Color.BLACK);
-        g2.drawString(nonExistingTime + " ns", axisX0 + nonExistingBarLength + 8, currentY + barHeight - 6);
+        drawPercentileBar(g2, nonExistingKeyResults.get(algo), ModernColors.CHART_NON_EXISTING, axisX0, currentY,
+            barHeight, scale);
         currentY += barHeight + groupGap;
       }
 
-      // --- 圖例 ---
-      int legendX = axisX1 + 100;
-      int legendY = chartAreaY + 100;
-      g2.setColor(new Color(255, 255, 255, 200));
-      g2.fillRoundRect(legendX - 10, legendY - 10, 140, 60, 10, 10);
+      // --- 圖例 (標題下方) ---
+      int legendX = paddingLeft + 10;
+      int legendY = paddingTop + 32;
       g2.setFont(FONT_SMALL);
       g2.setColor(ModernColors.CHART_EXISTING);
       g2.fillRoundRect(legendX, legendY, 12, 12, 4, 4);
       g2.setColor(ModernColors.TEXT_PRIMARY);
       g2.drawString("存在的鍵", legendX + 20, legendY + 10);
       g2.setColor(ModernColors.CHART_NON_EXISTING);
-      g2.fillRoundRect(legendX, legendY + 25, 12, 12, 4, 4);
+      g2.fillRoundRect(legendX + 90, legendY, 12, 12, 4, 4);
       g2.setColor(ModernColors.TEXT_PRIMARY);
-      g2.drawString("不存在的鍵", legendX + 20, legendY + 35);
+      g2.drawString("不存在的鍵", legendX + 110, legendY + 10);
+      g2.setColor(ModernColors.TEXT_SECONDARY);
+      g2.drawString("深色 p50、淺色 p99、細線最大值 (刻度 p99.9)，對數刻度；回本 = 建立時間比線性搜尋省下的查詢次數",
+          legendX + 200, legendY + 10);
 
       // --- 標題 ---
       g2.setFont(FONT_TITLE);
@@ -191,6 +213,62 @@ public class SearchGUIV2 {
       g2.drawString(title, titleX, paddingTop + 20);
     }
 
+    /**
+     * 畫一條百分位數長條，右側標示 p50 / p99 / 最大值
+     */
+    private void drawPercentileBar(Graphics2D g2, LatencyHistogram h, Color color, int x, int y, int height,
+                                   double scale) {
+      int p50 = barLength(h.valueAtPercentile(50), scale);
+      int p99 = Math.max(p50, barLength(h.valueAtPercentile(99), scale));
+      int p999 = Math.max(p99, barLength(h.valueAtPercentile(99.9), scale));
+      int max = Math.max(p999, barLength(h.max(), scale));
+      int middle = y + height / 2;
+
+      g2.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 90));
+      g2.fillRect(x, y, p99, height);
+      g2.setColor(color);
+      g2.fillRect(x, y, p50, height);
+      g2.setStroke(new BasicStroke(1));
+      g2.drawLine(x + p99, middle, x + max, middle);
+      g2.drawLine(x + p999, y + 2, x + p999, y + height - 2);
+      g2.drawLine(x + max, y + 1, x + max, y + height - 1);
+
+      g2.setColor(Color.BLACK);
+      g2.setFont(FONT_SMALL);
+      g2.drawString("p50 " + formatNanos(h.valueAtPercentile(50)) + " / p99 " + formatNanos(h.valueAtPercentile(99))
+          + " / 最大 " + formatNanos(h.max()), x + max + 8, y + height - 6);
+    }
+
+    /**
+     * 建立時間與回本所需的查詢次數：建立時間 / (線性搜尋平均 - 這個結構的平均)
+     */
+    private String buildLabel(String algo) {
+      long build = buildNanos.getOrDefault(algo, 0L);
+      if (build == 0) {
+        return "不需建立";
+      }
+      String label = "建立 " + formatNanos(build);
+      double mean = (existingKeyResults.get(algo).mean() + nonExistingKeyResults.get(algo).mean()) / 2;
+      if (baselineNanos <= 0) {
+        return label;
+      }
+      if (mean >= baselineNanos) {
+        return label + "，不會回本";
+      }
+      return label + String.format("，回本 %,d 次", (long) Math.ceil(build / (baselineNanos - mean)));
+    }
+
+    private static String formatNanos(long nanos) {
+      if (nanos < 10_000) {
+        return nanos + " ns";
+      }
+      return (nanos < 10_000_000) ? String.format("%.1f µs", nanos / 1e3) : String.format("%.1f ms", nanos / 1e6);
+    }
+
+    private static int barLength(long nanos, double scale) {
+      return (nanos > 1) ? (int) (Math.log10(nanos) * scale) : 0;
+    }
+
     private void drawWelcomeMessage(Graphics2D g2) {
       g2.setColor(ModernColors.TEXT_SECONDARY);
       g2.setFont(FONT_LARGE);
@@ -205,7 +283,7 @@ public class SearchGUIV2 {
       // 繪製提示文字
       g2.setFont(FONT_SMALL);
       g2.setColor(ModernColors.TEXT_SECONDARY);
-      String hint = "分析線性搜尋、二分搜尋與雜湊搜尋的效能差異";
+      String hint = "勾選要比較的搜尋演算法，分析它們在存在與不存在鍵值時的效能差異";
       fm = g2.getFontMetrics();
       x = (getWidth() - fm.stringWidth(hint)) / 2;
       g2.drawString(hint, x, y + 30);
@@ -271,6 +349,7 @@ public class SearchGUIV2 {
 
     frame.add(mainPanel);
     frame.setVisible(true);
+    openIndexInBackground();
   }
 
   private JPanel createTitlePanel() {
@@ -281,7 +360,7 @@ public class SearchGUIV2 {
     titleLabel.setFont(new Font("微軟正黑體", Font.BOLD, 28));
     titleLabel.setForeground(ModernColors.PRIMARY);
 
-    JLabel subtitleLabel = new JLabel("比較線性搜尋、二分搜尋與雜湊搜尋的執行效率", SwingConstants.CENTER);
+    JLabel subtitleLabel = new JLabel("勾選線性、二分、Eytzinger、學習型索引、磁碟索引與雜湊等搜尋結構，比較建立成本與查詢效率", SwingConstants.CENTER);
     subtitleLabel.setFont(new Font("微軟正黑體", Font.PLAIN, 14));
     subtitleLabel.setForeground(ModernColors.TEXT_SECONDARY);
 
@@ -314,6 +393,25 @@ public class SearchGUIV2 {
     buttonPanel.add(generateButton);
     buttonPanel.add(startButton);
 
+    // 演算法選擇面板
+    JPanel algorithmPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 12, 0));
+    algorithmPanel.setBackground(ModernColors.CARD_BACKGROUND);
+    for (String name : ALGORITHM_NAMES) {
+      JCheckBox toggle = new JCheckBox(name, true);
+      toggle.setBackground(ModernColors.CARD_BACKGROUND);
+      toggle.setFont(new Font("微軟正黑體", Font.PLAIN, 13));
+      algorithmToggles.put(name, toggle);
+      algorithmPanel.add(toggle);
+    }
+
+    // 排序方式：預設為平行基數排序，可改回 Arrays.parallelSort 比較
+    JPanel optionPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 12, 0));
+    optionPanel.setBackground(ModernColors.CARD_BACKGROUND);
+    parallelSortToggle = new JCheckBox("二分搜尋改用 Arrays.parallelSort 排序 (預設為平行基數排序)", false);
+    parallelSortToggle.setBackground(ModernColors.CARD_BACKGROUND);
+    parallelSortToggle.setFont(new Font("微軟正黑體", Font.PLAIN, 12));
+    optionPanel.add(parallelSortToggle);
+
     // 狀態面板
     JPanel statusPanel = new JPanel(new BorderLayout(10, 10));
     statusPanel.setBackground(ModernColors.CARD_BACKGROUND);
@@ -330,6 +428,10 @@ public class SearchGUIV2 {
     statusPanel.add(progressBar, BorderLayout.SOUTH);
 
     cardPanel.add(buttonPanel);
+    cardPanel.add(Box.createVerticalStrut(5));
+    cardPanel.add(algorithmPanel);
+    cardPanel.add(Box.createVerticalStrut(5));
+    cardPanel.add(optionPanel);
     cardPanel.add(Box.createVerticalStrut(15));
     cardPanel.add(statusPanel);
 
@@ -402,6 +504,47 @@ public class SearchGUIV2 {
     });
   }
 
+  /**
+   * 啟動時先映射 (或建立) 磁碟索引，之後選用「磁碟索引」時不必再讀取 CSV
+   */
+  private void openIndexInBackground() {
+    if (!Files.exists(CSV_PATH)) {
+      return;
+    }
+    new SwingWorker<String, Void>() {
+      @Override
+      protected String doInBackground() throws IOException {
+        TransactionIndexFile index = openIndex();
+        long millis = indexBuildNanos / 1_000_000;
+        return (index.wasRebuilt() ? "已建立磁碟索引" : "已映射磁碟索引")
+            + " (" + index.size() + " 筆，" + millis + " ms)";
+      }
+
+      @Override
+      protected void done() {
+        try {
+          updateStatus(get(), StatusType.INFO);
+        } catch (Exception e) {
+          updateStatus("磁碟索引開啟失敗: " + e.getMessage(), StatusType.WARNING);
+        }
+      }
+    }.execute();
+  }
+
+  /**
+   * 回傳與 CSV 一致的磁碟索引；背景工作正在建立時，後到的呼叫端等它完成後直接沿用，不會再建一次
+   */
+  private TransactionIndexFile openIndex() throws IOException {
+    synchronized (indexLock) {
+      if (indexFile == null || indexFile.isStale()) {
+        long startTime = System.nanoTime();
+        indexFile = TransactionIndexFile.openOrBuild(CSV_PATH);
+        indexBuildNanos = System.nanoTime() - startTime;
+      }
+      return indexFile;
+    }
+  }
+
   private void runGenerateData() {
     generateButton.setEnabled(false);
     startButton.setEnabled(false);
@@ -449,58 +592,98 @@ public class SearchGUIV2 {
   }
 
   private void runComparison() {
+    List<String> selected = new ArrayList<>();
+    for (Map.Entry<String, JCheckBox> entry : algorithmToggles.entrySet()) {
+      if (entry.getValue().isSelected()) {
+        selected.add(entry.getKey());
+      }
+    }
+    if (selected.isEmpty()) {
+      updateStatus("請至少勾選一種搜尋演算法", StatusType.WARNING);
+      return;
+    }
+
     startButton.setEnabled(false);
     generateButton.setEnabled(false);
     progressBar.setVisible(true);
     progressBar.setIndeterminate(false);
     progressBar.setValue(0);
+    boolean needsRows = selected.stream().anyMatch(name -> !name.equals(DISK_INDEX));
+    ParallelRadixSort.Method sortMethod = parallelSortToggle.isSelected()
+        ? ParallelRadixSort.Method.PARALLEL_SORT : ParallelRadixSort.Method.RADIX;
 
-    SwingWorker<Map<String, Map<String, Long>>, String> worker = new SwingWorker<>() {
+    SwingWorker<ComparisonResult, String> worker = new SwingWorker<>() {
       @Override
-      protected Map<String, Map<String, Long>> doInBackground() throws Exception {
-        // 1. 載入資料
-        publish("0:正在從 transactions.csv 載入資料...");
-        transactions = loadTransactions("transactions.csv");
-        if (transactions.isEmpty()) {
-          throw new IOException("無法載入資料，請確認 transactions.csv 存在且格式正確。");
+      protected ComparisonResult doInBackground() throws Exception {
+        // 1. 載入資料 (CSV 未變更時沿用上次的結果；只選磁碟索引時完全不讀 CSV)
+        if (needsRows) {
+          if (isLoadedDataStale()) {
+            publish("0:正在從 transactions.csv 載入資料...");
+            reloadTransactions();
+          } else {
+            publish("0:資料未變更，沿用已載入的交易資料...");
+          }
+          if (transactions.isEmpty()) {
+            throw new IOException("無法載入資料，請確認 transactions.csv 存在且格式正確。");
+          }
+        }
+        if (selected.contains(DISK_INDEX) && (indexFile == null || indexFile.isStale())) {
+          publish("10:正在開啟磁碟索引...");
+          openIndex();
+        }
+        if (sortMethod != builtSortMethod) {
+          // 排序方式改變時重建排序列表，才能比較兩種方式的建立時間
+          builtAlgorithms.remove("二分搜尋");
+          builtSortMethod = sortMethod;
         }
 
-        // 2. 準備資料結構
+        // 2. 準備資料結構 (只建立有勾選的演算法)
         publish("20:正在準備搜尋所需的資料結構...");
-        List<Transaction> binarySearchList = new ArrayList<>(transactions);
-        Collections.sort(binarySearchList);
-
-        Map<String, Transaction> hashMap = new HashMap<>();
-        for (Transaction t : transactions) {
-          hashMap.put(t.key(), t);
-        }
+        Map<String, Function<String, Boolean>> algorithms = buildAlgorithms(selected);
 
         // 3. 準備搜尋用的 KEY
         publish("40:正在準備搜尋測試鍵值...");
         List<String> existingKeys = new ArrayList<>();
         List<String> nonExistingKeys = new ArrayList<>();
-        prepareSearchKeys(transactions, existingKeys, nonExistingKeys);
+        if (needsRows) {
+          prepareSearchKeys(transactions, existingKeys, nonExistingKeys);
+        } else {
+          prepareSearchKeys(indexFile, existingKeys, nonExistingKeys);
+        }
 
-        Map<String, Long> existingResults = new LinkedHashMap<>();
-        Map<String, Long> nonExistingResults = new LinkedHashMap<>();
+        Map<String, LatencyHistogram> existingResults = new LinkedHashMap<>();
+        Map<String, LatencyHistogram> nonExistingResults = new LinkedHashMap<>();
 
         // 4. 執行並計時
         publish("60:正在執行搜尋測試 (存在的鍵)...");
-        existingResults.put("線性搜尋", measureSearchTime(key -> linearSearch(transactions, key), existingKeys));
-        existingResults.put("二分搜尋", measureSearchTime(key -> binarySearch(binarySearchList, key), existingKeys));
-        existingResults.put("雜湊搜尋", measureSearchTime(key -> hashSearch(hashMap, key), existingKeys));
+        for (Map.Entry<String, Function<String, Boolean>> entry : algorithms.entrySet()) {
+          existingResults.put(entry.getKey(), measureSearchTime(entry.getValue(), existingKeys));
+        }
 
         publish("80:正在執行搜尋測試 (不存在的鍵)...");
-        nonExistingResults.put("線性搜尋", measureSearchTime(key -> linearSearch(transactions, key), nonExistingKeys));
-        nonExistingResults.put("二分搜尋", measureSearchTime(key -> binarySearch(binarySearchList, key), nonExistingKeys));
-        nonExistingResults.put("雜湊搜尋", measureSearchTime(key -> hashSearch(hashMap, key), nonExistingKeys));
+        for (Map.Entry<String, Function<String, Boolean>> entry : algorithms.entrySet()) {
+          nonExistingResults.put(entry.getKey(), measureSearchTime(entry.getValue(), nonExistingKeys));
+        }
+
+        // 回本次數以線性搜尋 (不需建立) 為基準；沒勾選時另外量一小段
+        double baselineNanos = 0;
+        if (existingResults.containsKey("線性搜尋")) {
+          baselineNanos = (existingResults.get("線性搜尋").mean() + nonExistingResults.get("線性搜尋").mean()) / 2;
+        } else if (needsRows) {
+          publish("95:正在量測線性搜尋基準...");
+          List<String> sample = new ArrayList<>(existingKeys.subList(0, 10));
+          sample.addAll(nonExistingKeys.subList(0, 10));
+          baselineNanos = LatencyHistogram.measure(key -> linearSearch(transactions, key), sample,
+              MEASURE_BUDGET_NANOS / 5).mean();
+        }
 
         publish("100:分析完成！");
 
-        Map<String, Map<String, Long>> finalResults = new HashMap<>();
-        finalResults.put("existing", existingResults);
-        finalResults.put("non_existing", nonExistingResults);
-        return finalResults;
+        Map<String, Long> builds = new HashMap<>();
+        for (String name : algorithms.keySet()) {
+          builds.put(name, name.equals(DISK_INDEX) ? indexBuildNanos : buildNanos.getOrDefault(name, 0L));
+        }
+        return new ComparisonResult(existingResults, nonExistingResults, builds, baselineNanos);
       }
 
       @Override
@@ -522,9 +705,13 @@ public class SearchGUIV2 {
       @Override
       protected void done() {
         try {
-          Map<String, Map<String, Long>> results = get();
-          chartPanel.setResults(results.get("existing"), results.get("non_existing"));
-          updateStatus("效能比較測試完成！請查看下方圖表結果。", StatusType.SUCCESS);
+          chartPanel.setResults(get());
+          String stats = (probeStats != null && selected.contains("開放定址"))
+              ? "開放定址索引" + probeStats : "請查看下方圖表結果。";
+          if (learnedIndex != null && selected.contains("學習型索引")) {
+            stats += " 學習型索引: " + learnedIndex;
+          }
+          updateStatus("效能比較測試完成！" + stats, StatusType.SUCCESS);
         } catch (Exception e) {
           String errorMsg = (e.getCause() != null) ? e.getCause().getMessage() : e.getMessage();
           updateStatus("發生錯誤: " + errorMsg, StatusType.ERROR);
@@ -539,32 +726,113 @@ public class SearchGUIV2 {
     worker.execute();
   }
 
-  // 將計時邏輯封裝成一個方法
-  private long measureSearchTime(java.util.function.Function<String, Boolean> searchFunction, List<String> keys) {
-    long totalTime = 0;
-    for (String key : keys) {
-      long startTime = System.nanoTime();
-      searchFunction.apply(key);
-      totalTime += System.nanoTime() - startTime;
+  private boolean isLoadedDataStale() throws IOException {
+    return transactions == null || Files.size(CSV_PATH) != loadedCsvSize
+        || Files.getLastModifiedTime(CSV_PATH).toMillis() != loadedCsvModified;
+  }
+
+  /**
+   * 重新載入 CSV，並清除依舊資料建立的搜尋結構
+   */
+  private void reloadTransactions() throws IOException {
+    long size = Files.size(CSV_PATH);
+    long modified = Files.getLastModifiedTime(CSV_PATH).toMillis();
+    transactions = loadTransactions(CSV_PATH.toString());
+    loadedCsvSize = size;
+    loadedCsvModified = modified;
+    columns = null;
+    sortedKeys = null;
+    builtAlgorithms.clear();
+    buildNanos.clear();
+  }
+
+  private TransactionColumns columns() {
+    if (columns == null) {
+      columns = TransactionColumns.from(transactions);
     }
-    return totalTime / NUM_SEARCHES;
+    return columns;
   }
 
-  // --- 輔助方法 ---
-  private static List<Transaction> loadTransactions(String filePath) throws IOException {
-    List<Transaction> transactions = new ArrayList<>();
-    try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-      br.readLine(); // 跳過標頭
-      String line;
-      while ((line = br.readLine()) != null) {
-        String[] values = line.split(",");
-        if (values.length == 5) {
-          transactions.add(new Transaction(values[0], values[1], values[2], values[3],
-              Double.parseDouble(values[4])));
-        }
+  private long[] sortedKeys() {
+    if (sortedKeys == null) {
+      sortedKeys = columns().sortedByKey().keys();
+    }
+    return sortedKeys;
+  }
+
+  /**
+   * 依勾選的名稱取得搜尋函式；已建立過的結構直接重用
+   */
+  private Map<String, Function<String, Boolean>> buildAlgorithms(List<String> selected) {
+    Map<String, Function<String, Boolean>> algorithms = new LinkedHashMap<>();
+    for (String name : selected) {
+      if (name.equals(DISK_INDEX)) {
+        // 索引可能在兩次比較之間被重新建立，每次都取目前的實例
+        TransactionIndexFile index = indexFile;
+        algorithms.put(name, key -> index.contains(key));
+      } else {
+        algorithms.put(name, builtAlgorithms.computeIfAbsent(name, this::timedBuildSearch));
       }
     }
-    return transactions;
+    return algorithms;
+  }
+
+  /**
+   * 建立搜尋結構並記錄耗時；第一個用到欄位式儲存 (或排序後 KEY) 的結構會包含轉換欄位 (或排序) 的時間
+   */
+  private Function<String, Boolean> timedBuildSearch(String name) {
+    long startTime = System.nanoTime();
+    Function<String, Boolean> search = buildSearch(name);
+    // 不需要預先處理的搜尋記為 0
+    buildNanos.put(name, name.equals("線性搜尋") ? 0 : System.nanoTime() - startTime);
+    return search;
+  }
+
+  private Function<String, Boolean> buildSearch(String name) {
+    return switch (name) {
+      case "線性搜尋" -> key -> linearSearch(transactions, key);
+      case "平行線性搜尋" -> {
+        long[] keys = columns().keys();
+        yield key -> ParallelKeyScan.contains(keys, key);
+      }
+      case "二分搜尋" -> {
+        List<Transaction> binarySearchList = ParallelRadixSort.sorted(transactions, builtSortMethod);
+        yield key -> binarySearch(binarySearchList, key);
+      }
+      case "Eytzinger" -> {
+        EytzingerIndex eytzingerIndex = EytzingerIndex.build(sortedKeys());
+        yield key -> eytzingerIndex.contains(key);
+      }
+      case "學習型索引" -> {
+        LearnedIndex index = LearnedIndex.build(sortedKeys());
+        learnedIndex = index;
+        yield key -> index.contains(key);
+      }
+      case "雜湊搜尋" -> {
+        Map<String, Transaction> hashMap = new HashMap<>();
+        for (Transaction t : transactions) {
+          hashMap.put(t.key(), t);
+        }
+        yield key -> hashSearch(hashMap, key);
+      }
+      case "開放定址" -> {
+        PackedKeyHashIndex packedIndex = PackedKeyHashIndex.build(columns().keys());
+        probeStats = packedIndex.probeStats();
+        yield key -> packedIndex.contains(key);
+      }
+      default -> throw new IllegalArgumentException("未知的演算法: " + name);
+    };
+  }
+
+  // 將計時邏輯封裝成一個方法；每次查詢的延遲記到直方圖中
+  private LatencyHistogram measureSearchTime(Function<String, Boolean> searchFunction, List<String> keys) {
+    return LatencyHistogram.measure(searchFunction::apply, keys, MEASURE_BUDGET_NANOS);
+  }
+
+  // --- 輔助方法 ---
+  // 與 SearchPerformanceComparison 共用 Transaction 與記憶體映射載入器
+  private static List<Transaction> loadTransactions(String filePath) throws IOException {
+    return MappedTransactionLoader.load(filePath);
   }
 
   private static void prepareSearchKeys(List<Transaction> data, List<String> existing, List<String> nonExisting) {
@@ -597,6 +865,26 @@ public class SearchGUIV2 {
     return map.containsKey(key);
   }
 
+  /**
+   * 不載入 CSV 時，直接從磁碟索引抽樣存在的 KEY
+   */
+  private static void prepareSearchKeys(TransactionIndexFile index, List<String> existing, List<String> nonExisting)
+      throws IOException {
+    if (index.size() == 0) {
+      throw new IOException("無法載入資料，請確認 transactions.csv 存在且格式正確。");
+    }
+    Random rand = new Random();
+    for (int i = 0; i < NUM_SEARCHES; i++) {
+      existing.add(TransactionColumns.unpackKey(index.keyAt(rand.nextInt(index.size()))));
+    }
+    while (nonExisting.size() < NUM_SEARCHES) {
+      String randomKey = "TX-" + generateRandomAlphanumeric(10);
+      if (!index.contains(randomKey)) {
+        nonExisting.add(randomKey);
+      }
+    }
+  }
+
   private static String generateRandomAlphanumeric(int length) {
     String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
     StringBuilder sb = new StringBuilder(length);
@@ -1,30 +1,59 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
-
-// 使用 Java Record 來簡潔地定義一個不可變的資料物件
-record Transaction(String key, String date, String customerId, String itemName, double price) implements Comparable<Transaction> {
-  @Override
-  public int compareTo(Transaction other) {
-    return this.key.compareTo(other.key);
-  }
-}
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
 
 public class SearchPerformanceComparison {
 
   private static final int NUM_SEARCHES = 10;
+  private static final int BATCH_SIZE = 50_000;
+  private static final int BEST_OF_ROUNDS = 5;
+  // 延遲直方圖每個演算法最多取樣的 KEY 數與時間預算 (線性搜尋通常會先用完預算)
+  private static final int LATENCY_SAMPLES = 2_000;
+  private static final long LATENCY_BUDGET_NANOS = 1_000_000_000L;
 
+  /**
+   * @param args 加上 --bloom 時，所有搜尋前面都先經過 Bloom 過濾器；
+   *             加上 --low-memory 時不載入 List&lt;Transaction&gt;，由磁碟索引建立前端編碼的 KEY 字典取代排序列表，
+   *             不建立 HashMap、欄位式儲存與其他記憶體內索引，也略過需要它們的比較；
+   *             加上 --parallel-sort 時排序列表改用 Arrays.parallelSort 建立，而不是平行基數排序；
+   *             第一個參數為 --load-test 時改跑多執行緒負載測試，其餘參數交給 ConcurrentLoadTest
+   */
   public static void main(String[] args) {
     String csvFile = "transactions.csv";
+    if (args.length > 0 && args[0].equals("--load-test")) {
+      List<String> loadTestArgs = new ArrayList<>(List.of("--csv", csvFile));
+      loadTestArgs.addAll(Arrays.asList(args).subList(1, args.length));
+      try {
+        ConcurrentLoadTest.main(loadTestArgs.toArray(new String[0]));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return;
+    }
+    boolean useBloom = Arrays.asList(args).contains("--bloom");
+    boolean lowMemory = Arrays.asList(args).contains("--low-memory");
+    ParallelRadixSort.Method sortMethod = Arrays.asList(args).contains("--parallel-sort")
+        ? ParallelRadixSort.Method.PARALLEL_SORT : ParallelRadixSort.Method.RADIX;
+    if (lowMemory) {
+      runLowMemory(csvFile, useBloom);
+      return;
+    }
     System.out.println("開始從 " + csvFile + " 讀取資料...");
     List<Transaction> transactions = loadTransactions(csvFile);
     if (transactions.isEmpty()) {
@@ -39,70 +68,697 @@ public class SearchPerformanceComparison {
     List<Transaction> linearSearchList = transactions;
 
     // b. 用於二分搜尋的排序列表
-    List<Transaction> binarySearchList = new ArrayList<>(transactions);
-    Collections.sort(binarySearchList);
+    long sortStart = System.nanoTime();
+    List<Transaction> binarySearchList = ParallelRadixSort.sorted(transactions, sortMethod);
+    long sortedListBuildTime = System.nanoTime() - sortStart;
+    System.out.printf("排序列表 (%s): %.1f ms\n", sortMethod, sortedListBuildTime / 1e6);
+    Predicate<String> sortedSearch = key -> binarySearch(binarySearchList, key);
 
     // c. 用於雜湊搜尋的 HashMap
     Map<String, Transaction> hashMap = new HashMap<>();
     for (Transaction t : transactions) {
       hashMap.put(t.key(), t);
     }
-    System.out.println("資料結構準備完成。\n");
 
+    // d. 欄位式儲存 (struct-of-arrays) 與其排序版本、索引
+    TransactionColumns columns = TransactionColumns.from(transactions);
+    TransactionColumns sortedColumns = columns.sortedByKey();
+    Map<Long, Integer> columnHashIndex = buildColumnHashIndex(columns);
+
+    // e. 以壓縮鍵為鍵、列序號為值的開放定址雜湊索引，以及固定 KEY 集合上的最小完美雜湊
+    PackedKeyHashIndex packedIndex = PackedKeyHashIndex.build(columns.keys());
+    long perfectHashStart = System.nanoTime();
+    MinimalPerfectHashIndex perfectHash = MinimalPerfectHashIndex.build(columns.keys());
+    long perfectHashBuildTime = System.nanoTime() - perfectHashStart;
+
+    // f. 依 Eytzinger (BFS) 順序排列的排序鍵
+    EytzingerIndex eytzingerIndex = EytzingerIndex.build(sortedColumns.keys());
+    LearnedIndex learnedIndex = LearnedIndex.build(sortedColumns.keys());
+    KeyRadixTree radixTree = KeyRadixTree.build(columns.keys());
+
+    // g. transactions.csv 旁的磁碟排序索引 (未過期時直接映射)
+    TransactionIndexFile indexFile = openIndexFile(csvFile);
+
+    // h. 快速排除不存在 KEY 的 Bloom 過濾器
+    BloomFilter bloomFilter = BloomFilter.build(columns.keys(), BloomFilter.DEFAULT_FPP);
+    System.out.println("開放定址索引: " + packedIndex.probeStats());
+    System.out.println("Bloom 過濾器: " + bloomFilter);
+    System.out.println("學習型索引: " + learnedIndex);
+
+    // i. 客戶、日期、物品的次要索引
+    SecondaryIndexes secondaryIndexes = SecondaryIndexes.build(columns);
+    System.out.println("次要索引: " + secondaryIndexes.distinctCustomers() + " 位客戶，"
+        + MemoryEstimator.format(secondaryIndexes.estimatedBytes()));
+    System.out.println("資料結構準備完成。");
+    long heapBytes = MemoryEstimator.usedHeapBytes();
+    System.out.println("目前堆積用量: " + MemoryEstimator.format(heapBytes) + "\n");
 
     // --- 2. 準備搜尋用的 KEY ---
     List<String> existingKeys = new ArrayList<>();
     List<String> nonExistingKeys = new ArrayList<>();
-    prepareSearchKeys(transactions, existingKeys, nonExistingKeys);
+    prepareSearchKeys(transactions, existingKeys, nonExistingKeys, LATENCY_SAMPLES);
+
+    Map<String, Predicate<String>> algorithms = new LinkedHashMap<>();
+    algorithms.put("線性搜尋 (O(n))", key -> linearSearch(linearSearchList, key));
+    algorithms.put("二分搜尋 (O(log n))", sortedSearch);
+    algorithms.put("Eytzinger 搜尋", key -> eytzingerSearch(eytzingerIndex, key));
+    algorithms.put("學習型索引", key -> learnedSearch(learnedIndex, key));
+    algorithms.put("基數樹搜尋", radixTree::contains);
+    if (indexFile != null) {
+      algorithms.put("磁碟索引搜尋", indexFile::contains);
+    }
+    algorithms.put("雜湊搜尋 (O(1))", key -> hashSearch(hashMap, key));
+    algorithms.put("開放定址雜湊 (O(1))", key -> openAddressingSearch(packedIndex, key));
+    algorithms.put("最小完美雜湊 (O(1))", perfectHash::contains);
+
+    Map<String, Predicate<String>> columnAlgorithms = new LinkedHashMap<>();
+    columnAlgorithms.put("欄位線性搜尋", key -> linearSearch(columns, key));
+    columnAlgorithms.put("欄位平行線性搜尋", key -> parallelLinearSearch(columns, key));
+    columnAlgorithms.put("欄位二分搜尋", key -> binarySearch(sortedColumns, key));
+    columnAlgorithms.put("欄位雜湊搜尋", key -> packedHashSearch(columnHashIndex, key));
+    if (useBloom) {
+      System.out.println("已啟用 Bloom 過濾器 (--bloom)\n");
+      algorithms.replaceAll((name, search) -> bloomFilter.wrap(search));
+      columnAlgorithms.replaceAll((name, search) -> bloomFilter.wrap(search));
+    }
 
     System.out.println("--- 搜尋存在的 KEY ---");
-    runPerformanceTest(linearSearchList, binarySearchList, hashMap, existingKeys);
+    runPerformanceTest(algorithms, existingKeys);
+    runPerformanceTest(columnAlgorithms, existingKeys);
 
     System.out.println("\n--- 搜尋不存在的 KEY ---");
-    runPerformanceTest(linearSearchList, binarySearchList, hashMap, nonExistingKeys);
+    runPerformanceTest(algorithms, nonExistingKeys);
+    runPerformanceTest(columnAlgorithms, nonExistingKeys);
+
+    System.out.println("\n--- 不存在的 KEY：Bloom 過濾器 關 / 開 ---");
+    List<String> bloomMisses = new ArrayList<>();
+    prepareSearchKeys(transactions, new ArrayList<>(), bloomMisses, BATCH_SIZE);
+    runBloomTest(bloomFilter, bloomMisses, linearSearchList, sortedSearch, hashMap);
+
+    System.out.println("\n--- 次要索引查詢 (客戶 / 日期區間 / 物品) ---");
+    runSecondaryIndexTest(transactions, secondaryIndexes);
+
+    System.out.println("\n--- 學習型索引 vs Collections.binarySearch (" + BATCH_SIZE + " 存在 + "
+        + BATCH_SIZE + " 不存在) ---");
+    runLearnedIndexTest(transactions, sortedSearch, learnedIndex);
+
+    System.out.println("\n--- 最小完美雜湊 vs HashMap (" + BATCH_SIZE + " 存在 + " + BATCH_SIZE + " 不存在) ---");
+    runPerfectHashTest(transactions, hashMap, columns, perfectHash, perfectHashBuildTime);
+
+    System.out.println("\n--- 批次查詢 (" + BATCH_SIZE + " 存在 + " + BATCH_SIZE + " 不存在) ---");
+    runBatchTest(transactions, sortedSearch, sortedColumns);
+
+    System.out.println("\n--- 排序列表的建立方式 ---");
+    runSortTest(transactions);
+
+    System.out.println("\n--- 前端編碼 KEY 字典 vs 排序 List<Transaction> (" + BATCH_SIZE + " 存在 + "
+        + BATCH_SIZE + " 不存在) ---");
+    List<String> dictionaryKeys = new ArrayList<>();
+    List<String> dictionaryMisses = new ArrayList<>();
+    prepareSearchKeys(transactions, dictionaryKeys, dictionaryMisses, BATCH_SIZE);
+    dictionaryKeys.addAll(dictionaryMisses);
+    runFrontCodingTest(dictionaryKeys, binarySearchList, sortedListBuildTime,
+        blockSize -> FrontCodedKeyDictionary.fromTransactions(transactions, blockSize), null, 0);
+
+    System.out.println("\n--- 記憶體用量 ---");
+    printMemoryReport(transactions, columns, heapBytes);
   }
 
   /**
-   * 執行並評測三種搜尋演算法的效能
+   * --low-memory：不載入 List&lt;Transaction&gt;，只映射磁碟索引 (堆積外)，並由索引的壓縮鍵建立前端編碼字典取代排序列表；
+   * 線性搜尋改為逐一掃描映射的索引鍵欄位，測試用的 KEY 也從索引抽樣
    */
-  private static void runPerformanceTest(List<Transaction> linearList, List<Transaction> sortedList, Map<String, Transaction> map, List<String> keysToSearch) {
-    // 線性搜尋
-    long linearTotalTime = 0;
-    for (String key : keysToSearch) {
+  private static void runLowMemory(String csvFile, boolean useBloom) {
+    System.out.println("正在準備搜尋所需的資料結構 (--low-memory，不載入 " + csvFile + " 的交易列表)...");
+    TransactionIndexFile indexFile = openIndexFile(csvFile);
+    if (indexFile == null || indexFile.size() == 0) {
+      System.out.println("讀取資料失敗或檔案為空，程式終止。");
+      return;
+    }
+    long startTime = System.nanoTime();
+    FrontCodedKeyDictionary keyDictionary =
+        FrontCodedKeyDictionary.fromIndex(indexFile, FrontCodedKeyDictionary.DEFAULT_BLOCK_SIZE);
+    long dictionaryBuildTime = System.nanoTime() - startTime;
+    System.out.printf("前端編碼字典: %s，%.1f ms\n", keyDictionary, dictionaryBuildTime / 1e6);
+    BloomFilter bloomFilter = useBloom ? buildBloomFilter(indexFile) : null;
+    System.out.println("資料結構準備完成 (略過排序列表、HashMap、欄位式儲存與其他記憶體內索引)。");
+    long heapBytes = MemoryEstimator.usedHeapBytes();
+    System.out.println("目前堆積用量: " + MemoryEstimator.format(heapBytes) + "\n");
+
+    List<String> existingKeys = new ArrayList<>();
+    List<String> nonExistingKeys = new ArrayList<>();
+    prepareSearchKeys(indexFile, existingKeys, nonExistingKeys, LATENCY_SAMPLES);
+
+    Map<String, Predicate<String>> algorithms = new LinkedHashMap<>();
+    algorithms.put("線性搜尋 (O(n))", key -> linearSearch(indexFile, key));
+    algorithms.put("前端編碼二分搜尋", keyDictionary::contains);
+    algorithms.put("磁碟索引搜尋", indexFile::contains);
+    if (bloomFilter != null) {
+      System.out.println("已啟用 Bloom 過濾器 (--bloom)\n");
+      algorithms.replaceAll((name, search) -> bloomFilter.wrap(search));
+    }
+
+    System.out.println("--- 搜尋存在的 KEY ---");
+    runPerformanceTest(algorithms, existingKeys);
+
+    System.out.println("\n--- 搜尋不存在的 KEY ---");
+    runPerformanceTest(algorithms, nonExistingKeys);
+
+    System.out.println("\n--- 前端編碼 KEY 字典 (" + BATCH_SIZE + " 存在 + " + BATCH_SIZE + " 不存在) ---");
+    List<String> dictionaryKeys = new ArrayList<>();
+    List<String> dictionaryMisses = new ArrayList<>();
+    prepareSearchKeys(indexFile, dictionaryKeys, dictionaryMisses, BATCH_SIZE);
+    dictionaryKeys.addAll(dictionaryMisses);
+    runFrontCodingTest(dictionaryKeys, null, 0,
+        blockSize -> FrontCodedKeyDictionary.fromIndex(indexFile, blockSize), keyDictionary, dictionaryBuildTime);
+
+    System.out.println("\n--- 記憶體用量 ---");
+    printLowMemoryReport(indexFile, keyDictionary, bloomFilter, heapBytes);
+  }
+
+  /**
+   * 執行並評測各搜尋演算法的效能，以延遲直方圖回報各百分位數
+   * @param algorithms 顯示名稱對應搜尋函式，依插入順序輸出
+   */
+  private static void runPerformanceTest(Map<String, Predicate<String>> algorithms, List<String> keysToSearch) {
+    Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    for (Map.Entry<String, Predicate<String>> entry : algorithms.entrySet()) {
+      histograms.put(entry.getKey(), LatencyHistogram.measure(entry.getValue(), keysToSearch, LATENCY_BUDGET_NANOS));
+    }
+
+    System.out.println("+------------------+--------+------------+------------+------------+------------+------------+------------+");
+    System.out.println("| 搜尋演算法       | 樣本數 | 平均 (ns)  | p50 (ns)   | p90 (ns)   | p99 (ns)   | p99.9 (ns) | 最大 (ns)  |");
+    System.out.println("+------------------+--------+------------+------------+------------+------------+------------+------------+");
+    for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+      LatencyHistogram h = entry.getValue();
+      System.out.printf("| %-17s| %-6d | %-10.0f |", entry.getKey(), h.count(), h.mean());
+      for (double percentile : LatencyHistogram.REPORTED_PERCENTILES) {
+        System.out.printf(" %-10d |", h.valueAtPercentile(percentile));
+      }
+      System.out.printf(" %-10d |\n", h.max());
+    }
+    System.out.println("+------------------+--------+------------+------------+------------+------------+------------+------------+");
+  }
+
+  /**
+   * 比較逐筆二分搜尋與排序合併的批次查詢
+   */
+  private static void runBatchTest(List<Transaction> transactions, Predicate<String> sortedSearch,
+                                   TransactionColumns sortedColumns) {
+    List<String> batch = new ArrayList<>();
+    List<String> nonExisting = new ArrayList<>();
+    prepareSearchKeys(transactions, batch, nonExisting, BATCH_SIZE);
+    batch.addAll(nonExisting);
+    Collections.shuffle(batch);
+    BatchKeyLookup lookup = BatchKeyLookup.of(sortedColumns);
+
+    // 各跑數輪取最佳值，排除第一次呼叫時的 JIT 編譯
+    long perKeyTime = Long.MAX_VALUE;
+    long columnTime = Long.MAX_VALUE;
+    long batchTime = Long.MAX_VALUE;
+    int perKeyHits = 0;
+    int columnHits = 0;
+    BatchKeyLookup.Result result = null;
+    for (int round = 0; round < 5; round++) {
       long startTime = System.nanoTime();
-      linearSearch(linearList, key);
-      linearTotalTime += System.nanoTime() - startTime;
+      perKeyHits = 0;
+      for (String key : batch) {
+        if (sortedSearch.test(key)) {
+          perKeyHits++;
+        }
+      }
+      perKeyTime = Math.min(perKeyTime, System.nanoTime() - startTime);
+
+      startTime = System.nanoTime();
+      columnHits = 0;
+      for (String key : batch) {
+        if (binarySearch(sortedColumns, key)) {
+          columnHits++;
+        }
+      }
+      columnTime = Math.min(columnTime, System.nanoTime() - startTime);
+
+      startTime = System.nanoTime();
+      result = lookup.searchAll(batch);
+      batchTime = Math.min(batchTime, System.nanoTime() - startTime);
     }
 
-    // 二分搜尋
-    long binaryTotalTime = 0;
-    for (String key : keysToSearch) {
+    System.out.println("+----------------------+--------------+--------------+--------+");
+    System.out.println("| 查詢方式             | 總時間 (ms)  | 每筆 (ns)    | 命中數 |");
+    System.out.println("+----------------------+--------------+--------------+--------+");
+    printBatchRow("逐筆 binarySearch", perKeyTime, batch.size(), perKeyHits);
+    printBatchRow("逐筆欄位二分搜尋", columnTime, batch.size(), columnHits);
+    printBatchRow("searchAll 排序合併", batchTime, batch.size(), result.hitCount());
+    System.out.println("+----------------------+--------------+--------------+--------+");
+  }
+
+  /**
+   * 只跑不存在的 KEY，比較各搜尋在有無 Bloom 過濾器時的每筆時間，並量測實際誤判率
+   */
+  private static void runBloomTest(BloomFilter bloomFilter, List<String> misses, List<Transaction> list,
+                                   Predicate<String> sortedSearch, Map<String, Transaction> hashMap) {
+    double measuredFpp = bloomFilter.measuredFpp(misses);
+    System.out.printf("記憶體 %s，實測誤判率 %.3f%% (%d 個不存在的 KEY)，目標 %.3f%%\n",
+        MemoryEstimator.format(bloomFilter.estimatedBytes()), measuredFpp * 100, misses.size(),
+        bloomFilter.targetFpp() * 100);
+
+    System.out.println("+------------------+--------------+--------------+----------+");
+    System.out.println("| 搜尋演算法       | 關 (ns/筆)   | 開 (ns/筆)   | 加速倍數 |");
+    System.out.println("+------------------+--------------+--------------+----------+");
+    // 線性搜尋每筆都要掃完整份資料，只取少量 KEY
+    printBloomRow("線性搜尋", key -> linearSearch(list, key), bloomFilter, misses.subList(0, NUM_SEARCHES));
+    printBloomRow("二分搜尋", sortedSearch, bloomFilter, misses);
+    printBloomRow("雜湊搜尋", key -> hashSearch(hashMap, key), bloomFilter, misses);
+    System.out.println("+------------------+--------------+--------------+----------+");
+  }
+
+  private static void printBloomRow(String name, Predicate<String> search, BloomFilter bloomFilter,
+                                    List<String> misses) {
+    Predicate<String> filtered = bloomFilter.wrap(search);
+    long plainTime = Long.MAX_VALUE;
+    long filteredTime = Long.MAX_VALUE;
+    int found = 0;
+    for (int round = 0; round < BEST_OF_ROUNDS; round++) {
       long startTime = System.nanoTime();
-      binarySearch(sortedList, key);
-      binaryTotalTime += System.nanoTime() - startTime;
+      for (String key : misses) {
+        found += search.test(key) ? 1 : 0;
+      }
+      plainTime = Math.min(plainTime, System.nanoTime() - startTime);
+
+      startTime = System.nanoTime();
+      for (String key : misses) {
+        found += filtered.test(key) ? 1 : 0;
+      }
+      filteredTime = Math.min(filteredTime, System.nanoTime() - startTime);
     }
+    if (found != 0) {
+      throw new IllegalStateException(name + " 找到了不應存在的 KEY");
+    }
+    double plainNs = plainTime / (double) misses.size();
+    double filteredNs = filteredTime / (double) misses.size();
+    System.out.printf("| %-17s| %-12.1f | %-12.1f | %7.2fx |\n", name, plainNs, filteredNs, plainNs / filteredNs);
+  }
+
+  /**
+   * 比較全表掃描與次要索引取出同一批交易的時間，並核對兩者筆數一致
+   */
+  private static void runSecondaryIndexTest(List<Transaction> transactions, SecondaryIndexes indexes) {
+    Random rand = new Random();
+    List<String> customers = new ArrayList<>();
+    List<LocalDate[]> dateRanges = new ArrayList<>();
+    List<String> items = new ArrayList<>();
+    for (int i = 0; i < NUM_SEARCHES; i++) {
+      customers.add(transactions.get(rand.nextInt(transactions.size())).customerId());
+      LocalDate from = LocalDate.parse(transactions.get(rand.nextInt(transactions.size())).date());
+      dateRanges.add(new LocalDate[] {from, from.plusDays(6)});
+      items.add(transactions.get(rand.nextInt(transactions.size())).itemName());
+    }
+
+    System.out.println("+------------------+--------------+--------------+----------+------------+");
+    System.out.println("| 查詢             | 全表掃描(ns) | 次要索引(ns) | 加速倍數 | 平均筆數   |");
+    System.out.println("+------------------+--------------+--------------+----------+------------+");
+    printSecondaryRow("客戶的所有交易", customers,
+        customer -> scanRows(transactions, t -> t.customerId().equals(customer)),
+        indexes::rowsForCustomer);
+    // yyyy-MM-dd 的字串順序與日期順序相同，掃描時直接比字串
+    printSecondaryRow("7 天內的交易", dateRanges,
+        range -> {
+          String from = range[0].toString();
+          String to = range[1].toString();
+          return scanRows(transactions, t -> t.date().compareTo(from) >= 0 && t.date().compareTo(to) <= 0);
+        },
+        range -> indexes.rowsBetween(range[0], range[1]));
+    printSecondaryRow("物品的所有交易", items,
+        item -> scanRows(transactions, t -> t.itemName().equals(item)),
+        indexes::rowsForItem);
+    System.out.println("+------------------+--------------+--------------+----------+------------+");
+  }
 
-    // 雜湊搜尋
-    long hashTotalTime = 0;
-    for (String key : keysToSearch) {
+  private static <Q> void printSecondaryRow(String name, List<Q> queries, Function<Q, int[]> scan,
+                                            Function<Q, int[]> index) {
+    long scanTime = Long.MAX_VALUE;
+    long indexTime = Long.MAX_VALUE;
+    long rows = 0;
+    for (int round = 0; round < BEST_OF_ROUNDS; round++) {
+      long scanned = 0;
       long startTime = System.nanoTime();
-      hashSearch(map, key);
-      hashTotalTime += System.nanoTime() - startTime;
+      for (Q query : queries) {
+        scanned += scan.apply(query).length;
+      }
+      scanTime = Math.min(scanTime, System.nanoTime() - startTime);
+
+      long indexed = 0;
+      startTime = System.nanoTime();
+      for (Q query : queries) {
+        indexed += index.apply(query).length;
+      }
+      indexTime = Math.min(indexTime, System.nanoTime() - startTime);
+      if (scanned != indexed) {
+        throw new IllegalStateException(name + " 筆數不一致: 掃描 " + scanned + "，索引 " + indexed);
+      }
+      rows = indexed;
     }
+    System.out.printf("| %-15s| %-12d | %-12d | %7.1fx | %-10d |\n", name, scanTime / queries.size(),
+        indexTime / queries.size(), scanTime / (double) indexTime, rows / queries.size());
+  }
 
-    System.out.println("+------------------+------------------------+");
-    System.out.println("| 搜尋演算法       | 平均時間 (奈秒 ns)     |");
-    System.out.println("+------------------+------------------------+");
-    System.out.printf("| 線性搜尋 (O(n))    | %-22d |\n", linearTotalTime / NUM_SEARCHES);
-    System.out.printf("| 二分搜尋 (O(log n))| %-22d |\n", binaryTotalTime / NUM_SEARCHES);
-    System.out.printf("| 雜湊搜尋 (O(1))    | %-22d |\n", hashTotalTime / NUM_SEARCHES);
-    System.out.println("+------------------+------------------------+");
+  /**
+   * 全表掃描，回傳符合條件的列序號
+   */
+  private static int[] scanRows(List<Transaction> transactions, Predicate<Transaction> match) {
+    int[] rows = new int[16];
+    int count = 0;
+    for (int row = 0; row < transactions.size(); row++) {
+      if (match.test(transactions.get(row))) {
+        if (count == rows.length) {
+          rows = Arrays.copyOf(rows, count * 2);
+        }
+        rows[count++] = row;
+      }
+    }
+    return Arrays.copyOf(rows, count);
   }
 
   /**
-   * 從 CSV 檔案讀取交易資料
+   * 以大量 KEY 比較學習型索引與 Collections.binarySearch 的每筆查詢時間
    */
-  private static List<Transaction> loadTransactions(String filePath) {
+  private static void runLearnedIndexTest(List<Transaction> transactions, Predicate<String> sortedSearch,
+                                          LearnedIndex learnedIndex) {
+    List<String> keys = new ArrayList<>();
+    List<String> nonExisting = new ArrayList<>();
+    prepareSearchKeys(transactions, keys, nonExisting, BATCH_SIZE);
+    keys.addAll(nonExisting);
+    Collections.shuffle(keys);
+
+    long binaryTime = Long.MAX_VALUE;
+    long learnedTime = Long.MAX_VALUE;
+    for (int round = 0; round < BEST_OF_ROUNDS; round++) {
+      int hits = 0;
+      long startTime = System.nanoTime();
+      for (String key : keys) {
+        hits += sortedSearch.test(key) ? 1 : 0;
+      }
+      binaryTime = Math.min(binaryTime, System.nanoTime() - startTime);
+
+      startTime = System.nanoTime();
+      for (String key : keys) {
+        hits -= learnedSearch(learnedIndex, key) ? 1 : 0;
+      }
+      learnedTime = Math.min(learnedTime, System.nanoTime() - startTime);
+      if (hits != 0) {
+        throw new IllegalStateException("學習型索引與二分搜尋的命中數不同");
+      }
+    }
+    System.out.println("模型: " + learnedIndex);
+    System.out.printf("Collections.binarySearch %.1f ns/次，學習型索引 %.1f ns/次 (%.2f 倍)\n",
+        binaryTime / (double) keys.size(), learnedTime / (double) keys.size(), binaryTime / (double) learnedTime);
+  }
+
+  /**
+   * 比較最小完美雜湊與 HashMap 的建立時間、記憶體與查詢時間，並核對每一列都能查回自己的列序號
+   */
+  private static void runPerfectHashTest(List<Transaction> transactions, Map<String, Transaction> hashMap,
+                                         TransactionColumns columns, MinimalPerfectHashIndex perfectHash,
+                                         long perfectHashBuildTime) {
+    long[] packedKeys = columns.keys();
+    int mismatches = 0;
+    for (int row = 0; row < packedKeys.length; row++) {
+      // 重複的 KEY 只會對應到最後一列，與 HashMap.put 相同
+      mismatches += packedKeys[perfectHash.get(packedKeys[row])] == packedKeys[row] ? 0 : 1;
+    }
+    if (mismatches > 0) {
+      throw new IllegalStateException("最小完美雜湊有 " + mismatches + " 筆查不回原本的 KEY");
+    }
+
+    long startTime = System.nanoTime();
+    Map<String, Transaction> rebuilt = new HashMap<>();
+    for (Transaction t : transactions) {
+      rebuilt.put(t.key(), t);
+    }
+    long hashMapBuildTime = System.nanoTime() - startTime;
+
+    List<String> keys = new ArrayList<>();
+    List<String> nonExisting = new ArrayList<>();
+    prepareSearchKeys(transactions, keys, nonExisting, BATCH_SIZE);
+    keys.addAll(nonExisting);
+    Collections.shuffle(keys);
+    long hashTime = Long.MAX_VALUE;
+    long perfectTime = Long.MAX_VALUE;
+    for (int round = 0; round < BEST_OF_ROUNDS; round++) {
+      int hits = 0;
+      startTime = System.nanoTime();
+      for (String key : keys) {
+        hits += hashSearch(hashMap, key) ? 1 : 0;
+      }
+      hashTime = Math.min(hashTime, System.nanoTime() - startTime);
+
+      startTime = System.nanoTime();
+      for (String key : keys) {
+        hits -= perfectHash.contains(key) ? 1 : 0;
+      }
+      perfectTime = Math.min(perfectTime, System.nanoTime() - startTime);
+      if (hits != 0) {
+        throw new IllegalStateException("最小完美雜湊與 HashMap 的命中數不同");
+      }
+    }
+
+    // HashMap 的大小不含 Transaction 本身，但含作為鍵的 KEY 字串；完美雜湊只存壓縮鍵與列序號
+    long keyStrings = 0;
+    for (String key : rebuilt.keySet()) {
+      keyStrings += MemoryEstimator.stringBytes(key);
+    }
+    long hashMapBytes = MemoryEstimator.hashMapBytes(rebuilt.size()) + keyStrings;
+    long perfectBytes = perfectHash.estimatedBytes();
+    System.out.println("最小完美雜湊: " + perfectHash);
+    System.out.println("+----------------------+--------------+--------------+--------------+--------------+");
+    System.out.println("| 結構                 | 建立 (ms)    | 記憶體       | bits/key     | 查詢 (ns/次) |");
+    System.out.println("+----------------------+--------------+--------------+--------------+--------------+");
+    System.out.printf("| %-20s | %-12.1f | %-12s | %-12.1f | %-12.1f |\n", "HashMap (hashSearch)",
+        hashMapBuildTime / 1e6, MemoryEstimator.format(hashMapBytes), hashMapBytes * 8.0 / rebuilt.size(),
+        hashTime / (double) keys.size());
+    System.out.printf("| %-20s | %-12.1f | %-12s | %-12s | %-12.1f |\n", "最小完美雜湊",
+        perfectHashBuildTime / 1e6, MemoryEstimator.format(perfectBytes),
+        String.format("%.2f (函式)", perfectHash.bitsPerKey()), perfectTime / (double) keys.size());
+    System.out.println("+----------------------+--------------+--------------+--------------+--------------+");
+  }
+
+  /**
+   * 比較建立二分搜尋用排序列表的三種方式，並核對結果的順序完全相同
+   */
+  private static void runSortTest(List<Transaction> transactions) {
+    Map<ParallelRadixSort.Method, Long> times = new LinkedHashMap<>();
+    List<Transaction> expected = null;
+    for (ParallelRadixSort.Method method : ParallelRadixSort.Method.values()) {
+      long best = Long.MAX_VALUE;
+      // Collections.sort 一輪就要數秒，只取 3 輪
+      for (int round = 0; round < 3; round++) {
+        long startTime = System.nanoTime();
+        List<Transaction> sorted = ParallelRadixSort.sorted(transactions, method);
+        best = Math.min(best, System.nanoTime() - startTime);
+        if (expected == null) {
+          expected = sorted;
+        } else if (!sorted.equals(expected)) {
+          throw new IllegalStateException(method + " 的排序結果與其他方式不同");
+        }
+      }
+      times.put(method, best);
+    }
+    long baseline = times.get(ParallelRadixSort.Method.COLLECTIONS_SORT);
+    System.out.println("+----------------------+--------------+--------------+");
+    System.out.println("| 排序方式             | 時間 (ms)    | 加速倍數     |");
+    System.out.println("+----------------------+--------------+--------------+");
+    for (Map.Entry<ParallelRadixSort.Method, Long> entry : times.entrySet()) {
+      System.out.printf("| %-20s | %-12.1f | %-12.2f |\n", entry.getKey(), entry.getValue() / 1e6,
+          baseline / (double) entry.getValue());
+    }
+    System.out.println("+----------------------+--------------+--------------+");
+    System.out.printf("可用處理器 %d 個\n", Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * 比較前端編碼字典與排序 List&lt;Transaction&gt; 的每個 KEY 記憶體與查詢時間，並列出不同區塊大小的取捨
+   * @param keys 存在與不存在的查詢 KEY
+   * @param sortedList --low-memory 時為 null，只量測字典
+   * @param buildDictionary 依區塊大小建立字典
+   * @param dictionary 已建立的字典與其建立時間；為 null 時每個區塊大小都用 buildDictionary 建立
+   */
+  private static void runFrontCodingTest(List<String> keys, List<Transaction> sortedList, long sortedListBuildTime,
+                                         IntFunction<FrontCodedKeyDictionary> buildDictionary,
+                                         FrontCodedKeyDictionary dictionary, long dictionaryBuildTime) {
+    Collections.shuffle(keys);
+
+    System.out.println("+----------------------+--------------+--------------+--------------+--------------+");
+    System.out.println("| 結構                 | 建立 (ms)    | 記憶體       | bytes/key    | 查詢 (ns/次) |");
+    System.out.println("+----------------------+--------------+--------------+--------------+--------------+");
+    int expectedHits = -1;
+    long listBytes = 0;
+    if (sortedList != null) {
+      // 排序列表自己只擁有參考陣列；Transaction 與 KEY 字串和 transactions、HashMap 共用，刪掉排序列表也不會釋放
+      listBytes = MemoryEstimator.arrayBytes(sortedList.size(), MemoryEstimator.REFERENCE_BYTES);
+      long[] timeAndHits = timeLookups(key -> binarySearch(sortedList, key), keys);
+      expectedHits = (int) timeAndHits[1];
+      System.out.printf("| %-20s | %-12.1f | %-12s | %-12.1f | %-12.1f |\n", "排序 List (參考陣列)",
+          sortedListBuildTime / 1e6, MemoryEstimator.format(listBytes), listBytes / (double) sortedList.size(),
+          timeAndHits[0] / (double) keys.size());
+    }
+    FrontCodedKeyDictionary defaultDictionary = dictionary;
+    for (int blockSize : new int[] {FrontCodedKeyDictionary.MIN_BLOCK_SIZE, FrontCodedKeyDictionary.DEFAULT_BLOCK_SIZE,
+        FrontCodedKeyDictionary.MAX_BLOCK_SIZE}) {
+      long buildTime = dictionaryBuildTime;
+      FrontCodedKeyDictionary candidate = dictionary;
+      if (dictionary == null || blockSize != dictionary.blockSize()) {
+        long startTime = System.nanoTime();
+        candidate = buildDictionary.apply(blockSize);
+        buildTime = System.nanoTime() - startTime;
+      }
+      for (int i = 0; i < candidate.size(); i += candidate.size() / 1000 + 1) {
+        if (candidate.indexOf(candidate.keyAt(i)) < 0) {
+          throw new IllegalStateException("前端編碼字典查不到自己的 KEY: " + candidate.keyAt(i));
+        }
+      }
+      long[] timeAndHits = timeLookups(candidate::contains, keys);
+      if (expectedHits >= 0 && timeAndHits[1] != expectedHits) {
+        throw new IllegalStateException("前端編碼字典與二分搜尋的命中數不同");
+      }
+      expectedHits = (int) timeAndHits[1];
+      System.out.printf("| %-20s | %-12.1f | %-12s | %-12.2f | %-12.1f |\n", "前端編碼 (區塊 " + blockSize + ")",
+          buildTime / 1e6, MemoryEstimator.format(candidate.estimatedBytes()), candidate.bytesPerKey(),
+          timeAndHits[0] / (double) keys.size());
+      if (blockSize == FrontCodedKeyDictionary.DEFAULT_BLOCK_SIZE) {
+        defaultDictionary = candidate;
+      }
+    }
+    System.out.println("+----------------------+--------------+--------------+--------------+--------------+");
+    if (sortedList != null) {
+      long sharedKeyBytes = 0;
+      for (Transaction t : sortedList) {
+        sharedKeyBytes += MemoryEstimator.stringBytes(t.key());
+      }
+      System.out.printf("KEY 字串共 %s，由 transactions 持有，不計入排序列表；"
+          + "字典只有在不載入交易列表時 (--low-memory) 才真正省下記憶體\n", MemoryEstimator.format(sharedKeyBytes));
+      System.out.printf("區塊 %d 的字典約為排序列表參考陣列的 %.1f%%\n", defaultDictionary.blockSize(),
+          defaultDictionary.estimatedBytes() * 100.0 / listBytes);
+    }
+  }
+
+  /**
+   * @return {最佳一輪的總奈秒數, 命中數}
+   */
+  private static long[] timeLookups(Predicate<String> search, List<String> keys) {
+    long best = Long.MAX_VALUE;
+    int hits = 0;
+    for (int round = 0; round < BEST_OF_ROUNDS; round++) {
+      hits = 0;
+      long startTime = System.nanoTime();
+      for (String key : keys) {
+        hits += search.test(key) ? 1 : 0;
+      }
+      best = Math.min(best, System.nanoTime() - startTime);
+    }
+    return new long[] {best, hits};
+  }
+
+  private static void printBatchRow(String name, long nanos, int count, int hits) {
+    System.out.printf("| %-20s | %-12.2f | %-12d | %-6d |\n", name, nanos / 1e6, nanos / count, hits);
+  }
+
+  /**
+   * 比較物件列表與欄位式儲存的記憶體用量
+   * @param heapBytes 資料結構建立後整個行程的堆積用量，與 --low-memory 的同一列對照
+   */
+  private static void printMemoryReport(List<Transaction> transactions, TransactionColumns columns, long heapBytes) {
+    long listBytes = MemoryEstimator.transactionListBytes(transactions);
+    long columnBytes = columns.estimatedBytes();
+    System.out.println("+----------------------+--------------+--------------+");
+    System.out.println("| 儲存方式             | 總大小       | 每筆 (bytes) |");
+    System.out.println("+----------------------+--------------+--------------+");
+    System.out.printf("| List<Transaction>    | %-12s | %-12.1f |\n",
+        MemoryEstimator.format(listBytes), listBytes / (double) transactions.size());
+    System.out.printf("| TransactionColumns   | %-12s | %-12.1f |\n",
+        MemoryEstimator.format(columnBytes), columnBytes / (double) columns.size());
+    System.out.printf("| 整個行程堆積         | %-12s | %-12.1f |\n",
+        MemoryEstimator.format(heapBytes), heapBytes / (double) transactions.size());
+    System.out.println("+----------------------+--------------+--------------+");
+    System.out.printf("欄位式儲存約為物件列表的 %.1f%%\n", columnBytes * 100.0 / listBytes);
+  }
+
+  /**
+   * --low-memory 保留的資料：堆積內只有字典 (與 Bloom 過濾器)，磁碟索引映射在堆積外
+   * @param heapBytes 資料結構建立後整個行程的堆積用量，與預設模式的同一列對照
+   */
+  private static void printLowMemoryReport(TransactionIndexFile indexFile, FrontCodedKeyDictionary dictionary,
+                                           BloomFilter bloomFilter, long heapBytes) {
+    long indexBytes = TransactionIndexFile.HEADER_BYTES + 2L * Long.BYTES * indexFile.size();
+    System.out.println("+----------------------+--------------+--------------+");
+    System.out.println("| 儲存方式             | 總大小       | 每筆 (bytes) |");
+    System.out.println("+----------------------+--------------+--------------+");
+    System.out.printf("| 前端編碼字典         | %-12s | %-12.1f |\n",
+        MemoryEstimator.format(dictionary.estimatedBytes()), dictionary.bytesPerKey());
+    if (bloomFilter != null) {
+      System.out.printf("| Bloom 過濾器         | %-12s | %-12.1f |\n",
+          MemoryEstimator.format(bloomFilter.estimatedBytes()), bloomFilter.estimatedBytes() / (double) indexFile.size());
+    }
+    System.out.printf("| 磁碟索引 (堆積外)    | %-12s | %-12.1f |\n",
+        MemoryEstimator.format(indexBytes), indexBytes / (double) indexFile.size());
+    System.out.printf("| 整個行程堆積         | %-12s | %-12.1f |\n",
+        MemoryEstimator.format(heapBytes), heapBytes / (double) indexFile.size());
+    System.out.println("+----------------------+--------------+--------------+");
+    System.out.println("不加 --low-memory 執行時，同一列即為預設模式 (交易列表、排序列表與各索引) 的堆積用量");
+  }
+
+  /**
+   * 由磁碟索引的壓縮鍵建立 Bloom 過濾器，不需要交易列表
+   */
+  private static BloomFilter buildBloomFilter(TransactionIndexFile indexFile) {
+    BloomFilter filter = new BloomFilter(indexFile.size(), BloomFilter.DEFAULT_FPP);
+    for (int i = 0; i < indexFile.size(); i++) {
+      filter.put(indexFile.keyAt(i));
+    }
+    System.out.println("Bloom 過濾器: " + filter);
+    return filter;
+  }
+
+  /**
+   * 開啟或建立磁碟索引並顯示耗時；失敗時只略過這個演算法
+   */
+  private static TransactionIndexFile openIndexFile(String csvFile) {
+    try {
+      long startTime = System.nanoTime();
+      TransactionIndexFile index = TransactionIndexFile.openOrBuild(Path.of(csvFile));
+      System.out.printf("磁碟索引%s: %d 筆，%.1f ms\n", index.wasRebuilt() ? "建立" : "映射",
+          index.size(), (System.nanoTime() - startTime) / 1e6);
+      return index;
+    } catch (IOException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  private static Map<Long, Integer> buildColumnHashIndex(TransactionColumns columns) {
+    long[] keys = columns.keys();
+    Map<Long, Integer> index = new HashMap<>(keys.length * 2);
+    for (int row = 0; row < keys.length; row++) {
+      index.put(keys[row], row);
+    }
+    return index;
+  }
+
+  /**
+   * 從 CSV 檔案讀取交易資料 (記憶體映射 + 平行解析)
+   */
+  static List<Transaction> loadTransactions(String filePath) {
+    try {
+      return MappedTransactionLoader.load(filePath);
+    } catch (IOException | NumberFormatException e) {
+      e.printStackTrace();
+    }
+    return new ArrayList<>();
+  }
+
+  /**
+   * 逐行讀取的原始版本，保留作為 LoaderBenchmark 的比較基準
+   */
+  static List<Transaction> loadTransactionsWithReader(String filePath) {
     List<Transaction> transactions = new ArrayList<>();
     try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
       String line;
@@ -127,23 +783,23 @@ public class SearchPerformanceComparison {
   }
 
   /**
-   * 準備存在的和不存在的搜尋 KEY
+   * 準備指定數量的存在與不存在 KEY，供批次查詢等大量測試使用
    */
-  private static void prepareSearchKeys(List<Transaction> data, List<String> existing, List<String> nonExisting) {
+  static void prepareSearchKeys(List<Transaction> data, List<String> existing, List<String> nonExisting, int count) {
     Random rand = new Random();
     Set<String> existingKeySet = new HashSet<>();
     for(Transaction t : data) {
       existingKeySet.add(t.key());
     }
 
-    // 隨機挑選 10 個存在的 KEY
-    for (int i = 0; i < NUM_SEARCHES; i++) {
+    // 隨機挑選 count 個存在的 KEY
+    for (int i = 0; i < count; i++) {
       int randomIndex = rand.nextInt(data.size());
       existing.add(data.get(randomIndex).key());
     }
 
-    // 隨機產生 10 個不存在的 KEY
-    while (nonExisting.size() < NUM_SEARCHES) {
+    // 隨機產生 count 個不存在的 KEY
+    while (nonExisting.size() < count) {
       String randomKey = "TX-" + generateRandomAlphanumeric(10);
       if (!existingKeySet.contains(randomKey)) {
         nonExisting.add(randomKey);
@@ -151,8 +807,40 @@ public class SearchPerformanceComparison {
     }
   }
 
+  /**
+   * --low-memory 時從磁碟索引抽樣存在的 KEY，不需要交易列表
+   */
+  static void prepareSearchKeys(TransactionIndexFile index, List<String> existing, List<String> nonExisting, int count) {
+    Random rand = new Random();
+    for (int i = 0; i < count; i++) {
+      existing.add(TransactionColumns.unpackKey(index.keyAt(rand.nextInt(index.size()))));
+    }
+    while (nonExisting.size() < count) {
+      String randomKey = "TX-" + generateRandomAlphanumeric(10);
+      if (!index.contains(randomKey)) {
+        nonExisting.add(randomKey);
+      }
+    }
+  }
+
   // --- 搜尋演算法實作 ---
 
+  /**
+   * --low-memory 的線性搜尋：逐一比對映射的索引鍵欄位，不利用排序順序
+   */
+  public static boolean linearSearch(TransactionIndexFile index, String key) {
+    long packed = TransactionColumns.packKey(key);
+    if (packed == TransactionColumns.INVALID_KEY) {
+      return false;
+    }
+    for (int i = 0; i < index.size(); i++) {
+      if (index.keyAt(i) == packed) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public static boolean linearSearch(List<Transaction> list, String key) {
     for (Transaction t : list) {
       if (t.key().equals(key)) {
@@ -171,6 +859,48 @@ public class SearchPerformanceComparison {
     return map.containsKey(key);
   }
 
+  public static boolean eytzingerSearch(EytzingerIndex index, String key) {
+    return index.contains(key);
+  }
+
+  public static boolean learnedSearch(LearnedIndex index, String key) {
+    return index.contains(key);
+  }
+
+  public static boolean openAddressingSearch(PackedKeyHashIndex index, String key) {
+    return index.contains(key);
+  }
+
+  // --- 欄位式儲存的搜尋版本：先把 KEY 壓成 long，再比較原生型別 ---
+
+  public static boolean linearSearch(TransactionColumns columns, String key) {
+    long packed = TransactionColumns.packKey(key);
+    if (packed == TransactionColumns.INVALID_KEY) {
+      return false;
+    }
+    long[] keys = columns.keys();
+    for (long k : keys) {
+      if (k == packed) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public static boolean parallelLinearSearch(TransactionColumns columns, String key) {
+    return ParallelKeyScan.contains(columns.keys(), key);
+  }
+
+  public static boolean binarySearch(TransactionColumns sortedColumns, String key) {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && Arrays.binarySearch(sortedColumns.keys(), packed) >= 0;
+  }
+
+  public static boolean packedHashSearch(Map<Long, Integer> packedIndex, String key) {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && packedIndex.containsKey(packed);
+  }
+
   private static String generateRandomAlphanumeric(int length) {
     String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
     StringBuilder sb = new StringBuilder(length);
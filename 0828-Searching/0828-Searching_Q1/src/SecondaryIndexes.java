@@ -0,0 +1,219 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * 客戶、日期、物品三個欄位的次要索引，查詢結果都是 TransactionColumns 中的列序號。
+ *
+ * - 客戶：排序後的不重複客戶代碼 + CSR 形式的 postings (每位客戶的列序號由小到大)
+ * - 日期：依 epoch day 計數排序的列序號，加上每一天的起點，可直接切出任意日期區間
+ * - 物品：每個物品代碼一張點陣圖，第 i 個位元代表第 i 列
+ */
+public class SecondaryIndexes {
+
+  private final int rowCount;
+
+  private final int[] customerKeys;
+  private final int[] customerStarts;
+  private final int[] customerRows;
+
+  private final int firstDay;
+  private final int[] dayStarts;
+  private final int[] dateRows;
+
+  private final String[] itemDictionary;
+  private final long[][] itemBitmaps;
+
+  private SecondaryIndexes(int rowCount, int[] customerKeys, int[] customerStarts, int[] customerRows,
+                           int firstDay, int[] dayStarts, int[] dateRows,
+                           String[] itemDictionary, long[][] itemBitmaps) {
+    this.rowCount = rowCount;
+    this.customerKeys = customerKeys;
+    this.customerStarts = customerStarts;
+    this.customerRows = customerRows;
+    this.firstDay = firstDay;
+    this.dayStarts = dayStarts;
+    this.dateRows = dateRows;
+    this.itemDictionary = itemDictionary;
+    this.itemBitmaps = itemBitmaps;
+  }
+
+  public static SecondaryIndexes build(TransactionColumns columns) {
+    int n = columns.size();
+
+    // 客戶：把 (客戶, 列) 壓成一個 long 一起排序，同一位客戶的列自然由小到大
+    int[] customerIds = columns.customerIds();
+    long[] pairs = new long[n];
+    for (int row = 0; row < n; row++) {
+      pairs[row] = ((long) customerIds[row] << 32) | row;
+    }
+    Arrays.sort(pairs);
+    int[] customerRows = new int[n];
+    int[] customerKeys = new int[n];
+    int[] customerStarts = new int[n + 1];
+    int distinct = 0;
+    for (int i = 0; i < n; i++) {
+      int customer = (int) (pairs[i] >>> 32);
+      if (distinct == 0 || customerKeys[distinct - 1] != customer) {
+        customerKeys[distinct] = customer;
+        customerStarts[distinct] = i;
+        distinct++;
+      }
+      customerRows[i] = (int) pairs[i];
+    }
+    customerStarts[distinct] = n;
+    customerKeys = Arrays.copyOf(customerKeys, distinct);
+    customerStarts = Arrays.copyOf(customerStarts, distinct + 1);
+
+    // 日期：天數範圍只有幾千天，用計數排序
+    int[] epochDays = columns.epochDays();
+    int minDay = Integer.MAX_VALUE;
+    int maxDay = Integer.MIN_VALUE;
+    for (int day : epochDays) {
+      minDay = Math.min(minDay, day);
+      maxDay = Math.max(maxDay, day);
+    }
+    if (n == 0) {
+      minDay = 0;
+      maxDay = -1;
+    }
+    int[] dayStarts = new int[maxDay - minDay + 2];
+    for (int day : epochDays) {
+      dayStarts[day - minDay + 1]++;
+    }
+    for (int i = 1; i < dayStarts.length; i++) {
+      dayStarts[i] += dayStarts[i - 1];
+    }
+    int[] dateRows = new int[n];
+    int[] cursor = Arrays.copyOf(dayStarts, dayStarts.length - 1);
+    for (int row = 0; row < n; row++) {
+      dateRows[cursor[epochDays[row] - minDay]++] = row;
+    }
+
+    // 物品：每個物品代碼一張點陣圖
+    String[] dictionary = columns.itemDictionary();
+    byte[] itemCodes = columns.itemCodes();
+    long[][] itemBitmaps = new long[dictionary.length][(n + 63) >>> 6];
+    for (int row = 0; row < n; row++) {
+      itemBitmaps[itemCodes[row] & 0xFF][row >>> 6] |= 1L << row;
+    }
+
+    return new SecondaryIndexes(n, customerKeys, customerStarts, customerRows,
+        minDay, dayStarts, dateRows, dictionary, itemBitmaps);
+  }
+
+  // --- 客戶 ---
+
+  /**
+   * @return 該客戶所有交易的列序號 (由小到大)；客戶不存在時回傳空陣列
+   */
+  public int[] rowsForCustomer(String customerId) {
+    int position = customerPosition(customerId);
+    return (position < 0) ? new int[0]
+        : Arrays.copyOfRange(customerRows, customerStarts[position], customerStarts[position + 1]);
+  }
+
+  public int countForCustomer(String customerId) {
+    int position = customerPosition(customerId);
+    return (position < 0) ? 0 : customerStarts[position + 1] - customerStarts[position];
+  }
+
+  private int customerPosition(String customerId) {
+    int packed = TransactionColumns.packCustomerId(customerId);
+    return (packed == TransactionColumns.INVALID_CUSTOMER) ? -1 : Arrays.binarySearch(customerKeys, packed);
+  }
+
+  public int distinctCustomers() {
+    return customerKeys.length;
+  }
+
+  // --- 日期 ---
+
+  /**
+   * @return from 到 to (兩端皆含) 之間所有交易的列序號，依日期排列
+   */
+  public int[] rowsBetween(LocalDate from, LocalDate to) {
+    int start = dayOffset(from);
+    return Arrays.copyOfRange(dateRows, start, Math.max(start, dayOffset(to.plusDays(1))));
+  }
+
+  public int countBetween(LocalDate from, LocalDate to) {
+    return Math.max(0, dayOffset(to.plusDays(1)) - dayOffset(from));
+  }
+
+  /**
+   * @return 第一筆日期 &gt;= day 的交易在 dateRows 中的位置
+   */
+  private int dayOffset(LocalDate day) {
+    long index = day.toEpochDay() - firstDay;
+    return dayStarts[(int) Math.max(0, Math.min(index, dayStarts.length - 1))];
+  }
+
+  // --- 物品 ---
+
+  /**
+   * @return 該物品所有交易的列序號 (由小到大)；物品不存在時回傳空陣列
+   */
+  public int[] rowsForItem(String itemName) {
+    long[] bitmap = itemBitmap(itemName);
+    return (bitmap == null) ? new int[0] : rowsOf(bitmap, countOf(bitmap));
+  }
+
+  public int countForItem(String itemName) {
+    long[] bitmap = itemBitmap(itemName);
+    return (bitmap == null) ? 0 : countOf(bitmap);
+  }
+
+  /**
+   * 直接回傳內部點陣圖，供多個條件做 AND / OR；呼叫端不可修改
+   * @return 點陣圖；物品不存在時回傳 null
+   */
+  long[] itemBitmap(String itemName) {
+    for (int code = 0; code < itemDictionary.length; code++) {
+      if (itemDictionary[code].equals(itemName)) {
+        return itemBitmaps[code];
+      }
+    }
+    return null;
+  }
+
+  static int countOf(long[] bitmap) {
+    int count = 0;
+    for (long word : bitmap) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  /**
+   * 依序取出點陣圖中所有為 1 的位元位置
+   */
+  static int[] rowsOf(long[] bitmap, int count) {
+    int[] rows = new int[count];
+    int next = 0;
+    for (int w = 0; w < bitmap.length; w++) {
+      long word = bitmap[w];
+      while (word != 0) {
+        rows[next++] = (w << 6) + Long.numberOfTrailingZeros(word);
+        word &= word - 1;
+      }
+    }
+    return rows;
+  }
+
+  public int rowCount() {
+    return rowCount;
+  }
+
+  public long estimatedBytes() {
+    long bytes = MemoryEstimator.arrayBytes(customerKeys.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(customerStarts.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(customerRows.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(dayStarts.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(dateRows.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(itemBitmaps.length, MemoryEstimator.REFERENCE_BYTES);
+    for (long[] bitmap : itemBitmaps) {
+      bytes += MemoryEstimator.arrayBytes(bitmap.length, Long.BYTES);
+    }
+    return bytes;
+  }
+}
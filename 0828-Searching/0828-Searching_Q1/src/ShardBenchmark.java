@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 比較分片數增加時，分片索引的吞吐量：
+ * - 單筆查詢：CLIENT_THREADS 個執行緒同時查詢，每筆只送到一個分片
+ * - 批次查詢：一次 BATCH_SIZE 個 KEY，依分片分組後同時送出
+ * - 前綴查詢：送到所有分片計數後加總 (scatter-gather)
+ * 分片可以在同一個 JVM 中 (local)，或各自是一個本機 JVM (remote，經由 loopback socket)。
+ * 用法: java ShardBenchmark [transactions.csv] [--shards 1,2,4,8] [--modes local,remote] [--duration-ms 1000]
+ * 注意：吞吐量能否隨分片數成長取決於 CPU 核心數；單核心機器上 remote 分片只會多出 socket 與排程成本。
+ */
+public class ShardBenchmark {
+
+  private static final int CLIENT_THREADS = 8;
+  private static final int BATCH_SIZE = 4096;
+  private static final int SAMPLE_KEYS = 100_000;
+  private static final int VERIFY_KEYS = 2_000;
+  // "TX-" 之後取 3 個字元當前綴，平均約 1/46656 的交易符合
+  private static final int PREFIX_SYMBOLS = 3;
+
+  public static void main(String[] args) throws Exception {
+    Path csvPath = Path.of("transactions.csv");
+    int[] shardCounts = {1, 2, 4, 8};
+    String[] modes = {"local", "remote"};
+    long durationNanos = 1_000_000_000L;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--shards" -> shardCounts = parseInts(args[++i]);
+        case "--modes" -> modes = args[++i].split(",");
+        case "--duration-ms" -> durationNanos = Long.parseLong(args[++i]) * 1_000_000L;
+        default -> csvPath = Path.of(args[i]);
+      }
+    }
+    if (!Files.exists(csvPath)) {
+      System.out.println("找不到 " + csvPath + "，程式終止。");
+      return;
+    }
+
+    TransactionIndexFile index = TransactionIndexFile.openOrBuild(csvPath);
+    System.out.printf("索引共 %d 筆，每次量測 %d ms，可用處理器 %d 個%n%n", index.size(), durationNanos / 1_000_000,
+        Runtime.getRuntime().availableProcessors());
+
+    // 一半是存在的 KEY，一半是隨機產生的 (幾乎都不存在)
+    SplittableRandom random = new SplittableRandom(42);
+    long[] queries = new long[SAMPLE_KEYS];
+    for (int i = 0; i < queries.length; i++) {
+      queries[i] = (i % 2 == 0) ? index.keyAt(random.nextInt(index.size()))
+          : random.nextLong((long) Math.pow(TransactionColumns.SYMBOLS.length(), TransactionColumns.KEY_SYMBOLS));
+    }
+    List<String> prefixes = new ArrayList<>();
+    for (int i = 0; i < 1024; i++) {
+      String key = TransactionColumns.unpackKey(index.keyAt(random.nextInt(index.size())));
+      prefixes.add(key.substring(0, TransactionColumns.KEY_PREFIX.length() + PREFIX_SYMBOLS));
+    }
+
+    System.out.println("+--------+------+------------+------------------+------------------+------------------+");
+    System.out.println("| 模式  | 分片 | 建立 (ms) | 單筆查詢 (ops/s) | 批次查詢 (key/s) | 前綴查詢 (q/s)  |");
+    System.out.println("+--------+------+------------+------------------+------------------+------------------+");
+    for (String mode : modes) {
+      for (int shardCount : shardCounts) {
+        long startTime = System.nanoTime();
+        try (ShardedKeyIndex sharded = mode.equals("remote")
+            ? ShardedKeyIndex.launchLocalJvms(csvPath, shardCount)
+            : ShardedKeyIndex.inProcess(index, shardCount)) {
+          long buildNanos = System.nanoTime() - startTime;
+          verify(sharded, index, queries, prefixes);
+
+          double single = singleLookups(sharded, queries, durationNanos);
+          double batched = batchLookups(sharded, queries, durationNanos);
+          double ranged = prefixQueries(sharded, prefixes, durationNanos);
+          System.out.printf("| %-6s | %-4d | %-10.1f | %-16.0f | %-16.0f | %-16.0f |%n", mode, shardCount,
+              buildNanos / 1e6, single, batched, ranged);
+        }
+      }
+    }
+    System.out.println("+--------+------+------------+------------------+------------------+------------------+");
+  }
+
+  /**
+   * 分片結果必須與未分片的磁碟索引相同
+   */
+  private static void verify(ShardedKeyIndex sharded, TransactionIndexFile index, long[] queries,
+                             List<String> prefixes) throws IOException {
+    long[] keys = new long[VERIFY_KEYS];
+    System.arraycopy(queries, 0, keys, 0, keys.length);
+    long[] values = sharded.lookupAll(keys);
+    for (int i = 0; i < keys.length; i++) {
+      int position = index.indexOf(keys[i]);
+      long expected = (position < 0) ? -1 : index.offsetAt(position);
+      if (values[i] != expected || sharded.lookup(keys[i]) != expected) {
+        throw new IllegalStateException("分片查詢結果不一致: " + TransactionColumns.unpackKey(keys[i]));
+      }
+    }
+    int total = 0;
+    for (int size : sharded.shardSizes()) {
+      total += size;
+    }
+    if (total != index.size()) {
+      throw new IllegalStateException("分片總筆數 " + total + " 與索引的 " + index.size() + " 不同");
+    }
+    for (String prefix : prefixes.subList(0, 32)) {
+      long[] range = ShardedKeyIndex.prefixRange(prefix);
+      int from = lowerBound(index, range[0]);
+      int to = lowerBound(index, range[1]);
+      List<String> expected = new ArrayList<>();
+      for (int i = from; i < Math.min(to, from + 10); i++) {
+        expected.add(TransactionColumns.unpackKey(index.keyAt(i)));
+      }
+      if (sharded.countWithPrefix(prefix) != to - from || !sharded.keysWithPrefix(prefix, 10).equals(expected)) {
+        throw new IllegalStateException("前綴查詢結果不一致: " + prefix);
+      }
+    }
+  }
+
+  private static int lowerBound(TransactionIndexFile index, long key) {
+    int lo = 0;
+    int hi = index.size();
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (index.keyAt(mid) < key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private static double singleLookups(ShardedKeyIndex sharded, long[] queries, long durationNanos)
+      throws InterruptedException {
+    LongAdder completed = new LongAdder();
+    long deadline = System.nanoTime() + durationNanos;
+    Thread[] clients = new Thread[CLIENT_THREADS];
+    for (int t = 0; t < clients.length; t++) {
+      int first = t * (queries.length / CLIENT_THREADS);
+      clients[t] = new Thread(() -> {
+        int next = first;
+        long count = 0;
+        try {
+          while (System.nanoTime() < deadline) {
+            sharded.lookup(queries[next]);
+            next = (next + 1 == queries.length) ? 0 : next + 1;
+            count++;
+          }
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+        completed.add(count);
+      });
+    }
+    long startTime = System.nanoTime();
+    for (Thread client : clients) {
+      client.start();
+    }
+    for (Thread client : clients) {
+      client.join();
+    }
+    return completed.sum() / ((System.nanoTime() - startTime) / 1e9);
+  }
+
+  private static double batchLookups(ShardedKeyIndex sharded, long[] queries, long durationNanos) throws IOException {
+    long[] batch = new long[BATCH_SIZE];
+    long keys = 0;
+    int next = 0;
+    long startTime = System.nanoTime();
+    while (System.nanoTime() - startTime < durationNanos) {
+      for (int i = 0; i < batch.length; i++) {
+        batch[i] = queries[next];
+        next = (next + 1 == queries.length) ? 0 : next + 1;
+      }
+      sharded.lookupAll(batch);
+      keys += batch.length;
+    }
+    return keys / ((System.nanoTime() - startTime) / 1e9);
+  }
+
+  private static double prefixQueries(ShardedKeyIndex sharded, List<String> prefixes, long durationNanos)
+      throws IOException {
+    long count = 0;
+    long startTime = System.nanoTime();
+    while (System.nanoTime() - startTime < durationNanos) {
+      sharded.countWithPrefix(prefixes.get((int) (count % prefixes.size())));
+      count++;
+    }
+    return count / ((System.nanoTime() - startTime) / 1e9);
+  }
+
+  private static int[] parseInts(String csv) {
+    String[] parts = csv.split(",");
+    int[] values = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      values[i] = Integer.parseInt(parts[i].trim());
+    }
+    return values;
+  }
+}
@@ -0,0 +1,109 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+
+/**
+ * 以獨立 JVM 執行的一個分片：映射 CSV 的磁碟索引，只保留屬於自己分片的 KEY，
+ * 在 loopback 介面上監聽，啟動完成後在標準輸出印出 "READY <port>"。
+ * 由 ShardedKeyIndex.launchLocalJvms 啟動，也可以手動執行：
+ * java ShardServer --csv transactions.csv --shard 0 --shards 4 [--port 0]
+ *
+ * 協定 (DataInput/DataOutputStream，big-endian)，每個請求以一個位元組的操作碼開頭：
+ * - OP_LOOKUP:        int n, n 個 long KEY          → n 個 long 值 (-1 表示不存在)
+ * - OP_COUNT_RANGE:   long from, long to            → long 筆數
+ * - OP_KEYS_IN_RANGE: long from, long to, int limit → int n, n 個 long KEY
+ * - OP_SIZE:                                        → int 筆數
+ * - OP_SHUTDOWN:      結束程序
+ */
+public class ShardServer {
+
+  static final String READY_PREFIX = "READY ";
+  static final int OP_SHUTDOWN = 0;
+  static final int OP_LOOKUP = 1;
+  static final int OP_COUNT_RANGE = 2;
+  static final int OP_KEYS_IN_RANGE = 3;
+  static final int OP_SIZE = 4;
+
+  public static void main(String[] args) throws IOException {
+    Path csvPath = Path.of("transactions.csv");
+    int shard = 0;
+    int shardCount = 1;
+    int port = 0;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--csv" -> csvPath = Path.of(args[++i]);
+        case "--shard" -> shard = Integer.parseInt(args[++i]);
+        case "--shards" -> shardCount = Integer.parseInt(args[++i]);
+        case "--port" -> port = Integer.parseInt(args[++i]);
+        default -> throw new IllegalArgumentException("未知的參數: " + args[i]);
+      }
+    }
+    if (shard < 0 || shard >= shardCount) {
+      throw new IllegalArgumentException("分片編號必須在 0 到 " + (shardCount - 1) + " 之間: " + shard);
+    }
+
+    ShardedKeyIndex.LocalShard local =
+        ShardedKeyIndex.LocalShard.of(TransactionIndexFile.openOrBuild(csvPath), shard, shardCount);
+    try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+      System.out.println(READY_PREFIX + server.getLocalPort());
+      System.out.flush();
+      // 一次服務一條連線；收到 OP_SHUTDOWN 才結束
+      while (true) {
+        try (Socket socket = server.accept()) {
+          socket.setTcpNoDelay(true);
+          if (!serve(local, socket)) {
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return 連線關閉時為 true (繼續等待下一條連線)；收到 OP_SHUTDOWN 時為 false
+   */
+  private static boolean serve(ShardedKeyIndex.LocalShard shard, Socket socket) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    while (true) {
+      int op;
+      try {
+        op = in.readUnsignedByte();
+      } catch (EOFException e) {
+        return true;
+      }
+      switch (op) {
+        case OP_SHUTDOWN -> {
+          return false;
+        }
+        case OP_LOOKUP -> {
+          long[] keys = new long[in.readInt()];
+          for (int i = 0; i < keys.length; i++) {
+            keys[i] = in.readLong();
+          }
+          for (long value : shard.lookupAll(keys)) {
+            out.writeLong(value);
+          }
+        }
+        case OP_COUNT_RANGE -> out.writeLong(shard.countRange(in.readLong(), in.readLong()));
+        case OP_KEYS_IN_RANGE -> {
+          long[] keys = shard.keysInRange(in.readLong(), in.readLong(), in.readInt());
+          out.writeInt(keys.length);
+          for (long key : keys) {
+            out.writeLong(key);
+          }
+        }
+        case OP_SIZE -> out.writeInt(shard.size());
+        default -> throw new IOException("未知的操作碼: " + op);
+      }
+      out.flush();
+    }
+  }
+}
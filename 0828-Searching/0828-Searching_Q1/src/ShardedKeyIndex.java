@@ -0,0 +1,548 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 依 KEY 的雜湊值把交易切成 N 個分片的索引，每個分片有自己的排序鍵與開放定址雜湊表。
+ * 分片可以在同一個 JVM 中 (LocalShard)，也可以是另外啟動的本機 JVM，經由 loopback socket 溝通 (RemoteShard)。
+ *
+ * 路由規則：
+ * - 單筆查詢只送到 KEY 所屬的分片
+ * - 批次查詢先依分片分組，同時送出再依原順序組回 (scatter-gather)
+ * - 範圍 / 前綴查詢與雜湊分片無關，送到所有分片後合併 (scatter-gather)
+ * 查到的值是該交易在 CSV 中的位元組位移，與 TransactionIndexFile 相同。
+ */
+public class ShardedKeyIndex implements AutoCloseable {
+
+  private final Shard[] shards;
+  private final ExecutorService scatterPool;
+
+  private ShardedKeyIndex(Shard[] shards) {
+    this.shards = shards;
+    this.scatterPool = Executors.newFixedThreadPool(shards.length, r -> {
+      Thread thread = new Thread(r, "shard-scatter");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * 一個分片能回答的查詢
+   */
+  interface Shard extends AutoCloseable {
+    /**
+     * @return 每個 KEY 的值；不存在時為 -1
+     */
+    long[] lookupAll(long[] keys) throws IOException;
+
+    /**
+     * [fromKey, toKey) 之間的 KEY 數
+     */
+    long countRange(long fromKey, long toKey) throws IOException;
+
+    /**
+     * [fromKey, toKey) 之間最小的 limit 個 KEY，由小到大
+     */
+    long[] keysInRange(long fromKey, long toKey, int limit) throws IOException;
+
+    int size() throws IOException;
+
+    @Override
+    void close() throws IOException;
+  }
+
+  // --- 建立 ---
+
+  /**
+   * 在目前的 JVM 中建立 shardCount 個分片
+   * @param sortedKeys 排序後的壓縮鍵
+   * @param values 與 sortedKeys 對應的值 (CSV 位移或列序號)
+   */
+  public static ShardedKeyIndex inProcess(long[] sortedKeys, long[] values, int shardCount) {
+    LocalShard[] shards = new LocalShard[shardCount];
+    for (int shard = 0; shard < shardCount; shard++) {
+      shards[shard] = LocalShard.of(sortedKeys, values, shard, shardCount);
+    }
+    return new ShardedKeyIndex(shards);
+  }
+
+  /**
+   * 由 CSV 的磁碟索引建立，值為 CSV 位移
+   */
+  public static ShardedKeyIndex inProcess(TransactionIndexFile index, int shardCount) {
+    LocalShard[] shards = new LocalShard[shardCount];
+    for (int shard = 0; shard < shardCount; shard++) {
+      shards[shard] = LocalShard.of(index, shard, shardCount);
+    }
+    return new ShardedKeyIndex(shards);
+  }
+
+  /**
+   * 為每個分片啟動一個本機 JVM (ShardServer)，各自映射 CSV 的磁碟索引並只保留自己的分片
+   */
+  public static ShardedKeyIndex launchLocalJvms(Path csvPath, int shardCount) throws IOException {
+    // 先在這裡建好索引，避免多個分片程序同時重建
+    TransactionIndexFile.openOrBuild(csvPath);
+    List<Process> processes = new ArrayList<>();
+    Shard[] shards = new Shard[shardCount];
+    try {
+      for (int shard = 0; shard < shardCount; shard++) {
+        processes.add(startServer(csvPath, shard, shardCount));
+      }
+      for (int shard = 0; shard < shardCount; shard++) {
+        Process process = processes.get(shard);
+        int port = awaitReady(process);
+        shards[shard] = new RemoteShard(process, new Socket(InetAddress.getLoopbackAddress(), port));
+      }
+    } catch (IOException | RuntimeException e) {
+      for (Process process : processes) {
+        process.destroyForcibly();
+      }
+      throw e;
+    }
+    return new ShardedKeyIndex(shards);
+  }
+
+  private static Process startServer(Path csvPath, int shard, int shardCount) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    for (String jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+      // 除錯代理會搶同一個埠，不能傳給分片
+      if (!jvmArg.startsWith("-agentlib:jdwp")) {
+        command.add(jvmArg);
+      }
+    }
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(ShardServer.class.getName());
+    command.add("--csv");
+    command.add(csvPath.toString());
+    command.add("--shard");
+    command.add(Integer.toString(shard));
+    command.add("--shards");
+    command.add(Integer.toString(shardCount));
+    return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+  }
+
+  /**
+   * 讀取分片程序的標準輸出，直到它印出監聽的埠號
+   */
+  private static int awaitReady(Process process) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.startsWith(ShardServer.READY_PREFIX)) {
+        return Integer.parseInt(line.substring(ShardServer.READY_PREFIX.length()).trim());
+      }
+    }
+    throw new IOException("分片程序在就緒前結束，結束碼 " + waitQuietly(process));
+  }
+
+  private static int waitQuietly(Process process) {
+    try {
+      return process.waitFor();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return -1;
+    }
+  }
+
+  /**
+   * KEY 所屬的分片；先 fmix64 打散，再以乘法取高位縮放到 [0, shardCount)
+   */
+  static int shardOf(long key, int shardCount) {
+    return (int) (((PackedKeyHashIndex.mix(key) >>> 32) * shardCount) >>> 32);
+  }
+
+  // --- 查詢 ---
+
+  /**
+   * 單筆查詢，只送到 KEY 所屬的分片
+   * @return CSV 位移；不存在時回傳 -1
+   */
+  public long lookup(long key) throws IOException {
+    return shards[shardOf(key, shards.length)].lookupAll(new long[] {key})[0];
+  }
+
+  public boolean contains(String key) throws IOException {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && lookup(packed) >= 0;
+  }
+
+  /**
+   * 批次查詢：依分片分組後同時送出，結果依 keys 的順序排列
+   */
+  public long[] lookupAll(long[] keys) throws IOException {
+    int shardCount = shards.length;
+    int[] counts = new int[shardCount];
+    int[] owners = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      owners[i] = shardOf(keys[i], shardCount);
+      counts[owners[i]]++;
+    }
+    long[][] groups = new long[shardCount][];
+    int[][] positions = new int[shardCount][];
+    for (int shard = 0; shard < shardCount; shard++) {
+      groups[shard] = new long[counts[shard]];
+      positions[shard] = new int[counts[shard]];
+    }
+    int[] fill = new int[shardCount];
+    for (int i = 0; i < keys.length; i++) {
+      int shard = owners[i];
+      groups[shard][fill[shard]] = keys[i];
+      positions[shard][fill[shard]++] = i;
+    }
+
+    List<long[]> answers = scatter(shard -> counts[shard] == 0 ? new long[0] : shards[shard].lookupAll(groups[shard]));
+    long[] values = new long[keys.length];
+    for (int shard = 0; shard < shardCount; shard++) {
+      long[] answer = answers.get(shard);
+      for (int j = 0; j < answer.length; j++) {
+        values[positions[shard][j]] = answer[j];
+      }
+    }
+    return values;
+  }
+
+  /**
+   * [fromKey, toKey) 之間的 KEY 總數 (所有分片加總)
+   */
+  public long countRange(long fromKey, long toKey) throws IOException {
+    long total = 0;
+    for (long[] count : scatter(shard -> new long[] {shards[shard].countRange(fromKey, toKey)})) {
+      total += count[0];
+    }
+    return total;
+  }
+
+  /**
+   * [fromKey, toKey) 之間最小的 limit 個 KEY：每個分片各取 limit 個，再多路合併
+   */
+  public long[] keysInRange(long fromKey, long toKey, int limit) throws IOException {
+    List<long[]> parts = scatter(shard -> shards[shard].keysInRange(fromKey, toKey, limit));
+    int[] cursors = new int[parts.size()];
+    long[] merged = new long[limit];
+    int size = 0;
+    while (size < limit) {
+      int best = -1;
+      for (int p = 0; p < parts.size(); p++) {
+        if (cursors[p] < parts.get(p).length
+            && (best < 0 || parts.get(p)[cursors[p]] < parts.get(best)[cursors[best]])) {
+          best = p;
+        }
+      }
+      if (best < 0) {
+        break;
+      }
+      merged[size++] = parts.get(best)[cursors[best]++];
+    }
+    return Arrays.copyOf(merged, size);
+  }
+
+  public long countWithPrefix(String prefix) throws IOException {
+    long[] range = prefixRange(prefix);
+    return (range == null) ? 0 : countRange(range[0], range[1]);
+  }
+
+  public List<String> keysWithPrefix(String prefix, int limit) throws IOException {
+    long[] range = prefixRange(prefix);
+    List<String> keys = new ArrayList<>();
+    if (range != null) {
+      for (long key : keysInRange(range[0], range[1], limit)) {
+        keys.add(TransactionColumns.unpackKey(key));
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * 把 "TX-AB" 這類前綴換成壓縮鍵的範圍 [from, to)；壓縮鍵的大小順序與字串一致
+   * @return 範圍；前綴格式不合法時回傳 null
+   */
+  static long[] prefixRange(String prefix) {
+    if (!prefix.startsWith(TransactionColumns.KEY_PREFIX)) {
+      return null;
+    }
+    String symbols = prefix.substring(TransactionColumns.KEY_PREFIX.length());
+    if (symbols.length() > TransactionColumns.KEY_SYMBOLS) {
+      return null;
+    }
+    long from = 0;
+    long width = 1;
+    for (int i = 0; i < TransactionColumns.KEY_SYMBOLS; i++) {
+      int digit = 0;
+      if (i < symbols.length()) {
+        digit = TransactionColumns.symbolValue(symbols.charAt(i));
+        if (digit < 0) {
+          return null;
+        }
+      } else {
+        width *= TransactionColumns.SYMBOLS.length();
+      }
+      from = from * TransactionColumns.SYMBOLS.length() + digit;
+    }
+    return new long[] {from, from + width};
+  }
+
+  public int shardCount() {
+    return shards.length;
+  }
+
+  /**
+   * 各分片的筆數
+   */
+  public int[] shardSizes() throws IOException {
+    List<long[]> sizes = scatter(shard -> new long[] {shards[shard].size()});
+    int[] result = new int[sizes.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (int) sizes.get(i)[0];
+    }
+    return result;
+  }
+
+  @FunctionalInterface
+  private interface ShardCall {
+    long[] call(int shard) throws IOException;
+  }
+
+  /**
+   * 對每個分片同時執行 call，依分片順序回傳結果；只有一個分片時直接在呼叫端執行
+   */
+  private List<long[]> scatter(ShardCall call) throws IOException {
+    List<long[]> results = new ArrayList<>(shards.length);
+    if (shards.length == 1) {
+      results.add(call.call(0));
+      return results;
+    }
+    List<Future<long[]>> futures = new ArrayList<>(shards.length);
+    for (int shard = 0; shard < shards.length; shard++) {
+      int target = shard;
+      futures.add(scatterPool.submit(() -> call.call(target)));
+    }
+    try {
+      for (Future<long[]> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("分片查詢被中斷", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException io) {
+        throw io;
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+    return results;
+  }
+
+  @Override
+  public void close() throws IOException {
+    scatterPool.shutdownNow();
+    IOException failure = null;
+    for (Shard shard : shards) {
+      try {
+        shard.close();
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * 同一個 JVM 中的分片：排序的 KEY 與值，加上 KEY → 位置的開放定址雜湊表
+   */
+  static final class LocalShard implements Shard {
+    private final long[] keys;
+    private final long[] values;
+    private final PackedKeyHashIndex positions;
+
+    private LocalShard(long[] keys, long[] values) {
+      this.keys = keys;
+      this.values = values;
+      this.positions = PackedKeyHashIndex.build(keys);
+    }
+
+    /**
+     * 從完整的排序鍵中挑出屬於 shard 的部分；挑選後仍然是排序的
+     */
+    static LocalShard of(long[] sortedKeys, long[] values, int shard, int shardCount) {
+      int count = 0;
+      for (long key : sortedKeys) {
+        count += shardOf(key, shardCount) == shard ? 1 : 0;
+      }
+      long[] keys = new long[count];
+      long[] shardValues = new long[count];
+      int next = 0;
+      for (int i = 0; i < sortedKeys.length; i++) {
+        if (shardOf(sortedKeys[i], shardCount) == shard) {
+          keys[next] = sortedKeys[i];
+          shardValues[next++] = values[i];
+        }
+      }
+      return new LocalShard(keys, shardValues);
+    }
+
+    /**
+     * 從映射的磁碟索引中挑出屬於 shard 的 KEY 與 CSV 位移，不必先複製整份索引
+     */
+    static LocalShard of(TransactionIndexFile index, int shard, int shardCount) {
+      int count = 0;
+      for (int i = 0; i < index.size(); i++) {
+        count += shardOf(index.keyAt(i), shardCount) == shard ? 1 : 0;
+      }
+      long[] keys = new long[count];
+      long[] offsets = new long[count];
+      int next = 0;
+      for (int i = 0; i < index.size(); i++) {
+        long key = index.keyAt(i);
+        if (shardOf(key, shardCount) == shard) {
+          keys[next] = key;
+          offsets[next++] = index.offsetAt(i);
+        }
+      }
+      return new LocalShard(keys, offsets);
+    }
+
+    @Override
+    public long[] lookupAll(long[] queries) {
+      long[] result = new long[queries.length];
+      for (int i = 0; i < queries.length; i++) {
+        int position = positions.get(queries[i]);
+        result[i] = (position < 0) ? -1 : values[position];
+      }
+      return result;
+    }
+
+    @Override
+    public long countRange(long fromKey, long toKey) {
+      return Math.max(0, lowerBound(toKey) - lowerBound(fromKey));
+    }
+
+    @Override
+    public long[] keysInRange(long fromKey, long toKey, int limit) {
+      int from = lowerBound(fromKey);
+      int to = Math.min(lowerBound(toKey), from + limit);
+      return Arrays.copyOfRange(keys, from, Math.max(from, to));
+    }
+
+    private int lowerBound(long key) {
+      int position = Arrays.binarySearch(keys, key);
+      return (position >= 0) ? position : -position - 1;
+    }
+
+    @Override
+    public int size() {
+      return keys.length;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  /**
+   * 另一個 JVM 中的分片；一條 socket 連線，同一時間只有一個請求在傳輸中
+   */
+  static final class RemoteShard implements Shard {
+    private final Process process;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    RemoteShard(Process process, Socket socket) throws IOException {
+      this.process = process;
+      this.socket = socket;
+      socket.setTcpNoDelay(true);
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    @Override
+    public synchronized long[] lookupAll(long[] keys) throws IOException {
+      out.writeByte(ShardServer.OP_LOOKUP);
+      out.writeInt(keys.length);
+      for (long key : keys) {
+        out.writeLong(key);
+      }
+      out.flush();
+      long[] values = new long[keys.length];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = in.readLong();
+      }
+      return values;
+    }
+
+    @Override
+    public synchronized long countRange(long fromKey, long toKey) throws IOException {
+      out.writeByte(ShardServer.OP_COUNT_RANGE);
+      out.writeLong(fromKey);
+      out.writeLong(toKey);
+      out.flush();
+      return in.readLong();
+    }
+
+    @Override
+    public synchronized long[] keysInRange(long fromKey, long toKey, int limit) throws IOException {
+      out.writeByte(ShardServer.OP_KEYS_IN_RANGE);
+      out.writeLong(fromKey);
+      out.writeLong(toKey);
+      out.writeInt(limit);
+      out.flush();
+      long[] keys = new long[in.readInt()];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = in.readLong();
+      }
+      return keys;
+    }
+
+    @Override
+    public synchronized int size() throws IOException {
+      out.writeByte(ShardServer.OP_SIZE);
+      out.flush();
+      return in.readInt();
+    }
+
+    /**
+     * 通知分片程序結束並等待它離開
+     */
+    @Override
+    public synchronized void close() throws IOException {
+      try {
+        out.writeByte(ShardServer.OP_SHUTDOWN);
+        out.flush();
+      } catch (IOException e) {
+        // 程序可能已經結束，仍要關閉 socket 並確認程序離開
+      } finally {
+        socket.close();
+      }
+      try {
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+          process.destroyForcibly();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        process.destroyForcibly();
+      }
+    }
+  }
+}
@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * 不建立 List&lt;Transaction&gt;，直接在映射的 CSV 位元組上依物品與月份做 group-by。
+ * 每個區塊在 ForkJoin 執行緒上逐行解析，累加到以位元組為鍵的原生累加表 (筆數、金額分)，
+ * 相鄰區塊的結果在回傳途中兩兩合併。記憶體只和群組數有關，與檔案大小無關。
+ * 用法: java StreamingAggregator [transactions.csv] [--compare]
+ */
+public class StreamingAggregator {
+
+  // 月份群組取日期欄位的前 7 個位元組 (yyyy-MM)
+  private static final int MONTH_BYTES = 7;
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /**
+   * 單一群組的統計；金額以分為單位累加，避免浮點誤差
+   */
+  public record GroupStats(String group, long count, long sumCents) {
+    public double totalPrice() {
+      return sumCents / 100.0;
+    }
+
+    public double averagePrice() {
+      return (count == 0) ? 0 : sumCents / 100.0 / count;
+    }
+  }
+
+  /**
+   * 彙總結果；群組依名稱排序
+   */
+  public record Result(Map<String, GroupStats> byItem, Map<String, GroupStats> byMonth,
+                       long rows, long skippedRows) {
+  }
+
+  public static Result aggregate(String filePath) throws IOException {
+    return aggregate(filePath, ForkJoinPool.commonPool());
+  }
+
+  public static Result aggregate(String filePath, ForkJoinPool pool) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+      long dataStart = MappedTransactionLoader.skipHeader(channel);
+      long[] bounds = MappedTransactionLoader.splitChunks(channel, dataStart,
+          pool.getParallelism() * CHUNKS_PER_THREAD);
+      Partial total = pool.invoke(new AggregateTask(channel, bounds, 0, bounds.length - 1));
+      return new Result(total.items.toMap(), total.months.toMap(), total.rows, total.skipped);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * 負責 bounds 中第 from 到 to-1 個區塊；超過一個區塊就對半分開，結果合併後回傳
+   */
+  private static class AggregateTask extends RecursiveTask<Partial> {
+    private static final long serialVersionUID = 1L;
+
+    private final FileChannel channel;
+    private final long[] bounds;
+    private final int from;
+    private final int to;
+
+    AggregateTask(FileChannel channel, long[] bounds, int from, int to) {
+      this.channel = channel;
+      this.bounds = bounds;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Partial compute() {
+      if (to - from <= 1) {
+        Partial partial = new Partial();
+        if (to > from) {
+          partial.scan(map(bounds[from], bounds[to]));
+        }
+        return partial;
+      }
+      int mid = (from + to) >>> 1;
+      AggregateTask left = new AggregateTask(channel, bounds, from, mid);
+      left.fork();
+      Partial right = new AggregateTask(channel, bounds, mid, to).compute();
+      return left.join().merge(right);
+    }
+
+    private MappedByteBuffer map(long start, long end) {
+      try {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * 一段區塊的部分結果
+   */
+  private static class Partial {
+    private final GroupTable items = new GroupTable();
+    private final GroupTable months = new GroupTable();
+    private long rows;
+    private long skipped;
+    private byte[] line = new byte[256];
+    private ByteBuffer lineBuffer = ByteBuffer.wrap(line);
+    private final int[] commas = new int[4];
+
+    void scan(MappedByteBuffer buffer) {
+      int limit = buffer.limit();
+      int pos = 0;
+      while (pos < limit) {
+        int lineEnd = pos;
+        while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+          lineEnd++;
+        }
+        int length = lineEnd - pos;
+        if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+          length--;
+        }
+        if (length > line.length) {
+          line = new byte[Math.max(length, line.length * 2)];
+          lineBuffer = ByteBuffer.wrap(line);
+        }
+        buffer.get(pos, line, 0, length);
+        accept(length);
+        pos = lineEnd + 1;
+      }
+    }
+
+    /**
+     * 欄位規則直接使用 MappedTransactionLoader.rowFieldsEnd，與載入器、KEY 掃描一致
+     */
+    private void accept(int length) {
+      int end = MappedTransactionLoader.rowFieldsEnd(lineBuffer, 0, length, commas);
+      if (end < 0) {
+        if (length > 0) {
+          skipped++;
+        }
+        return;
+      }
+      long cents;
+      try {
+        cents = TransactionColumns.parseCents(line, commas[3] + 1, end);
+      } catch (NumberFormatException e) {
+        skipped++;
+        return;
+      }
+      int dateStart = commas[0] + 1;
+      int dateEnd = Math.min(commas[1], dateStart + MONTH_BYTES);
+      months.add(line, dateStart, dateEnd, cents);
+      items.add(line, commas[2] + 1, commas[3], cents);
+      rows++;
+    }
+
+    Partial merge(Partial other) {
+      items.mergeFrom(other.items);
+      months.mergeFrom(other.months);
+      rows += other.rows;
+      skipped += other.skipped;
+      return this;
+    }
+  }
+
+  /**
+   * 以位元組片段為鍵的開放定址累加表 (線性探測)，值為筆數與金額分
+   */
+  static class GroupTable {
+    private byte[][] keys = new byte[64][];
+    private long[] counts = new long[64];
+    private long[] sums = new long[64];
+    private int size;
+
+    void add(byte[] bytes, int from, int to, long cents) {
+      int slot = find(bytes, from, to);
+      if (keys[slot] == null) {
+        keys[slot] = Arrays.copyOfRange(bytes, from, to);
+        size++;
+      }
+      counts[slot]++;
+      sums[slot] += cents;
+      if (size * 2 > keys.length) {
+        grow();
+      }
+    }
+
+    private int find(byte[] bytes, int from, int to) {
+      int mask = keys.length - 1;
+      int slot = hash(bytes, from, to) & mask;
+      byte[] current;
+      while ((current = keys[slot]) != null && !Arrays.equals(current, 0, current.length, bytes, from, to)) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+      int h = 0;
+      for (int i = from; i < to; i++) {
+        h = 31 * h + bytes[i];
+      }
+      return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+      byte[][] oldKeys = keys;
+      long[] oldCounts = counts;
+      long[] oldSums = sums;
+      keys = new byte[oldKeys.length * 2][];
+      counts = new long[keys.length];
+      sums = new long[keys.length];
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != null) {
+          int slot = find(oldKeys[i], 0, oldKeys[i].length);
+          keys[slot] = oldKeys[i];
+          counts[slot] = oldCounts[i];
+          sums[slot] = oldSums[i];
+        }
+      }
+    }
+
+    void mergeFrom(GroupTable other) {
+      for (int i = 0; i < other.keys.length; i++) {
+        byte[] key = other.keys[i];
+        if (key == null) {
+          continue;
+        }
+        int slot = find(key, 0, key.length);
+        if (keys[slot] == null) {
+          keys[slot] = key;
+          size++;
+        }
+        counts[slot] += other.counts[i];
+        sums[slot] += other.sums[i];
+        if (size * 2 > keys.length) {
+          grow();
+        }
+      }
+    }
+
+    Map<String, GroupStats> toMap() {
+      Map<String, GroupStats> map = new TreeMap<>();
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] != null) {
+          String group = new String(keys[i], StandardCharsets.UTF_8);
+          map.put(group, new GroupStats(group, counts[i], sums[i]));
+        }
+      }
+      return map;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    String csvFile = (args.length > 0 && !args[0].startsWith("--")) ? args[0] : "transactions.csv";
+    boolean compare = Arrays.asList(args).contains("--compare");
+
+    long startTime = System.nanoTime();
+    Result result = aggregate(csvFile);
+    long streamingTime = System.nanoTime() - startTime;
+    System.out.printf("串流彙總 %s: %d 筆 (略過 %d 筆)，%.1f ms\n\n", csvFile, result.rows(),
+        result.skippedRows(), streamingTime / 1e6);
+
+    printGroups("物品名稱", result.byItem());
+    System.out.println();
+    printGroups("月份", result.byMonth());
+
+    if (compare) {
+      // 對照組：先載入完整列表再用 Stream 分組
+      startTime = System.nanoTime();
+      List<Transaction> transactions = MappedTransactionLoader.load(csvFile);
+      Map<String, Long> itemCents = transactions.stream().collect(Collectors.groupingBy(
+          Transaction::itemName, Collectors.summingLong(t -> TransactionColumns.toCents(t.price()))));
+      Map<String, Long> monthCounts = transactions.stream().collect(Collectors.groupingBy(
+          t -> t.date().substring(0, Math.min(MONTH_BYTES, t.date().length())), Collectors.counting()));
+      long listTime = System.nanoTime() - startTime;
+
+      boolean same = itemCents.size() == result.byItem().size() && monthCounts.size() == result.byMonth().size();
+      for (GroupStats stats : result.byItem().values()) {
+        same &= itemCents.getOrDefault(stats.group(), -1L) == stats.sumCents();
+      }
+      for (GroupStats stats : result.byMonth().values()) {
+        same &= monthCounts.getOrDefault(stats.group(), -1L) == stats.count();
+      }
+      System.out.printf("\n載入 List<Transaction> 後分組: %.1f ms (串流快 %.2f 倍)，結果%s\n",
+          listTime / 1e6, listTime / (double) streamingTime, same ? "一致" : "不一致");
+    }
+  }
+
+  private static void printGroups(String title, Map<String, GroupStats> groups) {
+    System.out.println("+----------------------------------+------------+------------------+------------+");
+    System.out.printf("| %-32s | 筆數       | 總金額           | 平均價格   |\n", title);
+    System.out.println("+----------------------------------+------------+------------------+------------+");
+    for (GroupStats stats : groups.values()) {
+      System.out.printf("| %-32s | %-10d | %-16.2f | %-10.2f |\n",
+          stats.group(), stats.count(), stats.totalPrice(), stats.averagePrice());
+    }
+    System.out.println("+----------------------------------+------------+------------------+------------+");
+  }
+}
@@ -0,0 +1,7 @@
+// 使用 Java Record 來簡潔地定義一個不可變的資料物件
+record Transaction(String key, String date, String customerId, String itemName, double price) implements Comparable<Transaction> {
+  @Override
+  public int compareTo(Transaction other) {
+    return this.key.compareTo(other.key);
+  }
+}
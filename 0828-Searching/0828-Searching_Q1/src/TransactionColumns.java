@@ -0,0 +1,433 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以欄位陣列 (struct-of-arrays) 儲存交易資料，取代 List&lt;Transaction&gt; 的物件圖。
+ * 交易代碼壓成 long、日期存成 epoch day、客戶代碼存成 int、
+ * 物品名稱以字典編碼成 byte、價格以「分」為單位存成 int。
+ */
+public class TransactionColumns {
+
+  static final String KEY_PREFIX = "TX-";
+  static final String SYMBOLS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+  static final int KEY_SYMBOLS = 10;
+  static final String CUSTOMER_PREFIX = "CUST-";
+  static final int CUSTOMER_DIGITS = 8;
+  // 無法編碼的交易代碼；合法的壓縮值一定是非負數
+  static final long INVALID_KEY = -1L;
+  static final int INVALID_CUSTOMER = -1;
+  static final int MAX_ITEM_NAMES = 256;
+
+  // 36^5，packKey 把前半段乘上它再加上後半段
+  private static final long HALF_KEY_RADIX = 60_466_176L;
+  private static final byte[] SYMBOL_VALUES = new byte[128];
+
+  static {
+    Arrays.fill(SYMBOL_VALUES, (byte) -1);
+    for (int i = 0; i < SYMBOLS.length(); i++) {
+      SYMBOL_VALUES[SYMBOLS.charAt(i)] = (byte) i;
+    }
+  }
+
+  private final long[] keys;
+  private final int[] epochDays;
+  private final int[] customerIds;
+  private final byte[] itemCodes;
+  private final String[] itemDictionary;
+  private final int[] priceCents;
+
+  TransactionColumns(long[] keys, int[] epochDays, int[] customerIds, byte[] itemCodes,
+                     String[] itemDictionary, int[] priceCents) {
+    this.keys = keys;
+    this.epochDays = epochDays;
+    this.customerIds = customerIds;
+    this.itemCodes = itemCodes;
+    this.itemDictionary = itemDictionary;
+    this.priceCents = priceCents;
+  }
+
+  /**
+   * 由物件列表建立欄位式儲存，列的順序不變
+   * @throws IllegalArgumentException 交易代碼或客戶代碼不符合固定格式，或物品名稱超過 256 種
+   */
+  public static TransactionColumns from(List<Transaction> rows) {
+    int n = rows.size();
+    long[] keys = new long[n];
+    int[] epochDays = new int[n];
+    int[] customerIds = new int[n];
+    byte[] itemCodes = new byte[n];
+    int[] priceCents = new int[n];
+    Map<String, Integer> dictionary = new LinkedHashMap<>();
+
+    for (int i = 0; i < n; i++) {
+      Transaction t = rows.get(i);
+      keys[i] = packKey(t.key());
+      if (keys[i] == INVALID_KEY) {
+        throw new IllegalArgumentException("交易代碼格式錯誤: " + t.key());
+      }
+      customerIds[i] = packCustomerId(t.customerId());
+      if (customerIds[i] == INVALID_CUSTOMER) {
+        throw new IllegalArgumentException("客戶代碼格式錯誤: " + t.customerId());
+      }
+      epochDays[i] = packDate(t.date());
+      Integer code = dictionary.get(t.itemName());
+      if (code == null) {
+        if (dictionary.size() == MAX_ITEM_NAMES) {
+          throw new IllegalArgumentException("物品名稱超過 " + MAX_ITEM_NAMES + " 種，無法以 byte 編碼");
+        }
+        code = dictionary.size();
+        dictionary.put(t.itemName(), code);
+      }
+      itemCodes[i] = (byte) (int) code;
+      priceCents[i] = toCents(t.price());
+    }
+    return new TransactionColumns(keys, epochDays, customerIds, itemCodes,
+        dictionary.keySet().toArray(new String[0]), priceCents);
+  }
+
+  /**
+   * 回傳依交易代碼排序的新儲存；壓縮值的大小順序與字串的 compareTo 順序一致
+   * 整欄排序 (這裡與 TransactionIndexFile 的建立) 使用平行基數排序；
+   * sortByKey 只用在查詢批次與 IncrementalKeyIndex 記憶表這類小陣列
+   */
+  public TransactionColumns sortedByKey() {
+    int n = size();
+    long[] sortedKeys = keys.clone();
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    ParallelRadixSort.sortByKey(sortedKeys, order);
+    return permute(sortedKeys, order);
+  }
+
+  /**
+   * 依 order 重新排列其餘欄位；sortedKeys 必須已是 keys 依 order 排列後的結果
+   */
+  TransactionColumns permute(long[] sortedKeys, int[] order) {
+    int n = order.length;
+    int[] days = new int[n];
+    int[] customers = new int[n];
+    byte[] items = new byte[n];
+    int[] cents = new int[n];
+    for (int i = 0; i < n; i++) {
+      int row = order[i];
+      days[i] = epochDays[row];
+      customers[i] = customerIds[row];
+      items[i] = itemCodes[row];
+      cents[i] = priceCents[row];
+    }
+    return new TransactionColumns(sortedKeys, days, customers, items, itemDictionary, cents);
+  }
+
+  public int size() {
+    return keys.length;
+  }
+
+  /**
+   * 還原成 Transaction；價格由「分」換回 double
+   */
+  public Transaction get(int row) {
+    return new Transaction(
+        unpackKey(keys[row]),
+        unpackDate(epochDays[row]),
+        unpackCustomerId(customerIds[row]),
+        itemName(row),
+        priceCents[row] / 100.0
+    );
+  }
+
+  public String itemName(int row) {
+    return itemDictionary[itemCodes[row] & 0xFF];
+  }
+
+  // 以下直接回傳內部陣列供搜尋演算法走訪，呼叫端不可修改
+  long[] keys() { return keys; }
+  int[] epochDays() { return epochDays; }
+  int[] customerIds() { return customerIds; }
+  byte[] itemCodes() { return itemCodes; }
+  String[] itemDictionary() { return itemDictionary; }
+  int[] priceCents() { return priceCents; }
+
+  /**
+   * 各欄位陣列實際佔用的位元組數
+   */
+  public long estimatedBytes() {
+    long bytes = MemoryEstimator.arrayBytes(keys.length, Long.BYTES)
+        + MemoryEstimator.arrayBytes(epochDays.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(customerIds.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(itemCodes.length, Byte.BYTES)
+        + MemoryEstimator.arrayBytes(priceCents.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(itemDictionary.length, MemoryEstimator.REFERENCE_BYTES);
+    for (String name : itemDictionary) {
+      bytes += MemoryEstimator.stringBytes(name);
+    }
+    return bytes;
+  }
+
+  // --- 編碼與解碼 ---
+
+  /**
+   * 將 "TX-" + 10 個 base-36 字元壓成 long (36^10 &lt; 2^52)
+   * 數字對應 0-9、字母對應 10-35，與 ASCII 順序相同，所以排序結果與字串一致
+   * 前後各 5 個字元分開累積成 int，縮短乘法的相依鏈
+   * @return 壓縮值；格式不符時回傳 INVALID_KEY
+   */
+  static long packKey(String key) {
+    if (key == null || key.length() != KEY_PREFIX.length() + KEY_SYMBOLS || !key.startsWith(KEY_PREFIX)) {
+      return INVALID_KEY;
+    }
+    int high = 0;
+    int low = 0;
+    int invalid = 0;
+    for (int i = 0; i < KEY_SYMBOLS / 2; i++) {
+      int h = symbolValue(key.charAt(KEY_PREFIX.length() + i));
+      int l = symbolValue(key.charAt(KEY_PREFIX.length() + KEY_SYMBOLS / 2 + i));
+      invalid |= h | l;
+      high = high * 36 + h;
+      low = low * 36 + l;
+    }
+    return invalid < 0 ? INVALID_KEY : high * HALF_KEY_RADIX + low;
+  }
+
+  /**
+   * 與 packKey(String) 相同，但直接讀取 UTF-8 / ASCII 位元組，不建立 String
+   */
+  static long packKey(ByteBuffer bytes, int offset, int length) {
+    if (length != KEY_PREFIX.length() + KEY_SYMBOLS
+        || bytes.get(offset) != 'T' || bytes.get(offset + 1) != 'X' || bytes.get(offset + 2) != '-') {
+      return INVALID_KEY;
+    }
+    int high = 0;
+    int low = 0;
+    int invalid = 0;
+    int base = offset + KEY_PREFIX.length();
+    for (int i = 0; i < KEY_SYMBOLS / 2; i++) {
+      int h = symbolValue((char) (bytes.get(base + i) & 0xFF));
+      int l = symbolValue((char) (bytes.get(base + KEY_SYMBOLS / 2 + i) & 0xFF));
+      invalid |= h | l;
+      high = high * 36 + h;
+      low = low * 36 + l;
+    }
+    return invalid < 0 ? INVALID_KEY : high * HALF_KEY_RADIX + low;
+  }
+
+  static String unpackKey(long packed) {
+    char[] chars = new char[KEY_PREFIX.length() + KEY_SYMBOLS];
+    KEY_PREFIX.getChars(0, KEY_PREFIX.length(), chars, 0);
+    for (int i = chars.length - 1; i >= KEY_PREFIX.length(); i--) {
+      chars[i] = SYMBOLS.charAt((int) (packed % 36));
+      packed /= 36;
+    }
+    return new String(chars);
+  }
+
+  /**
+   * 只接受 0-9 與大寫 A-Z，回傳 0-35；其他字元回傳 -1
+   */
+  static int symbolValue(char c) {
+    return c < SYMBOL_VALUES.length ? SYMBOL_VALUES[c] : -1;
+  }
+
+  /**
+   * 將 "CUST-" + 8 位數字轉成 int；格式不符時回傳 INVALID_CUSTOMER
+   */
+  static int packCustomerId(String customerId) {
+    if (customerId == null || customerId.length() != CUSTOMER_PREFIX.length() + CUSTOMER_DIGITS
+        || !customerId.startsWith(CUSTOMER_PREFIX)) {
+      return INVALID_CUSTOMER;
+    }
+    int value = 0;
+    for (int i = CUSTOMER_PREFIX.length(); i < customerId.length(); i++) {
+      char c = customerId.charAt(i);
+      if (c < '0' || c > '9') {
+        return INVALID_CUSTOMER;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  /**
+   * 與 packCustomerId(String) 相同，但直接讀取位元組，不建立 String
+   */
+  static int packCustomerId(ByteBuffer bytes, int offset, int length) {
+    if (length != CUSTOMER_PREFIX.length() + CUSTOMER_DIGITS) {
+      return INVALID_CUSTOMER;
+    }
+    for (int i = 0; i < CUSTOMER_PREFIX.length(); i++) {
+      if (bytes.get(offset + i) != CUSTOMER_PREFIX.charAt(i)) {
+        return INVALID_CUSTOMER;
+      }
+    }
+    int value = 0;
+    for (int i = CUSTOMER_PREFIX.length(); i < length; i++) {
+      int digit = bytes.get(offset + i) - '0';
+      if (digit < 0 || digit > 9) {
+        return INVALID_CUSTOMER;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  static String unpackCustomerId(int value) {
+    return String.format("%s%08d", CUSTOMER_PREFIX, value);
+  }
+
+  /**
+   * 將 yyyy-MM-dd 轉成 epoch day
+   */
+  static int packDate(String date) {
+    return (int) LocalDate.parse(date).toEpochDay();
+  }
+
+  /**
+   * 直接從位元組解析 yyyy-MM-dd；其他寫法交給 LocalDate.parse，不合法的日期同樣拋出 DateTimeException
+   */
+  static int packDate(ByteBuffer bytes, int offset, int length) {
+    if (length == 10 && bytes.get(offset + 4) == '-' && bytes.get(offset + 7) == '-') {
+      int year = digits(bytes, offset, 4);
+      int month = digits(bytes, offset + 5, 2);
+      int day = digits(bytes, offset + 8, 2);
+      if ((year | month | day) >= 0) {
+        return (int) LocalDate.of(year, month, day).toEpochDay();
+      }
+    }
+    byte[] text = new byte[length];
+    bytes.get(offset, text, 0, length);
+    return packDate(new String(text, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * 讀取 count 位十進位數字；遇到非數字時回傳 -1
+   */
+  private static int digits(ByteBuffer bytes, int offset, int count) {
+    int value = 0;
+    for (int i = 0; i < count; i++) {
+      int digit = bytes.get(offset + i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  static String unpackDate(int epochDay) {
+    return LocalDate.ofEpochDay(epochDay).toString();
+  }
+
+  /**
+   * 價格轉成分，規則與 packCents 相同
+   * @throws IllegalArgumentException 不是有限數字，或換成分後超出 int 範圍
+   */
+  static int toCents(double price) {
+    long cents = Math.round(price * 100);
+    if (!Double.isFinite(price) || cents < Integer.MIN_VALUE || cents > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("價格超出範圍: " + price);
+    }
+    return (int) cents;
+  }
+
+  /**
+   * 價格轉成分；常見的 "digits.dd" 直接計算，其他格式以 Double.parseDouble 解析後四捨五入 (與 toCents 相同)
+   * @throws NumberFormatException 不是數字，或是 NaN、Infinity 這類非有限值
+   */
+  static long parseCents(byte[] bytes, int from, int to) {
+    int dot = to - 3;
+    if (dot > from && bytes[dot] == '.') {
+      long whole = 0;
+      boolean plain = true;
+      for (int i = from; i < dot && plain; i++) {
+        int digit = bytes[i] - '0';
+        plain = digit >= 0 && digit <= 9;
+        whole = whole * 10 + digit;
+      }
+      int tens = bytes[dot + 1] - '0';
+      int ones = bytes[dot + 2] - '0';
+      if (plain && dot - from <= 15 && tens >= 0 && tens <= 9 && ones >= 0 && ones <= 9) {
+        return whole * 100 + tens * 10 + ones;
+      }
+    }
+    String text = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    double price = Double.parseDouble(text);
+    if (!Double.isFinite(price)) {
+      throw new NumberFormatException("價格不是有限數字: " + text);
+    }
+    return Math.round(price * 100);
+  }
+
+  /**
+   * 與 parseCents 相同，但結果必須放得進 int 價格欄位
+   * @throws IllegalArgumentException 換成分後超出 int 範圍
+   */
+  static int packCents(byte[] bytes, int from, int to) {
+    long cents = parseCents(bytes, from, to);
+    if (cents < Integer.MIN_VALUE || cents > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("價格超出範圍: " + new String(bytes, from, to - from, StandardCharsets.UTF_8));
+    }
+    return (int) cents;
+  }
+
+  /**
+   * 依 keys 由小到大排序，並讓 rows 跟著一起移動 (快速排序 + 插入排序)
+   */
+  static void sortByKey(long[] keys, int[] rows) {
+    quickSort(keys, rows, 0, keys.length - 1);
+  }
+
+  private static void quickSort(long[] keys, int[] rows, int lo, int hi) {
+    while (hi - lo > 16) {
+      int mid = (lo + hi) >>> 1;
+      // 三數取中當作樞紐，避免已排序資料退化成 O(n^2)
+      if (keys[mid] < keys[lo]) swap(keys, rows, mid, lo);
+      if (keys[hi] < keys[lo]) swap(keys, rows, hi, lo);
+      if (keys[hi] < keys[mid]) swap(keys, rows, hi, mid);
+      long pivot = keys[mid];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (keys[i] < pivot) i++;
+        while (keys[j] > pivot) j--;
+        if (i <= j) {
+          swap(keys, rows, i++, j--);
+        }
+      }
+      // 先遞迴較小的一半，遞迴深度維持 O(log n)
+      if (j - lo < hi - i) {
+        quickSort(keys, rows, lo, j);
+        lo = i;
+      } else {
+        quickSort(keys, rows, i, hi);
+        hi = j;
+      }
+    }
+    for (int i = lo + 1; i <= hi; i++) {
+      long key = keys[i];
+      int row = rows[i];
+      int j = i - 1;
+      while (j >= lo && keys[j] > key) {
+        keys[j + 1] = keys[j];
+        rows[j + 1] = rows[j];
+        j--;
+      }
+      keys[j + 1] = key;
+      rows[j + 1] = row;
+    }
+  }
+
+  private static void swap(long[] keys, int[] rows, int a, int b) {
+    long k = keys[a];
+    keys[a] = keys[b];
+    keys[b] = k;
+    int r = rows[a];
+    rows[a] = rows[b];
+    rows[b] = r;
+  }
+}
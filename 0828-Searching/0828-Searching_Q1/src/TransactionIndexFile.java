@@ -0,0 +1,399 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 存放在 transactions.csv 旁邊的二進位排序索引 (transactions.csv.idx)。
+ * 檔案內容為排序後的壓縮鍵與每一列在 CSV 中的位元組位移，只需建立一次；
+ * 之後啟動時直接記憶體映射，並以 CSV 的大小與修改時間判斷是否過期。
+ *
+ * 檔案格式 (big-endian):
+ *   0  int  MAGIC            4  int  VERSION
+ *   8  long CSV 大小          16 long CSV 修改時間 (毫秒)
+ *   24 long 筆數 n           32..63 保留
+ *   64 long[n] 排序後的壓縮鍵，接著 long[n] 對應的列位移
+ */
+public class TransactionIndexFile {
+
+  static final String SUFFIX = ".idx";
+  private static final int MAGIC = 0x54584944; // "TXID"
+  private static final int VERSION = 1;
+  static final int HEADER_BYTES = 64;
+  private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+  private final Path csvPath;
+  private final long csvSize;
+  private final long csvModified;
+  private final int size;
+  private final LongBuffer keys;
+  private final LongBuffer offsets;
+  private final boolean rebuilt;
+
+  private TransactionIndexFile(Path csvPath, long csvSize, long csvModified, int size,
+                               LongBuffer keys, LongBuffer offsets, boolean rebuilt) {
+    this.csvPath = csvPath;
+    this.csvSize = csvSize;
+    this.csvModified = csvModified;
+    this.size = size;
+    this.keys = keys;
+    this.offsets = offsets;
+    this.rebuilt = rebuilt;
+  }
+
+  public static Path indexPathFor(Path csvPath) {
+    return csvPath.resolveSibling(csvPath.getFileName() + SUFFIX);
+  }
+
+  /**
+   * 索引存在且未過期時直接映射，否則重新建立
+   */
+  public static TransactionIndexFile openOrBuild(Path csvPath) throws IOException {
+    TransactionIndexFile index = open(csvPath);
+    return (index != null) ? index : build(csvPath);
+  }
+
+  /**
+   * 映射既有的索引檔
+   * @return 索引；檔案不存在、格式不符或已過期時回傳 null
+   */
+  public static TransactionIndexFile open(Path csvPath) throws IOException {
+    Path indexPath = indexPathFor(csvPath);
+    if (!Files.exists(indexPath) || !Files.exists(csvPath)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES) {
+        return null;
+      }
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      channel.read(header, 0);
+      header.flip();
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        return null;
+      }
+      long csvSize = header.getLong();
+      long csvModified = header.getLong();
+      long count = header.getLong();
+      if (csvSize != Files.size(csvPath) || csvModified != Files.getLastModifiedTime(csvPath).toMillis()
+          || channel.size() != HEADER_BYTES + count * 2 * Long.BYTES) {
+        return null;
+      }
+      return map(channel, csvPath, csvSize, csvModified, (int) count, false);
+    }
+  }
+
+  /**
+   * 給只會在檔尾附加資料的 CSV 使用：CSV 比建立索引時更大也照樣映射，
+   * 索引涵蓋 [0, indexedBytes())，之後附加的部分由呼叫端自行處理
+   * @return 索引；檔案不存在、格式不符、CSV 變小或索引結尾不在行尾時回傳 null
+   */
+  public static TransactionIndexFile openForAppend(Path csvPath) throws IOException {
+    Path indexPath = indexPathFor(csvPath);
+    if (!Files.exists(indexPath) || !Files.exists(csvPath)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ);
+         FileChannel csv = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES) {
+        return null;
+      }
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      channel.read(header, 0);
+      header.flip();
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        return null;
+      }
+      long csvSize = header.getLong();
+      long csvModified = header.getLong();
+      long count = header.getLong();
+      if (csvSize > csv.size() || channel.size() != HEADER_BYTES + count * 2 * Long.BYTES) {
+        return null;
+      }
+      // 檔案只被附加時，原本的最後一個位元組仍是換行
+      ByteBuffer last = ByteBuffer.allocate(1);
+      if (csvSize > 0 && (csv.read(last, csvSize - 1) != 1 || last.get(0) != '\n')) {
+        return null;
+      }
+      return map(channel, csvPath, csvSize, csvModified, (int) count, false);
+    }
+  }
+
+  /**
+   * 掃描 CSV 建立索引檔並映射；先寫到暫存檔再改名，中途失敗不會留下半個索引
+   */
+  public static TransactionIndexFile build(Path csvPath) throws IOException {
+    long csvSize = Files.size(csvPath);
+    long csvModified = Files.getLastModifiedTime(csvPath).toMillis();
+    long[] sortedKeys;
+    long[] sortedOffsets;
+    try (FileChannel channel = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+      long dataStart = MappedTransactionLoader.skipHeader(channel);
+      ForkJoinPool pool = ForkJoinPool.commonPool();
+      long[] bounds = MappedTransactionLoader.splitChunks(channel, dataStart, pool.getParallelism() * 4);
+      List<KeyScanTask> tasks = new ArrayList<>();
+      for (int i = 0; i < bounds.length - 1; i++) {
+        tasks.add(new KeyScanTask(channel, bounds[i], bounds[i + 1]));
+      }
+      pool.invoke(new RecursiveTask<Void>() {
+        @Override
+        protected Void compute() {
+          ForkJoinTask.invokeAll(tasks);
+          return null;
+        }
+      });
+
+      int total = 0;
+      for (KeyScanTask task : tasks) {
+        total += task.count;
+      }
+      long[] allKeys = new long[total];
+      long[] allOffsets = new long[total];
+      int position = 0;
+      for (KeyScanTask task : tasks) {
+        System.arraycopy(task.keys, 0, allKeys, position, task.count);
+        System.arraycopy(task.offsets, 0, allOffsets, position, task.count);
+        position += task.count;
+      }
+      int[] order = new int[total];
+      for (int i = 0; i < total; i++) {
+        order[i] = i;
+      }
+      ParallelRadixSort.sortByKey(allKeys, order);
+      sortedKeys = allKeys;
+      sortedOffsets = new long[total];
+      for (int i = 0; i < total; i++) {
+        sortedOffsets[i] = allOffsets[order[i]];
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    Path indexPath = indexPathFor(csvPath).toAbsolutePath();
+    // 每次建立都用獨立的暫存檔，同時有兩個建立者時不會互相覆寫，最後一個改名的結果生效
+    Path tempPath = Files.createTempFile(indexPath.getParent(), indexPath.getFileName() + ".", ".tmp");
+    try {
+      try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(csvSize).putLong(csvModified).putLong(sortedKeys.length);
+        buffer.position(HEADER_BYTES);
+        writeLongs(out, buffer, sortedKeys);
+        writeLongs(out, buffer, sortedOffsets);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          out.write(buffer);
+        }
+      }
+      try {
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tempPath);
+    }
+
+    try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+      return map(channel, csvPath, csvSize, csvModified, sortedKeys.length, true);
+    }
+  }
+
+  private static void writeLongs(FileChannel out, ByteBuffer buffer, long[] values) throws IOException {
+    for (long value : values) {
+      if (buffer.remaining() < Long.BYTES) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          out.write(buffer);
+        }
+        buffer.clear();
+      }
+      buffer.putLong(value);
+    }
+  }
+
+  private static TransactionIndexFile map(FileChannel channel, Path csvPath, long csvSize, long csvModified,
+                                          int count, boolean rebuilt) throws IOException {
+    long columnBytes = (long) count * Long.BYTES;
+    // 鍵與位移各自映射，每段上限 2GB (約 2.68 億筆)
+    MappedByteBuffer keyRegion = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, columnBytes);
+    MappedByteBuffer offsetRegion = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + columnBytes, columnBytes);
+    return new TransactionIndexFile(csvPath, csvSize, csvModified, count,
+        keyRegion.asLongBuffer(), offsetRegion.asLongBuffer(), rebuilt);
+  }
+
+  // --- 查詢 ---
+
+  public int size() {
+    return size;
+  }
+
+  public long keyAt(int position) {
+    return keys.get(position);
+  }
+
+  public long offsetAt(int position) {
+    return offsets.get(position);
+  }
+
+  /**
+   * 在映射的鍵欄位上做二分搜尋
+   * @return 鍵在索引中的位置；找不到時回傳 -1
+   */
+  public int indexOf(long packed) {
+    int lo = 0;
+    int hi = size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      long value = keys.get(mid);
+      if (value < packed) {
+        lo = mid + 1;
+      } else if (value > packed) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  public boolean contains(String key) {
+    long packed = TransactionColumns.packKey(key);
+    return packed != TransactionColumns.INVALID_KEY && indexOf(packed) >= 0;
+  }
+
+  /**
+   * @return 該交易在 CSV 中的位元組位移；找不到時回傳 -1
+   */
+  public long offsetOf(String key) {
+    long packed = TransactionColumns.packKey(key);
+    int position = (packed == TransactionColumns.INVALID_KEY) ? -1 : indexOf(packed);
+    return (position < 0) ? -1 : offsets.get(position);
+  }
+
+  /**
+   * 依位移直接讀取 CSV 中的那一列
+   * @return 交易；找不到時回傳 null
+   */
+  public Transaction read(String key) throws IOException {
+    long offset = offsetOf(key);
+    if (offset < 0) {
+      return null;
+    }
+    return readLineAt(csvPath, offset);
+  }
+
+  /**
+   * 讀取並解析 CSV 中從 offset 開始的那一列
+   * @return 交易；欄位數不是五個時回傳 null
+   */
+  static Transaction readLineAt(Path csvPath, long offset) throws IOException {
+    try (FileChannel channel = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+      long end = MappedTransactionLoader.nextLineStart(channel, offset);
+      ByteBuffer line = ByteBuffer.allocate((int) (end - offset));
+      channel.read(line, offset);
+      int length = line.position();
+      while (length > 0 && (line.get(length - 1) == '\n' || line.get(length - 1) == '\r')) {
+        length--;
+      }
+      return MappedTransactionLoader.parseLine(line, 0, length);
+    }
+  }
+
+  /**
+   * 索引涵蓋的 CSV 位元組數 (建立索引時的檔案大小)
+   */
+  public long indexedBytes() {
+    return csvSize;
+  }
+
+  /**
+   * CSV 在索引建立後是否又被修改
+   */
+  public boolean isStale() throws IOException {
+    return !Files.exists(csvPath) || Files.size(csvPath) != csvSize
+        || Files.getLastModifiedTime(csvPath).toMillis() != csvModified;
+  }
+
+  /**
+   * 這次是重新建立 (true) 還是直接映射既有檔案 (false)
+   */
+  public boolean wasRebuilt() {
+    return rebuilt;
+  }
+
+  /**
+   * 掃描一個區塊，只取出每列的 KEY 與列起點位移
+   */
+  private static class KeyScanTask extends RecursiveTask<Void> {
+    private static final long serialVersionUID = 1L;
+
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+    private long[] keys = new long[1024];
+    private long[] offsets = new long[1024];
+    private int count;
+
+    KeyScanTask(FileChannel channel, long start, long end) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected Void compute() {
+      MappedByteBuffer buffer;
+      try {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      int[] commas = new int[4];
+      int limit = buffer.limit();
+      int pos = 0;
+      while (pos < limit) {
+        int lineEnd = pos;
+        while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+          lineEnd++;
+        }
+        int contentEnd = lineEnd;
+        if (contentEnd > pos && buffer.get(contentEnd - 1) == '\r') {
+          contentEnd--;
+        }
+        // 與載入器用同一個欄位規則，磁碟索引與記憶體中的結構才會收錄相同的列
+        if (MappedTransactionLoader.rowFieldsEnd(buffer, pos, contentEnd, commas) >= 0) {
+          long packed = TransactionColumns.packKey(buffer, pos, commas[0] - pos);
+          if (packed != TransactionColumns.INVALID_KEY) {
+            add(packed, start + pos);
+          }
+        }
+        pos = lineEnd + 1;
+      }
+      return null;
+    }
+
+    private void add(long key, long offset) {
+      if (count == keys.length) {
+        keys = Arrays.copyOf(keys, count * 2);
+        offsets = Arrays.copyOf(offsets, count * 2);
+      }
+      keys[count] = key;
+      offsets[count] = offset;
+      count++;
+    }
+  }
+}
@@ -0,0 +1,472 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 在 TransactionColumns 上做篩選 / 投影 / 彙總的小型查詢引擎，取代手寫的逐筆迴圈。
+ * 資料每 1024 列一批：批次先放進選擇向量 (符合條件的列序號)，每個條件只讀自己的欄位，
+ * 把選擇向量原地壓縮成仍符合的列；全部條件走完後才對剩下的列做投影或累加。
+ * 批次依 ForkJoin 切給多個執行緒，部分結果依列順序兩兩合併。
+ * 條件也可以透過 load 下推到 MappedTransactionLoader，解析 CSV 時就丟掉不符合的列。
+ *
+ * 例: 2024 年、價格高於 3000 的黃金期貨交易
+ *   TransactionQuery.over(columns)
+ *       .where(TransactionQuery.itemIs("黃金期貨 (Gold)"))
+ *       .where(TransactionQuery.priceAbove(300_000))
+ *       .where(TransactionQuery.inYear(2024))
+ *       .summarize();
+ */
+public class TransactionQuery {
+
+  static final int BATCH_SIZE = 1024;
+  // 每個 ForkJoin 葉節點處理的批次數，讓工作切割的成本遠小於掃描本身
+  private static final int BATCHES_PER_TASK = 16;
+
+  public enum Column { KEY, DATE, CUSTOMER, ITEM, PRICE }
+
+  /**
+   * 篩選條件；批次評估與逐列評估的結果必須相同
+   */
+  public interface Condition {
+    /**
+     * 綁定到欄位陣列，回傳在選擇向量上評估的批次篩選器
+     */
+    BatchFilter bind(TransactionColumns columns);
+
+    /**
+     * 逐列評估，供載入時下推使用
+     */
+    boolean test(int epochDay, int customerId, String itemName, int priceCents);
+  }
+
+  @FunctionalInterface
+  interface BatchFilter {
+    /**
+     * 只保留 selection[0, count) 中符合的列 (維持原本的順序)
+     * @return 保留的列數
+     */
+    int refine(int[] selection, int count);
+  }
+
+  /**
+   * 符合條件的列的統計；金額以分為單位
+   */
+  public record Summary(long count, long sumCents, int minCents, int maxCents) {
+    public double averagePrice() {
+      return (count == 0) ? 0 : sumCents / 100.0 / count;
+    }
+  }
+
+  private final TransactionColumns columns;
+  private final List<Condition> conditions = new ArrayList<>();
+  private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+  private TransactionQuery(TransactionColumns columns) {
+    this.columns = columns;
+  }
+
+  public static TransactionQuery over(TransactionColumns columns) {
+    return new TransactionQuery(columns);
+  }
+
+  public static TransactionQuery load(String filePath, Condition... conditions) throws IOException {
+    return load(filePath, ForkJoinPool.commonPool(), conditions);
+  }
+
+  /**
+   * 讀取 CSV 時就以條件篩選，只有符合的列會被轉成欄位；回傳的查詢不再帶有這些條件
+   */
+  public static TransactionQuery load(String filePath, ForkJoinPool pool, Condition... conditions)
+      throws IOException {
+    List<Condition> pushed = List.of(conditions);
+    MappedTransactionLoader.RowFilter filter = (epochDay, customerId, itemName, priceCents) -> {
+      for (Condition condition : pushed) {
+        if (!condition.test(epochDay, customerId, itemName, priceCents)) {
+          return false;
+        }
+      }
+      return true;
+    };
+    return over(MappedTransactionLoader.loadColumns(filePath, pool, filter)).withPool(pool);
+  }
+
+  /**
+   * 加上一個條件 (AND)；條件依加入的順序評估，選擇率低的放前面可以少讀其他欄位
+   */
+  public TransactionQuery where(Condition condition) {
+    conditions.add(condition);
+    return this;
+  }
+
+  public TransactionQuery withPool(ForkJoinPool pool) {
+    this.pool = pool;
+    return this;
+  }
+
+  /**
+   * 查詢的資料來源；load 下推後為已篩選過的欄位
+   */
+  public TransactionColumns columns() {
+    return columns;
+  }
+
+  // --- 條件 ---
+
+  public static Condition itemIs(String... itemNames) {
+    return new ItemIn(Set.of(itemNames));
+  }
+
+  /**
+   * 價格介於兩者之間 (分，兩端皆含)
+   */
+  public static Condition priceBetween(int minCents, int maxCents) {
+    return new PriceRange(minCents, maxCents);
+  }
+
+  /**
+   * 價格大於 cents (不含)
+   */
+  public static Condition priceAbove(int cents) {
+    return (cents == Integer.MAX_VALUE) ? new PriceRange(1, 0) : new PriceRange(cents + 1, Integer.MAX_VALUE);
+  }
+
+  /**
+   * 日期介於兩者之間 (兩端皆含)
+   */
+  public static Condition dateBetween(LocalDate from, LocalDate to) {
+    return new DateRange((int) from.toEpochDay(), (int) to.toEpochDay());
+  }
+
+  public static Condition inYear(int year) {
+    return dateBetween(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+  }
+
+  public static Condition customerIs(String customerId) {
+    return new CustomerIs(TransactionColumns.packCustomerId(customerId));
+  }
+
+  /**
+   * 物品名稱屬於集合；批次評估時換成以字典代碼查表
+   */
+  private record ItemIn(Set<String> itemNames) implements Condition {
+    @Override
+    public BatchFilter bind(TransactionColumns columns) {
+      byte[] items = columns.itemCodes();
+      String[] dictionary = columns.itemDictionary();
+      boolean[] wanted = new boolean[TransactionColumns.MAX_ITEM_NAMES];
+      boolean any = false;
+      for (int code = 0; code < dictionary.length; code++) {
+        wanted[code] = itemNames.contains(dictionary[code]);
+        any |= wanted[code];
+      }
+      if (!any) {
+        return (selection, count) -> 0;
+      }
+      return (selection, count) -> {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+          int row = selection[i];
+          selection[kept] = row;
+          kept += wanted[items[row] & 0xFF] ? 1 : 0;
+        }
+        return kept;
+      };
+    }
+
+    @Override
+    public boolean test(int epochDay, int customerId, String itemName, int priceCents) {
+      return itemNames.contains(itemName);
+    }
+  }
+
+  private record PriceRange(int minCents, int maxCents) implements Condition {
+    @Override
+    public BatchFilter bind(TransactionColumns columns) {
+      int[] cents = columns.priceCents();
+      int min = minCents;
+      int max = maxCents;
+      return (selection, count) -> {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+          int row = selection[i];
+          int price = cents[row];
+          // 無論是否符合都先寫入，再以比較結果決定是否前進，迴圈內沒有資料相依的分支
+          selection[kept] = row;
+          kept += (price >= min & price <= max) ? 1 : 0;
+        }
+        return kept;
+      };
+    }
+
+    @Override
+    public boolean test(int epochDay, int customerId, String itemName, int priceCents) {
+      return priceCents >= minCents && priceCents <= maxCents;
+    }
+  }
+
+  private record DateRange(int fromDay, int toDay) implements Condition {
+    @Override
+    public BatchFilter bind(TransactionColumns columns) {
+      int[] days = columns.epochDays();
+      int from = fromDay;
+      int to = toDay;
+      return (selection, count) -> {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+          int row = selection[i];
+          int day = days[row];
+          selection[kept] = row;
+          kept += (day >= from & day <= to) ? 1 : 0;
+        }
+        return kept;
+      };
+    }
+
+    @Override
+    public boolean test(int epochDay, int customerId, String itemName, int priceCents) {
+      return epochDay >= fromDay && epochDay <= toDay;
+    }
+  }
+
+  private record CustomerIs(int customerId) implements Condition {
+    @Override
+    public BatchFilter bind(TransactionColumns columns) {
+      int[] customers = columns.customerIds();
+      int target = customerId;
+      return (selection, count) -> {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+          int row = selection[i];
+          selection[kept] = row;
+          kept += (customers[row] == target) ? 1 : 0;
+        }
+        return kept;
+      };
+    }
+
+    @Override
+    public boolean test(int epochDay, int customerId, String itemName, int priceCents) {
+      return customerId == this.customerId && customerId != TransactionColumns.INVALID_CUSTOMER;
+    }
+  }
+
+  // --- 彙總與投影 ---
+
+  public long count() {
+    return execute(false, false).count;
+  }
+
+  public Summary summarize() {
+    Partial result = execute(false, false);
+    return new Summary(result.count, result.sumCents, result.minCents, result.maxCents);
+  }
+
+  /**
+   * 依物品名稱分組的筆數與金額；群組依名稱排序，沒有符合列的物品不列出
+   */
+  public Map<String, StreamingAggregator.GroupStats> groupByItem() {
+    Partial result = execute(true, false);
+    String[] dictionary = columns.itemDictionary();
+    Map<String, StreamingAggregator.GroupStats> groups = new TreeMap<>();
+    for (int code = 0; code < dictionary.length; code++) {
+      if (result.itemCounts[code] > 0) {
+        groups.put(dictionary[code],
+            new StreamingAggregator.GroupStats(dictionary[code], result.itemCounts[code], result.itemSums[code]));
+      }
+    }
+    return groups;
+  }
+
+  /**
+   * @return 符合條件的列序號，由小到大
+   */
+  public int[] rows() {
+    Partial result = execute(false, true);
+    return Arrays.copyOf(result.rows, result.rowCount);
+  }
+
+  /**
+   * 投影出前 limit 筆符合列的指定欄位，依列順序排列
+   */
+  public List<String[]> select(int limit, Column... selected) {
+    int[] rows = rows();
+    List<String[]> out = new ArrayList<>(Math.min(limit, rows.length));
+    for (int i = 0; i < rows.length && i < limit; i++) {
+      String[] values = new String[selected.length];
+      for (int c = 0; c < selected.length; c++) {
+        values[c] = value(rows[i], selected[c]);
+      }
+      out.add(values);
+    }
+    return out;
+  }
+
+  private String value(int row, Column column) {
+    return switch (column) {
+      case KEY -> TransactionColumns.unpackKey(columns.keys()[row]);
+      case DATE -> TransactionColumns.unpackDate(columns.epochDays()[row]);
+      case CUSTOMER -> TransactionColumns.unpackCustomerId(columns.customerIds()[row]);
+      case ITEM -> columns.itemName(row);
+      case PRICE -> String.format("%.2f", columns.priceCents()[row] / 100.0);
+    };
+  }
+
+  /**
+   * 把符合的列取出成新的欄位式儲存
+   */
+  public TransactionColumns toColumns() {
+    int[] rows = rows();
+    long[] keys = new long[rows.length];
+    for (int i = 0; i < rows.length; i++) {
+      keys[i] = columns.keys()[rows[i]];
+    }
+    return columns.permute(keys, rows);
+  }
+
+  private Partial execute(boolean groupItems, boolean collectRows) {
+    BatchFilter[] filters = new BatchFilter[conditions.size()];
+    for (int i = 0; i < filters.length; i++) {
+      filters[i] = conditions.get(i).bind(columns);
+    }
+    int batches = (columns.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+    return pool.invoke(new BatchTask(this, filters, groupItems, collectRows, 0, batches));
+  }
+
+  /**
+   * 負責第 from 到 to-1 個批次；超過 BATCHES_PER_TASK 就對半分開
+   */
+  private static class BatchTask extends RecursiveTask<Partial> {
+    private static final long serialVersionUID = 1L;
+
+    private final TransactionQuery query;
+    private final BatchFilter[] filters;
+    private final boolean groupItems;
+    private final boolean collectRows;
+    private final int from;
+    private final int to;
+
+    BatchTask(TransactionQuery query, BatchFilter[] filters, boolean groupItems, boolean collectRows,
+              int from, int to) {
+      this.query = query;
+      this.filters = filters;
+      this.groupItems = groupItems;
+      this.collectRows = collectRows;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Partial compute() {
+      if (to - from <= BATCHES_PER_TASK) {
+        return scan();
+      }
+      int mid = (from + to) >>> 1;
+      BatchTask left = new BatchTask(query, filters, groupItems, collectRows, from, mid);
+      left.fork();
+      Partial right = new BatchTask(query, filters, groupItems, collectRows, mid, to).compute();
+      return left.join().merge(right);
+    }
+
+    private Partial scan() {
+      TransactionColumns columns = query.columns;
+      Partial partial = new Partial(groupItems ? columns.itemDictionary().length : 0, collectRows);
+      int[] selection = new int[BATCH_SIZE];
+      int size = columns.size();
+      for (int batch = from; batch < to; batch++) {
+        int start = batch * BATCH_SIZE;
+        int end = Math.min(size, start + BATCH_SIZE);
+        int count = 0;
+        for (int row = start; row < end; row++) {
+          selection[count++] = row;
+        }
+        for (int f = 0; f < filters.length && count > 0; f++) {
+          count = filters[f].refine(selection, count);
+        }
+        partial.accumulate(columns, selection, count);
+      }
+      return partial;
+    }
+  }
+
+  /**
+   * 一段批次的部分結果
+   */
+  private static class Partial {
+    private long count;
+    private long sumCents;
+    private int minCents = Integer.MAX_VALUE;
+    private int maxCents = Integer.MIN_VALUE;
+    private final long[] itemCounts;
+    private final long[] itemSums;
+    private int[] rows;
+    private int rowCount;
+
+    Partial(int itemGroups, boolean collectRows) {
+      itemCounts = new long[itemGroups];
+      itemSums = new long[itemGroups];
+      rows = collectRows ? new int[BATCH_SIZE] : null;
+    }
+
+    void accumulate(TransactionColumns columns, int[] selection, int selected) {
+      int[] cents = columns.priceCents();
+      long sum = 0;
+      int min = minCents;
+      int max = maxCents;
+      for (int i = 0; i < selected; i++) {
+        int price = cents[selection[i]];
+        sum += price;
+        min = Math.min(min, price);
+        max = Math.max(max, price);
+      }
+      count += selected;
+      sumCents += sum;
+      minCents = min;
+      maxCents = max;
+      if (itemCounts.length > 0) {
+        byte[] items = columns.itemCodes();
+        for (int i = 0; i < selected; i++) {
+          int row = selection[i];
+          int code = items[row] & 0xFF;
+          itemCounts[code]++;
+          itemSums[code] += cents[row];
+        }
+      }
+      if (rows != null) {
+        append(selection, selected);
+      }
+    }
+
+    private void append(int[] values, int length) {
+      if (rowCount + length > rows.length) {
+        rows = Arrays.copyOf(rows, Math.max(rows.length * 2, rowCount + length));
+      }
+      System.arraycopy(values, 0, rows, rowCount, length);
+      rowCount += length;
+    }
+
+    /**
+     * other 必須是緊接在後面的批次，列序號才會維持由小到大
+     */
+    Partial merge(Partial other) {
+      count += other.count;
+      sumCents += other.sumCents;
+      minCents = Math.min(minCents, other.minCents);
+      maxCents = Math.max(maxCents, other.maxCents);
+      for (int code = 0; code < itemCounts.length; code++) {
+        itemCounts[code] += other.itemCounts[code];
+        itemSums[code] += other.itemSums[code];
+      }
+      if (rows != null) {
+        append(other.rows, other.rowCount);
+      }
+      return this;
+    }
+  }
+}
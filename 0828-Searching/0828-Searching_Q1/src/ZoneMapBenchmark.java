@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 比較日期 / 價格區間查詢在不同選擇率下的掃描時間：
+ * - 逐筆走訪 List&lt;Transaction&gt; (比較日期字串與 double 價格)
+ * - zone map，維持 CSV 的列順序 (日期隨機分布，幾乎無法略過區塊)
+ * - zone map，先依日期分群 (模擬依時間附加的交易)
+ * 用法: java ZoneMapBenchmark [transactions.csv]
+ */
+public class ZoneMapBenchmark {
+
+  private static final int REPETITIONS = 5;
+
+  /**
+   * 一個區間查詢；日期與價格兩端皆含
+   */
+  private record RangeQuery(String name, LocalDate from, LocalDate to, int minCents, int maxCents) {
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path csvPath = Path.of(args.length > 0 ? args[0] : "transactions.csv");
+    if (!Files.exists(csvPath)) {
+      System.out.println("找不到 " + csvPath + "，程式終止。");
+      return;
+    }
+    List<Transaction> transactions = MappedTransactionLoader.load(csvPath.toString());
+    TransactionColumns columns = TransactionColumns.from(transactions);
+
+    long startTime = System.nanoTime();
+    ZoneMappedColumns fileOrder = ZoneMappedColumns.build(columns, false);
+    long fileOrderBuild = System.nanoTime() - startTime;
+    startTime = System.nanoTime();
+    ZoneMappedColumns clustered = ZoneMappedColumns.build(columns, true);
+    long clusteredBuild = System.nanoTime() - startTime;
+    System.out.printf("列順序: %s，建立 %.1f ms%n", fileOrder, fileOrderBuild / 1e6);
+    System.out.printf("依日期分群: %s，建立 %.1f ms%n", clustered, clusteredBuild / 1e6);
+    verifyPrices(columns, clustered);
+
+    LocalDate first = LocalDate.ofEpochDay(min(columns.epochDays()));
+    int minPrice = min(columns.priceCents());
+    int maxPrice = max(columns.priceCents());
+    int priceSpan = maxPrice - minPrice;
+    List<RangeQuery> queries = new ArrayList<>();
+    queries.add(new RangeQuery("1 天", first.plusDays(100), first.plusDays(100), minPrice, maxPrice));
+    queries.add(new RangeQuery("7 天", first.plusDays(100), first.plusDays(106), minPrice, maxPrice));
+    queries.add(new RangeQuery("30 天", first.plusDays(100), first.plusDays(129), minPrice, maxPrice));
+    queries.add(new RangeQuery("180 天", first.plusDays(100), first.plusDays(279), minPrice, maxPrice));
+    queries.add(new RangeQuery("365 天", first.plusDays(100), first.plusDays(464), minPrice, maxPrice));
+    queries.add(new RangeQuery("價格 1%", first, first.plusYears(100), minPrice, minPrice + priceSpan / 100));
+    queries.add(new RangeQuery("價格 10%", first, first.plusYears(100), minPrice, minPrice + priceSpan / 10));
+    queries.add(new RangeQuery("價格 50%", first, first.plusYears(100), minPrice, minPrice + priceSpan / 2));
+    queries.add(new RangeQuery("7 天且價格 10%", first.plusDays(100), first.plusDays(106),
+        minPrice, minPrice + priceSpan / 10));
+
+    System.out.println();
+    System.out.println("+------------------+----------+--------------+--------------+--------------+------------+");
+    System.out.println("| 查詢             | 選擇率   | List (ms)    | 列順序 (ms)  | 日期分群(ms) | 略過區塊   |");
+    System.out.println("+------------------+----------+--------------+--------------+--------------+------------+");
+    for (RangeQuery query : queries) {
+      int expected = scanList(transactions, query);
+      long listTime = Long.MAX_VALUE;
+      long fileOrderTime = Long.MAX_VALUE;
+      long clusteredTime = Long.MAX_VALUE;
+      for (int round = 0; round < REPETITIONS; round++) {
+        startTime = System.nanoTime();
+        int listCount = scanList(transactions, query);
+        listTime = Math.min(listTime, System.nanoTime() - startTime);
+
+        startTime = System.nanoTime();
+        int fileOrderCount = fileOrder.count(query.from(), query.to(), query.minCents(), query.maxCents());
+        fileOrderTime = Math.min(fileOrderTime, System.nanoTime() - startTime);
+
+        startTime = System.nanoTime();
+        int clusteredCount = clustered.count(query.from(), query.to(), query.minCents(), query.maxCents());
+        clusteredTime = Math.min(clusteredTime, System.nanoTime() - startTime);
+        if (listCount != expected || fileOrderCount != expected || clusteredCount != expected) {
+          throw new IllegalStateException(query.name() + " 的筆數不一致: " + listCount + " / " + fileOrderCount
+              + " / " + clusteredCount);
+        }
+      }
+      if (clustered.rowsMatching(query.from(), query.to(), query.minCents(), query.maxCents()).length != expected) {
+        throw new IllegalStateException(query.name() + " 取出的列數與筆數不同");
+      }
+      int[] stats = clustered.blockStats(query.from(), query.to(), query.minCents(), query.maxCents());
+      System.out.printf("| %-16s | %-8s | %-12.2f | %-12.2f | %-12.2f | %-10s |%n", query.name(),
+          String.format("%.2f%%", expected * 100.0 / transactions.size()), listTime / 1e6, fileOrderTime / 1e6,
+          clusteredTime / 1e6,
+          String.format("%.0f%%", stats[0] * 100.0 / clustered.blockCount()));
+    }
+    System.out.println("+------------------+----------+--------------+--------------+--------------+------------+");
+    System.out.println("略過區塊為依日期分群時 zone map 直接排除、不必解碼的區塊比例");
+  }
+
+  /**
+   * 對照組：逐筆比較日期字串 (yyyy-MM-dd 的字串順序與日期順序相同) 與 double 價格
+   */
+  private static int scanList(List<Transaction> transactions, RangeQuery query) {
+    String from = query.from().toString();
+    String to = query.to().toString();
+    double minPrice = query.minCents() / 100.0;
+    double maxPrice = query.maxCents() / 100.0;
+    int count = 0;
+    for (Transaction t : transactions) {
+      if (t.date().compareTo(from) >= 0 && t.date().compareTo(to) <= 0
+          && t.price() >= minPrice && t.price() <= maxPrice) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * 位元緊密排列的價格必須能解回原本的值
+   */
+  private static void verifyPrices(TransactionColumns columns, ZoneMappedColumns zoned) {
+    for (int position = 0; position < zoned.size(); position++) {
+      if (zoned.priceCentsAt(position) != columns.priceCents()[zoned.rowAt(position)]) {
+        throw new IllegalStateException("第 " + position + " 筆價格解碼錯誤");
+      }
+    }
+  }
+
+  private static int min(int[] values) {
+    int min = Integer.MAX_VALUE;
+    for (int value : values) {
+      min = Math.min(min, value);
+    }
+    return min;
+  }
+
+  private static int max(int[] values) {
+    int max = Integer.MIN_VALUE;
+    for (int value : values) {
+      max = Math.max(max, value);
+    }
+    return max;
+  }
+}
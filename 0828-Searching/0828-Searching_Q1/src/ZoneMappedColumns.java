@@ -0,0 +1,307 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * 以固定大小的區塊存放日期與價格欄位，每個區塊記錄日期與價格的最小 / 最大值 (zone map)。
+ * 價格在區塊內存成「與區塊最小值的差」，以剛好夠用的位元數緊密排列 (bit-packing)。
+ *
+ * 日期 / 價格區間查詢先看 zone map：
+ * - 區塊的範圍與查詢沒有交集：整塊略過，不解碼
+ * - 區塊的範圍完全落在查詢內：整塊計入，也不解碼
+ * - 其他區塊才逐筆解碼價格並比對
+ * 略過多少區塊取決於資料的排列：交易依時間附加時同一區塊的日期很集中，
+ * 隨機排列時每個區塊都涵蓋整個範圍而幾乎無法略過，所以建立時可以選擇先依日期分群。
+ */
+public class ZoneMappedColumns {
+
+  static final int DEFAULT_BLOCK_SIZE = 1024;
+
+  private final int blockSize;
+  private final int size;
+  // 區塊內的第 i 筆對應原本 TransactionColumns 的第 rows[i] 列
+  private final int[] rows;
+  private final int[] epochDays;
+  private final int[] minDays;
+  private final int[] maxDays;
+  private final int[] minPrices;
+  private final int[] maxPrices;
+  private final byte[] priceBits;
+  private final int[] priceWordStarts;
+  private final long[] packedPrices;
+
+  private ZoneMappedColumns(int blockSize, int[] rows, int[] epochDays, int[] minDays, int[] maxDays,
+                            int[] minPrices, int[] maxPrices, byte[] priceBits, int[] priceWordStarts,
+                            long[] packedPrices) {
+    this.blockSize = blockSize;
+    this.size = rows.length;
+    this.rows = rows;
+    this.epochDays = epochDays;
+    this.minDays = minDays;
+    this.maxDays = maxDays;
+    this.minPrices = minPrices;
+    this.maxPrices = maxPrices;
+    this.priceBits = priceBits;
+    this.priceWordStarts = priceWordStarts;
+    this.packedPrices = packedPrices;
+  }
+
+  public static ZoneMappedColumns build(TransactionColumns columns, boolean clusterByDate) {
+    return build(columns, DEFAULT_BLOCK_SIZE, clusterByDate);
+  }
+
+  /**
+   * @param clusterByDate 先依日期做穩定的計數排序再切區塊，模擬交易依時間附加的情況；false 時維持原本的列順序
+   */
+  public static ZoneMappedColumns build(TransactionColumns columns, int blockSize, boolean clusterByDate) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("區塊大小必須為正數: " + blockSize);
+    }
+    int n = columns.size();
+    int[] order = clusterByDate ? dateOrder(columns.epochDays()) : identity(n);
+    int[] days = new int[n];
+    int[] prices = new int[n];
+    for (int i = 0; i < n; i++) {
+      days[i] = columns.epochDays()[order[i]];
+      prices[i] = columns.priceCents()[order[i]];
+    }
+
+    int blocks = (n + blockSize - 1) / blockSize;
+    int[] minDays = new int[blocks];
+    int[] maxDays = new int[blocks];
+    int[] minPrices = new int[blocks];
+    int[] maxPrices = new int[blocks];
+    byte[] priceBits = new byte[blocks];
+    int[] priceWordStarts = new int[blocks + 1];
+    for (int block = 0; block < blocks; block++) {
+      int from = block * blockSize;
+      int to = Math.min(n, from + blockSize);
+      minDays[block] = Integer.MAX_VALUE;
+      maxDays[block] = Integer.MIN_VALUE;
+      minPrices[block] = Integer.MAX_VALUE;
+      maxPrices[block] = Integer.MIN_VALUE;
+      for (int i = from; i < to; i++) {
+        minDays[block] = Math.min(minDays[block], days[i]);
+        maxDays[block] = Math.max(maxDays[block], days[i]);
+        minPrices[block] = Math.min(minPrices[block], prices[i]);
+        maxPrices[block] = Math.max(maxPrices[block], prices[i]);
+      }
+      // 差值最大為 max - min，所需位元數即其最高位元的位置；全部相同時為 0 位元
+      int range = maxPrices[block] - minPrices[block];
+      priceBits[block] = (byte) (Integer.SIZE - Integer.numberOfLeadingZeros(range));
+      long bits = (long) priceBits[block] * (to - from);
+      priceWordStarts[block + 1] = priceWordStarts[block] + (int) ((bits + 63) >>> 6);
+    }
+
+    long[] packedPrices = new long[priceWordStarts[blocks]];
+    for (int block = 0; block < blocks; block++) {
+      int from = block * blockSize;
+      int to = Math.min(n, from + blockSize);
+      int width = priceBits[block];
+      long bit = (long) priceWordStarts[block] << 6;
+      for (int i = from; i < to && width > 0; i++, bit += width) {
+        long delta = prices[i] - minPrices[block];
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        packedPrices[word] |= delta << offset;
+        if (offset + width > Long.SIZE) {
+          packedPrices[word + 1] |= delta >>> (Long.SIZE - offset);
+        }
+      }
+    }
+    return new ZoneMappedColumns(blockSize, order, days, minDays, maxDays, minPrices, maxPrices, priceBits,
+        priceWordStarts, packedPrices);
+  }
+
+  /**
+   * 依日期的穩定計數排序，回傳排列後每個位置的原始列序號
+   */
+  private static int[] dateOrder(int[] epochDays) {
+    int n = epochDays.length;
+    if (n == 0) {
+      return new int[0];
+    }
+    int minDay = Arrays.stream(epochDays).min().getAsInt();
+    int maxDay = Arrays.stream(epochDays).max().getAsInt();
+    int[] starts = new int[maxDay - minDay + 2];
+    for (int day : epochDays) {
+      starts[day - minDay + 1]++;
+    }
+    for (int i = 1; i < starts.length; i++) {
+      starts[i] += starts[i - 1];
+    }
+    int[] order = new int[n];
+    for (int row = 0; row < n; row++) {
+      order[starts[epochDays[row] - minDay]++] = row;
+    }
+    return order;
+  }
+
+  private static int[] identity(int n) {
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    return order;
+  }
+
+  // --- 查詢 ---
+
+  /**
+   * 日期與價格都在範圍內 (兩端皆含) 的交易數
+   */
+  public int count(LocalDate fromDate, LocalDate toDate, int minCents, int maxCents) {
+    return scan(fromDate, toDate, minCents, maxCents, null, null);
+  }
+
+  /**
+   * @return 符合條件的原始列序號 (依區塊順序)
+   */
+  public int[] rowsMatching(LocalDate fromDate, LocalDate toDate, int minCents, int maxCents) {
+    int[] matches = new int[Math.min(size, 1024)];
+    int[][] holder = {matches};
+    int count = scan(fromDate, toDate, minCents, maxCents, holder, null);
+    return Arrays.copyOf(holder[0], count);
+  }
+
+  /**
+   * 統計一次查詢中被略過、整塊計入與需要解碼的區塊數
+   * @return {略過, 整塊計入, 解碼}
+   */
+  public int[] blockStats(LocalDate fromDate, LocalDate toDate, int minCents, int maxCents) {
+    int[] stats = new int[3];
+    scan(fromDate, toDate, minCents, maxCents, null, stats);
+    return stats;
+  }
+
+  /**
+   * @param matches 不為 null 時把符合的列序號放進 matches[0] (空間不足時擴充)
+   * @param stats 不為 null 時累計 {略過, 整塊計入, 解碼} 的區塊數
+   */
+  private int scan(LocalDate fromDate, LocalDate toDate, int minCents, int maxCents, int[][] matches, int[] stats) {
+    int fromDay = (int) fromDate.toEpochDay();
+    int toDay = (int) toDate.toEpochDay();
+    int count = 0;
+    for (int block = 0; block < minDays.length; block++) {
+      if (maxDays[block] < fromDay || minDays[block] > toDay
+          || maxPrices[block] < minCents || minPrices[block] > maxCents) {
+        if (stats != null) {
+          stats[0]++;
+        }
+        continue;
+      }
+      int from = block * blockSize;
+      int to = Math.min(size, from + blockSize);
+      if (minDays[block] >= fromDay && maxDays[block] <= toDay
+          && minPrices[block] >= minCents && maxPrices[block] <= maxCents) {
+        if (stats != null) {
+          stats[1]++;
+        }
+        if (matches != null) {
+          for (int i = from; i < to; i++) {
+            count = append(matches, count, rows[i]);
+          }
+        } else {
+          count += to - from;
+        }
+        continue;
+      }
+      if (stats != null) {
+        stats[2]++;
+      }
+      // 價格條件換成區塊內的差值範圍，解碼後直接比較差值
+      long lowDelta = (long) minCents - minPrices[block];
+      long highDelta = (long) maxCents - minPrices[block];
+      int width = priceBits[block];
+      long mask = (1L << width) - 1;
+      long bit = (long) priceWordStarts[block] << 6;
+      for (int i = from; i < to; i++, bit += width) {
+        long delta = 0;
+        if (width > 0) {
+          int word = (int) (bit >>> 6);
+          int offset = (int) (bit & 63);
+          delta = packedPrices[word] >>> offset;
+          if (offset + width > Long.SIZE) {
+            delta |= packedPrices[word + 1] << (Long.SIZE - offset);
+          }
+          delta &= mask;
+        }
+        int day = epochDays[i];
+        if (day >= fromDay && day <= toDay && delta >= lowDelta && delta <= highDelta) {
+          count = (matches != null) ? append(matches, count, rows[i]) : count + 1;
+        }
+      }
+    }
+    return count;
+  }
+
+  private static int append(int[][] matches, int count, int row) {
+    if (count == matches[0].length) {
+      matches[0] = Arrays.copyOf(matches[0], count * 2);
+    }
+    matches[0][count] = row;
+    return count + 1;
+  }
+
+  /**
+   * 解碼第 position 筆 (區塊順序) 的價格，單位為分
+   */
+  int priceCentsAt(int position) {
+    int block = position / blockSize;
+    int width = priceBits[block];
+    if (width == 0) {
+      return minPrices[block];
+    }
+    long bit = ((long) priceWordStarts[block] << 6) + (long) (position - block * blockSize) * width;
+    int word = (int) (bit >>> 6);
+    int offset = (int) (bit & 63);
+    long delta = packedPrices[word] >>> offset;
+    if (offset + width > Long.SIZE) {
+      delta |= packedPrices[word + 1] << (Long.SIZE - offset);
+    }
+    return minPrices[block] + (int) (delta & ((1L << width) - 1));
+  }
+
+  int rowAt(int position) {
+    return rows[position];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int blockCount() {
+    return minDays.length;
+  }
+
+  public int blockSize() {
+    return blockSize;
+  }
+
+  /**
+   * 各區塊價格差值的平均位元數
+   */
+  public double averagePriceBits() {
+    long bits = 0;
+    for (int block = 0; block < priceBits.length; block++) {
+      bits += (long) priceBits[block] * (Math.min(size, (block + 1) * blockSize) - block * blockSize);
+    }
+    return bits / (double) Math.max(1, size);
+  }
+
+  /**
+   * 價格欄位 (位元緊密排列 + 每個區塊的最小值、位元數與起點) 的大小
+   */
+  public long priceColumnBytes() {
+    return MemoryEstimator.arrayBytes(packedPrices.length, Long.BYTES)
+        + MemoryEstimator.arrayBytes(minPrices.length, Integer.BYTES)
+        + MemoryEstimator.arrayBytes(priceBits.length, Byte.BYTES)
+        + MemoryEstimator.arrayBytes(priceWordStarts.length, Integer.BYTES);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d 筆，%d 個區塊 (每塊 %d 筆)，價格平均 %.1f 位元，價格欄位 %s (int[] 為 %s)",
+        size, blockCount(), blockSize, averagePriceBits(), MemoryEstimator.format(priceColumnBytes()),
+        MemoryEstimator.format(MemoryEstimator.arrayBytes(size, Integer.BYTES)));
+  }
+}